@@ -2,11 +2,21 @@ package ro.ppoo.banking.config;
 
 import io.github.cdimascio.dotenv.Dotenv;
 import ro.ppoo.banking.repository.ClientRepository;
+import ro.ppoo.banking.repository.LoadStatistics;
 import ro.ppoo.banking.service.BankService;
 import ro.ppoo.banking.service.ClientService;
+import ro.ppoo.banking.service.CommandPipeline;
 import ro.ppoo.banking.service.CurrencyService;
+import ro.ppoo.banking.service.HistoryService;
+import ro.ppoo.banking.service.IbanAllocator;
+import ro.ppoo.banking.service.TransactionIdGenerator;
 import ro.ppoo.banking.service.security.DataEncryptionService;
 
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
 /**
  * Clasa centrală de configurare a aplicației (Dependency Injection Container simplificat).
  * <p>
@@ -17,48 +27,157 @@ import ro.ppoo.banking.service.security.DataEncryptionService;
  * <li>Gestionează ciclul de viață al aplicației (ex: salvarea datelor la închidere).</li>
  * </ul>
  * </p>
+ * <p>
+ * Inițializarea rulează în fundal, ca prima fereastră să poată fi afișată imediat: constructorul
+ * doar pornește încărcarea, iar fiecare serviciu este un {@link CompletableFuture} completat când
+ * dependențele lui sunt gata. Depozitul clienților și cursurile valutare se încarcă în paralel.
+ * Metodele <code>get...</code> așteaptă serviciul respectiv; ecranele care pot fi afișate înainte
+ * de încărcare folosesc {@link #whenReady()}.
+ * </p>
  */
 public class AppConfig {
-    private final Dotenv dotenv;
-    private final DataEncryptionService encryptionService;
-    private final ClientRepository clientRepository;
-    private final ClientService clientService;
-    private final BankService bankService;
-    private final CurrencyService currencyService;
+    /**
+     * Câte luni întregi de tranzacții rămân în istoricul conturilor, dacă <code>.env</code> nu specifică altfel.
+     */
+    private static final int DEFAULT_HISTORY_HORIZON_MONTHS = 12;
+
+    private final long startTime = System.nanoTime();
+    private final CompletableFuture<Dotenv> dotenv;
+    private final CompletableFuture<DataEncryptionService> encryptionService;
+    private final CompletableFuture<ClientRepository> clientRepository;
+    private final CompletableFuture<ClientService> clientService;
+    private final CompletableFuture<CommandPipeline> commandPipeline;
+    private final CompletableFuture<BankService> bankService;
+    private final CompletableFuture<CurrencyService> currencyService;
+    private final CompletableFuture<TransactionIdGenerator> idGenerator;
+    private final HistoryService historyService = new HistoryService();
+    private final CompletableFuture<Void> ready;
 
     public AppConfig(){
-        this.dotenv = Dotenv.load();
-        String aesKey = dotenv.get("AES_SECRET_KEY");
-        this.encryptionService = new DataEncryptionService(aesKey);
-
-        this.clientRepository = new ClientRepository();
-        this.clientRepository.loadFromFile();
-        this.currencyService = new CurrencyService();
-        this.clientService = new ClientService(clientRepository, encryptionService);
-        this.bankService = new BankService(clientRepository, currencyService);
+        // câte un fir pentru fiecare etapă, separat de ForkJoinPool, pe care depozitul își decodează catalogul
+        Executor bootstrap = runnable -> {
+            Thread thread = new Thread(runnable, "bootstrap");
+            thread.setDaemon(true);
+            thread.start();
+        };
+
+        this.dotenv = CompletableFuture.supplyAsync(Dotenv::load, bootstrap);
+        this.encryptionService = dotenv.thenApply(env -> new DataEncryptionService(env.get("AES_SECRET_KEY")));
+        this.clientRepository = dotenv.thenApplyAsync(this::loadRepository, bootstrap);
+        this.currencyService = CompletableFuture.supplyAsync(CurrencyService::new, bootstrap);
+        this.idGenerator = dotenv.thenApply(this::createIdGenerator);
+        this.clientService = clientRepository.thenCombine(encryptionService, ClientService::new);
+        this.commandPipeline = clientRepository.thenApply(CommandPipeline::new);
+        this.bankService = clientRepository.thenCombine(currencyService,
+                (repository, currencies) -> new BankService(repository, currencies, idGenerator.join(),
+                        new IbanAllocator(repository), commandPipeline.join()));
+        this.ready = CompletableFuture.allOf(clientService, bankService);
+        clientRepository.thenAcceptBothAsync(dotenv, this::archiveHistory, bootstrap)
+                .exceptionally(error -> {
+                    System.err.println("Transaction history could not be archived: " + unwrap(error).getMessage());
+                    return null;
+                });
+
+        ready.whenComplete((result, error) -> {
+            if (error != null) {
+                System.err.println("Application data could not be loaded: " + unwrap(error).getMessage());
+            } else {
+                System.out.println("Application data ready after " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+            }
+        });
+    }
+
+    private ClientRepository loadRepository(Dotenv env) {
+        // versiunea formatului binar pentru datele noi; implicit, cea mai recentă
+        String storageFormat = env.get("STORAGE_FORMAT_VERSION");
+        ClientRepository repository = storageFormat != null
+                ? new ClientRepository(Integer.parseInt(storageFormat.trim()))
+                : new ClientRepository();
+        LoadStatistics loadStatistics = repository.loadFromFile();
+        System.out.println("Client store loaded: " + loadStatistics);
+        return repository;
+    }
+
+    /**
+     * Mută în arhiva lunară tranzacțiile mai vechi de orizont, cel mult o dată pe lună.
+     * Rulează în fundal, după încărcare: arhivarea blochează pe rând doar contul rescris,
+     * deci aplicația poate fi folosită între timp.
+     */
+    private void archiveHistory(ClientRepository repository, Dotenv env) {
+        String horizonMonths = env.get("HISTORY_HORIZON_MONTHS");
+        LocalDate horizon = LocalDate.now().withDayOfMonth(1).minusMonths(horizonMonths != null
+                ? Integer.parseInt(horizonMonths.trim())
+                : DEFAULT_HISTORY_HORIZON_MONTHS);
+        int archived = repository.archiveHistory(horizon);
+        if (archived > 0) {
+            System.out.println("Archived " + archived + " transactions older than " + horizon);
+        }
+    }
+
+    private TransactionIdGenerator createIdGenerator(Dotenv env) {
+        // fiecare instanță care scrie tranzacții trebuie să aibă alt număr de nod
+        String nodeId = env.get("NODE_ID");
+        return new TransactionIdGenerator(nodeId != null ? Integer.parseInt(nodeId.trim()) : 0);
+    }
+
+    /**
+     * @return Un future completat când toate serviciile sunt gata, sau cu eroarea care a oprit încărcarea.
+     */
+    public CompletableFuture<Void> whenReady() {
+        return ready;
     }
 
     public DataEncryptionService getEncryptionService() {
-        return encryptionService;
+        return await(encryptionService);
     }
 
     public ClientService getClientService() {
-        return clientService;
+        return await(clientService);
     }
 
     public String getEnv(String key) {
-        return dotenv.get(key);
+        return await(dotenv).get(key);
     }
 
     /**
      * Metodă apelată la închiderea aplicației pentru a asigura persistența datelor.
-     * Salvează starea curentă a tuturor clienților în fișierul binar.
+     * Oprește coada de comenzi, după aplicarea celor trimise deja, apoi salvează starea curentă a
+     * tuturor clienților în fișierul binar.
+     * Dacă încărcarea sau arhivarea nu s-au terminat, le așteaptă; dacă încărcarea a eșuat, nu există nimic de salvat.
      */
     public void onExit(){
-        clientRepository.saveToFile();
+        try {
+            commandPipeline.join().close();
+            clientRepository.join().saveToFile();
+        } catch (CompletionException e) {
+            System.err.println("Nothing to save: " + unwrap(e).getMessage());
+        }
     }
 
     public BankService getBankService() {
-        return this.bankService;
+        return await(bankService);
+    }
+
+    public HistoryService getHistoryService() {
+        return historyService;
+    }
+
+    /**
+     * Așteaptă un serviciu și aruncă mai departe eroarea originală a încărcării, dacă a eșuat.
+     */
+    private static <T> T await(CompletableFuture<T> service) {
+        try {
+            return service.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
     }
 }
@@ -0,0 +1,67 @@
+package ro.ppoo.banking.controller;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Listă pentru tabele mari, care încarcă elementele pe pagini, doar când sunt afișate.
+ * <p>
+ * Tabelele JavaFX cer doar rândurile vizibile, deci la derulare sunt încărcate doar paginile
+ * parcurse. Sunt păstrate în memorie cel mult <code>maxPages</code> pagini, cele folosite cel
+ * mai recent, astfel încât memoria și timpul de deschidere nu depind de numărul total de elemente.
+ * </p>
+ * <p>
+ * Dimensiunea este fixată la creare; pentru date noi se creează o listă nouă. Lista nu poate fi
+ * sortată pe loc, deoarece are încărcate doar unele pagini: ordinea este aplicată de interogarea
+ * din {@link #loadPage(int)}, iar pentru altă ordine se creează o listă nouă. Dacă o pagină
+ * încărcată are mai puține elemente decât se aștepta (de exemplu, un client șters între timp),
+ * pozițiile lipsă sunt <code>null</code> și apar ca rânduri goale.
+ * </p>
+ */
+public abstract class PagedList<T> extends ObservableListBase<T> {
+    private final int size;
+    private final int pageSize;
+    private final Map<Integer, List<T>> pages;
+
+    protected PagedList(int size, int pageSize, int maxPages) {
+        this.size = size;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<>(maxPages, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    /**
+     * Încarcă pagina cu numărul dat: elementele de la <code>page * pageSize</code>, cel mult <code>pageSize</code>.
+     */
+    protected abstract List<T> loadPage(int page);
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        List<T> page = pages.get(index / pageSize);
+        if (page == null) {
+            page = loadPage(index / pageSize);
+            pages.put(index / pageSize, page);
+        }
+        int offset = index % pageSize;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    protected int getPageSize() {
+        return pageSize;
+    }
+}
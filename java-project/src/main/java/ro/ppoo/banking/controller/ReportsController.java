@@ -10,8 +10,8 @@ import javafx.stage.Stage;
 import ro.ppoo.banking.config.AppConfig;
 import ro.ppoo.banking.enums.AccountType;
 import ro.ppoo.banking.enums.Currency;
-import ro.ppoo.banking.model.BankAccount;
-import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.enums.TransactionType;
+import ro.ppoo.banking.model.ClientSummary;
 
 import java.util.HashMap;
 import java.util.List;
@@ -24,26 +24,24 @@ public class ReportsController {
     @FXML private Label totalTransactionsLabel;
     @FXML private PieChart currencyPieChart;
     @FXML private BarChart<String, Number> typeBarChart;
+    @FXML private BarChart<String, Number> transactionTypeChart;
 
     public void initData(AppConfig config) {
-        List<Client> allClients = config.getClientService().getAll();
+        List<ClientSummary> allClients = config.getClientService().getSummaries();
 
         calculateKPIs(allClients);
         generateCharts(allClients);
+        generateTransactionChart(config.getBankService().getTransactionColumns().countByType());
     }
 
-    private void calculateKPIs(List<Client> clients) {
+    private void calculateKPIs(List<ClientSummary> clients) {
         int clientCount = clients.size();
         int accountCount = 0;
         int transactionCount = 0;
 
-        for (Client client : clients) {
-            accountCount += client.getAccounts().size();
-            for (BankAccount account : client.getAccounts()) {
-                if (account.getTransactions() != null) {
-                    transactionCount += account.getTransactions().size();
-                }
-            }
+        for (ClientSummary client : clients) {
+            accountCount += client.getAccountCount();
+            transactionCount += client.getTransactionCount();
         }
 
         totalClientsLabel.setText(String.valueOf(clientCount));
@@ -51,18 +49,16 @@ public class ReportsController {
         totalTransactionsLabel.setText(String.valueOf(transactionCount));
     }
 
-    private void generateCharts(List<Client> clients) {
+    private void generateCharts(List<ClientSummary> clients) {
         Map<Currency, Integer> currencyCounts = new HashMap<>();
         for (Currency c : Currency.values()) currencyCounts.put(c, 0);
 
         Map<AccountType, Integer> typeCounts = new HashMap<>();
         for (AccountType t : AccountType.values()) typeCounts.put(t, 0);
 
-        for (Client client : clients) {
-            for (BankAccount account : client.getAccounts()) {
-                currencyCounts.put(account.getCurrency(), currencyCounts.getOrDefault(account.getCurrency(), 0) + 1);
-                typeCounts.put(account.getType(), typeCounts.getOrDefault(account.getType(), 0) + 1);
-            }
+        for (ClientSummary client : clients) {
+            client.getAccountsByCurrency().forEach((currency, count) -> currencyCounts.merge(currency, count, Integer::sum));
+            client.getAccountsByType().forEach((type, count) -> typeCounts.merge(type, count, Integer::sum));
         }
 
         for (Map.Entry<Currency, Integer> entry : currencyCounts.entrySet()) {
@@ -82,6 +78,17 @@ public class ReportsController {
         typeBarChart.getData().add(series);
     }
 
+    private void generateTransactionChart(Map<TransactionType, Long> typeCounts) {
+        XYChart.Series<String, Number> series = new XYChart.Series<>();
+        series.setName("Number of Transactions");
+
+        for (Map.Entry<TransactionType, Long> entry : typeCounts.entrySet()) {
+            series.getData().add(new XYChart.Data<>(entry.getKey().name(), entry.getValue()));
+        }
+
+        transactionTypeChart.getData().add(series);
+    }
+
     @FXML
     void handleClose(ActionEvent event) {
         Stage stage = (Stage) totalClientsLabel.getScene().getWindow();
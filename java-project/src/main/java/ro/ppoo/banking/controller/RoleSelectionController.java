@@ -7,6 +7,8 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.stage.Stage;
 import ro.ppoo.banking.config.AppConfig;
 import ro.ppoo.banking.controller.admin.AdminLoginController;
@@ -17,10 +19,33 @@ import java.io.IOException;
 
 public class RoleSelectionController {
 
+    @FXML private Button adminButton;
+    @FXML private Button clientButton;
+    @FXML private Label statusLabel;
+
     private AppConfig appConfig;
 
+    /**
+     * Până la încărcarea datelor în fundal, portalurile sunt dezactivate și ecranul afișează starea încărcării.
+     */
     public void initData(AppConfig config) {
         this.appConfig = config;
+
+        if (config.whenReady().isDone() && !config.whenReady().isCompletedExceptionally()) {
+            return;
+        }
+        adminButton.setDisable(true);
+        clientButton.setDisable(true);
+        statusLabel.setText("Loading bank data...");
+        config.whenReady().whenComplete((result, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                statusLabel.setText("Could not load bank data. Please restart the application.");
+            } else {
+                statusLabel.setText("");
+                adminButton.setDisable(false);
+                clientButton.setDisable(false);
+            }
+        }));
     }
 
     @FXML
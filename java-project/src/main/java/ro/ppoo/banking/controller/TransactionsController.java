@@ -1,34 +1,52 @@
 package ro.ppoo.banking.controller;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
+import ro.ppoo.banking.config.AppConfig;
 import ro.ppoo.banking.enums.TransactionType;
-import ro.ppoo.banking.model.BankAccount;
 import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.Money;
 import ro.ppoo.banking.model.Transaction;
+import ro.ppoo.banking.service.HistoryService;
 import javafx.scene.paint.Color;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 
 public class TransactionsController {
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES = 10;
 
     @FXML private TableView<Transaction> transactionsTable;
     @FXML private TableColumn<Transaction, LocalDate> dateColumn;
     @FXML private TableColumn<Transaction, String> detailsColumn; // Nou
-    @FXML private TableColumn<Transaction, Double> amountColumn;
+    @FXML private TableColumn<Transaction, Long> amountColumn;
     @FXML private TableColumn<Transaction, String> senderNameColumn;
     @FXML private TableColumn<Transaction, String> receiverNameColumn;
     @FXML private TableColumn<Transaction, String> sourceColumn;
     @FXML private TableColumn<Transaction, String> destinationColumn;
+    @FXML private Label archiveLabel;
+    @FXML private Button loadOlderButton;
+
+    private AppConfig appConfig;
+    private Client client;
+    private HistoryRows transactions;
+    private List<YearMonth> archivedMonths = List.of();
+    private int nextArchivedMonth;
+
+    public void initData(AppConfig config, Client client) {
+        this.appConfig = config;
+        this.client = client;
 
-    public void initData(Client client) {
         dateColumn.setCellValueFactory(new PropertyValueFactory<>("date"));
         detailsColumn.setCellValueFactory(new PropertyValueFactory<>("details"));
         amountColumn.setCellValueFactory(new PropertyValueFactory<>("amount"));
@@ -37,9 +55,9 @@ public class TransactionsController {
         sourceColumn.setCellValueFactory(new PropertyValueFactory<>("sourceIban"));
         destinationColumn.setCellValueFactory(new PropertyValueFactory<>("destinationIban"));
 
-        amountColumn.setCellFactory(column -> new TableCell<Transaction, Double>() {
+        amountColumn.setCellFactory(column -> new TableCell<Transaction, Long>() {
             @Override
-            protected void updateItem(Double amount, boolean empty) {
+            protected void updateItem(Long amount, boolean empty) {
                 super.updateItem(amount, empty);
 
                 if (empty || amount == null) {
@@ -48,7 +66,7 @@ public class TransactionsController {
                 } else {
                     Transaction transaction = getTableView().getItems().get(getIndex());
 
-                    String text = String.format("%.2f", amount);
+                    String text = Money.format(amount);
 
                     if (transaction.getType() == TransactionType.DEPOSIT ||
                             transaction.getType() == TransactionType.TRANSFER_RECEIVED) {
@@ -70,17 +88,38 @@ public class TransactionsController {
     }
 
     private void loadTransactions(Client client) {
-        ObservableList<Transaction> allTransactions = FXCollections.observableArrayList();
+        transactions = new HistoryRows(appConfig.getHistoryService().start(client));
+        transactionsTable.setItems(transactions);
+
+        archivedMonths = appConfig.getBankService().getArchivedMonths();
+        updateArchiveControls();
+    }
 
-        for (BankAccount account : client.getAccounts()) {
-            if (account.getTransactions() != null) {
-                allTransactions.addAll(account.getTransactions());
+    /**
+     * Adaugă în tabel următoarea lună arhivată în care clientul are tranzacții.
+     * Lunile din arhivă sunt citite de la cea mai recentă la cea mai veche, câte una pe apăsare.
+     */
+    @FXML
+    void handleLoadOlder(ActionEvent event) {
+        while (nextArchivedMonth < archivedMonths.size()) {
+            YearMonth month = archivedMonths.get(nextArchivedMonth++);
+            List<Transaction> archived = appConfig.getBankService().getArchivedTransactions(client, month);
+            if (!archived.isEmpty()) {
+                archived.sort(Comparator.comparing(Transaction::getDate).reversed());
+                transactions.addArchived(archived);
+                archiveLabel.setText("Showing archived transactions since " + month);
+                break;
             }
         }
+        updateArchiveControls();
+    }
 
-        allTransactions.sort(Comparator.comparing(Transaction::getDate).reversed());
-
-        transactionsTable.setItems(allTransactions);
+    private void updateArchiveControls() {
+        boolean more = nextArchivedMonth < archivedMonths.size();
+        loadOlderButton.setDisable(!more);
+        if (!more && nextArchivedMonth > 0) {
+            archiveLabel.setText("All archived transactions are shown.");
+        }
     }
 
     @FXML
@@ -88,4 +127,56 @@ public class TransactionsController {
         Stage stage = (Stage) transactionsTable.getScene().getWindow();
         stage.close();
     }
-}
\ No newline at end of file
+
+    /**
+     * Rândurile tabelului: istoricul curent, citit pe pagini prin {@link HistoryService}, urmat de
+     * lunile arhivate încărcate cu butonul "Load Older".
+     * <p>
+     * O pagină se citește de la cursorul cu care începe, obținut la citirea paginii anterioare,
+     * deci cursoarele sunt păstrate pentru toate paginile parcurse, chiar dacă paginile nu mai sunt.
+     * Un salt direct spre finalul istoricului parcurge o singură dată paginile dintre ele.
+     * </p>
+     */
+    private class HistoryRows extends PagedList<Transaction> {
+        private final List<HistoryService.Cursor> cursors = new ArrayList<>();
+        private final List<Transaction> archived = new ArrayList<>();
+        private final int live;
+
+        HistoryRows(HistoryService.Cursor start) {
+            super(start.getRemaining(), PAGE_SIZE, MAX_PAGES);
+            this.live = start.getRemaining();
+            cursors.add(start);
+        }
+
+        @Override
+        protected List<Transaction> loadPage(int page) {
+            HistoryService history = appConfig.getHistoryService();
+            while (cursors.size() <= page) {
+                cursors.add(history.next(cursors.get(cursors.size() - 1), getPageSize()).getNext());
+            }
+            HistoryService.Page loaded = history.next(cursors.get(page), getPageSize());
+            if (cursors.size() == page + 1) {
+                cursors.add(loaded.getNext());
+            }
+            return loaded.getTransactions();
+        }
+
+        @Override
+        public Transaction get(int index) {
+            return index >= live && index < size() ? archived.get(index - live) : super.get(index);
+        }
+
+        @Override
+        public int size() {
+            return live + archived.size();
+        }
+
+        void addArchived(List<Transaction> transactions) {
+            int from = size();
+            archived.addAll(transactions);
+            beginChange();
+            nextAdd(from, size());
+            endChange();
+        }
+    }
+}
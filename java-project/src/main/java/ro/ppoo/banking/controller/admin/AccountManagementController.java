@@ -1,5 +1,6 @@
 package ro.ppoo.banking.controller.admin;
 
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -10,7 +11,9 @@ import javafx.stage.Stage;
 import ro.ppoo.banking.config.AppConfig;
 import ro.ppoo.banking.model.BankAccount;
 import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.Money;
 import javafx.beans.property.SimpleStringProperty;
+import java.math.BigDecimal;
 import java.util.Optional;
 
 public class AccountManagementController {
@@ -20,7 +23,7 @@ public class AccountManagementController {
     @FXML private TableColumn<BankAccount, String> ibanColumn;
     @FXML private TableColumn<BankAccount, String> currencyColumn;
     @FXML private TableColumn<BankAccount, String> typeColumn;
-    @FXML private TableColumn<BankAccount, Double> balanceColumn;
+    @FXML private TableColumn<BankAccount, BigDecimal> balanceColumn;
     @FXML private Button blockButton;
     @FXML private TableColumn<BankAccount, String> statusColumn;
 
@@ -37,7 +40,7 @@ public class AccountManagementController {
         ibanColumn.setCellValueFactory(new PropertyValueFactory<>("iban"));
         currencyColumn.setCellValueFactory(new PropertyValueFactory<>("currency"));
         typeColumn.setCellValueFactory(new PropertyValueFactory<>("type"));
-        balanceColumn.setCellValueFactory(new PropertyValueFactory<>("balance"));
+        balanceColumn.setCellValueFactory(cellData -> new SimpleObjectProperty<>(Money.toDecimal(cellData.getValue().getBalance())));
         statusColumn.setCellValueFactory(cellData -> {
             boolean blocked = cellData.getValue().isBlocked();
             return new SimpleStringProperty(blocked ? "BLOCKED" : "Active");
@@ -45,6 +48,13 @@ public class AccountManagementController {
         refreshTable();
     }
 
+    private void reloadClient() {
+        Client refreshedClient = appConfig.getClientService().findClientByCNP(currentClient.getCNP());
+        if (refreshedClient != null) {
+            currentClient = refreshedClient;
+        }
+    }
+
     private void refreshTable() {
         accountsList.setAll(currentClient.getAccounts());
         accountsTable.setItems(accountsList);
@@ -78,8 +88,8 @@ public class AccountManagementController {
         Optional<ButtonType> result = confirm.showAndWait();
 
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            currentClient.getAccounts().remove(selectedAccount);
-            appConfig.getClientService().update(currentClient);
+            appConfig.getBankService().deleteAccount(selectedAccount.getIban());
+            reloadClient();
             refreshTable();
         }
     }
@@ -106,12 +116,12 @@ public class AccountManagementController {
         Optional<ButtonType> result = confirm.showAndWait();
 
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            selectedAccount.setBlocked(!currentStatus);
-            appConfig.getClientService().update(currentClient);
+            appConfig.getBankService().setAccountBlocked(selectedAccount.getIban(), !currentStatus);
+            reloadClient();
 
             refreshTable();
 
-            String msg = "Account is now " + (selectedAccount.isBlocked() ? "BLOCKED" : "ACTIVE");
+            String msg = "Account is now " + (!currentStatus ? "BLOCKED" : "ACTIVE");
         }
     }
 
@@ -43,12 +43,11 @@ public class ClientEditController {
     @FXML
     void handleSave(ActionEvent event) {
         try {
-            clientToEdit.setFirstname(firstnameField.getText());
-            clientToEdit.setLastname(lastnameField.getText());
-            clientToEdit.setEmail(emailField.getText());
-            clientToEdit.setPhone(phoneField.getText());
-
-            appConfig.getClientService().update(clientToEdit);
+            appConfig.getClientService().updateProfile(clientToEdit,
+                    firstnameField.getText(),
+                    lastnameField.getText(),
+                    emailField.getText(),
+                    phoneField.getText());
 
             closeWindow();
 
@@ -3,6 +3,7 @@ package ro.ppoo.banking.controller.admin;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -16,32 +17,61 @@ import javafx.scene.layout.GridPane;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import ro.ppoo.banking.config.AppConfig;
+import ro.ppoo.banking.controller.PagedList;
 import ro.ppoo.banking.controller.TransactionsController;
 import ro.ppoo.banking.enums.TransactionType;
 import ro.ppoo.banking.model.BankAccount;
 import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.ClientSummary;
+import ro.ppoo.banking.model.Money;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 
 public class ClientManagementController implements Initializable {
+    private static final int SEARCH_LIMIT = 100;
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES = 10;
+
+    /**
+     * Rulează căutările în afara firului JavaFX; un singur fir, deci căutările se execută în ordinea tastării.
+     */
+    private static final ExecutorService SEARCH_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "client-search");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @FXML
-    private TableView<Client> clientsTable;
+    private TableView<ClientSummary> clientsTable;
     @FXML
-    private TableColumn<Client, String> firstNameColumn;
+    private TableColumn<ClientSummary, String> firstNameColumn;
     @FXML
-    private TableColumn<Client, String> lastNameColumn;
+    private TableColumn<ClientSummary, String> lastNameColumn;
     @FXML
-    private TableColumn<Client, String> emailColumn;
+    private TableColumn<ClientSummary, String> emailColumn;
     @FXML
-    private TableColumn<Client, String> phoneColumn;
-    @FXML private TableColumn<Client, String> cnpColumn;
+    private TableColumn<ClientSummary, String> phoneColumn;
+    @FXML private TableColumn<ClientSummary, String> cnpColumn;
+    @FXML
+    private TextField searchField;
+    @FXML
+    private Label searchStatusLabel;
 
     private AppConfig appConfig;
-    private final ObservableList<Client> clientList = FXCollections.observableArrayList();
+    private Task<List<ClientSummary>> searchTask;
+    /**
+     * Ordinea aleasă prin antetele coloanelor, sau <code>null</code> pentru ordinea înregistrării.
+     */
+    private Comparator<ClientSummary> clientOrder;
+    private boolean sorting;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -51,6 +81,9 @@ public class ClientManagementController implements Initializable {
         phoneColumn.setCellValueFactory(new PropertyValueFactory<>("phone"));
 
         cnpColumn.setCellValueFactory(cellData -> {
+            if (cellData.getValue() == null) {
+                return new SimpleStringProperty("");
+            }
             String encryptedCnp = cellData.getValue().getCNP();
 
             if (appConfig == null || encryptedCnp == null) {
@@ -71,11 +104,55 @@ public class ClientManagementController implements Initializable {
                 return new SimpleStringProperty("Data Error");
             }
         });
+
+        // CNP-ul este criptat, deci nu poate fi sortat
+        cnpColumn.setSortable(false);
+        // lista pe pagini nu poate fi sortată în tabel, deoarece are încărcate doar câteva pagini:
+        // este cerută din nou, sortată de depozit înainte de paginare
+        clientsTable.setSortPolicy(table -> {
+            if (sorting) return true;
+            sorting = true;
+            try {
+                clientOrder = clientOrder(table.getSortOrder());
+                if (appConfig != null) loadClientData();
+            } finally {
+                sorting = false;
+            }
+            return true;
+        });
+
+        searchField.textProperty().addListener((observable, oldValue, newValue) -> {
+            if (appConfig != null) loadClientData();
+        });
+    }
+
+    /**
+     * Ordinea clienților după coloanele de sortare ale tabelului, în ordinea priorității lor.
+     *
+     * @return <code>null</code> dacă nu este sortată nicio coloană.
+     */
+    private Comparator<ClientSummary> clientOrder(List<TableColumn<ClientSummary, ?>> sortOrder) {
+        Map<TableColumn<ClientSummary, ?>, Function<ClientSummary, String>> keys = Map.of(
+                firstNameColumn, ClientSummary::getFirstname,
+                lastNameColumn, ClientSummary::getLastname,
+                emailColumn, ClientSummary::getEmail,
+                phoneColumn, ClientSummary::getPhone);
+        Comparator<ClientSummary> order = null;
+        for (TableColumn<ClientSummary, ?> column : sortOrder) {
+            Function<ClientSummary, String> key = keys.get(column);
+            if (key == null) continue;
+            Comparator<ClientSummary> byColumn = Comparator.comparing(key, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+            if (column.getSortType() == TableColumn.SortType.DESCENDING) {
+                byColumn = byColumn.reversed();
+            }
+            order = order == null ? byColumn : order.thenComparing(byColumn);
+        }
+        return order;
     }
 
     @FXML
     void handleRevealCNP(ActionEvent event) {
-        Client selectedClient = clientsTable.getSelectionModel().getSelectedItem();
+        ClientSummary selectedClient = clientsTable.getSelectionModel().getSelectedItem();
 
         if (selectedClient == null) {
             Alert alert = new Alert(Alert.AlertType.WARNING);
@@ -110,23 +187,90 @@ public class ClientManagementController implements Initializable {
         loadClientData();
     }
 
+    /**
+     * Reîncarcă tabelul: toți clienții când câmpul de căutare este gol, citiți pe pagini pe măsură
+     * ce tabelul este derulat, altfel doar primele {@value #SEARCH_LIMIT} potriviri, căutate în fundal.
+     * Rezultatul unei căutări depășite de una mai nouă este ignorat.
+     * <p>
+     * Paginile sunt cerute în ordinea aleasă în tabel, deci sortarea se aplică tuturor clienților,
+     * nu doar paginilor deja încărcate. Potrivirile unei căutări sunt sortate în memorie.
+     * </p>
+     */
     private void loadClientData() {
-        List<Client> clients = appConfig.getClientService().getAll();
-        clientList.setAll(clients);
-        clientsTable.setItems(clientList);
-        clientsTable.refresh();
+        if (searchTask != null) {
+            searchTask.cancel();
+            searchTask = null;
+        }
+
+        String query = searchField.getText();
+        Comparator<ClientSummary> order = clientOrder;
+        if (query == null || query.isBlank()) {
+            searchStatusLabel.setText("");
+            showClients(new PagedList<>(appConfig.getClientService().getClientCount(), PAGE_SIZE, MAX_PAGES) {
+                @Override
+                protected List<ClientSummary> loadPage(int page) {
+                    return appConfig.getClientService().getSummaries(page * PAGE_SIZE, PAGE_SIZE, order);
+                }
+            });
+            return;
+        }
+
+        Task<List<ClientSummary>> task = new Task<>() {
+            @Override
+            protected List<ClientSummary> call() {
+                return appConfig.getClientService().searchByName(query, SEARCH_LIMIT);
+            }
+        };
+        task.setOnSucceeded(event -> {
+            if (task != searchTask) return;
+            List<ClientSummary> matches = task.getValue();
+            searchStatusLabel.setText(matches.size() == SEARCH_LIMIT
+                    ? "Showing the first " + SEARCH_LIMIT + " matches"
+                    : matches.size() + " matches");
+            ObservableList<ClientSummary> clients = FXCollections.observableArrayList(matches);
+            if (order != null) FXCollections.sort(clients, order);
+            showClients(clients);
+        });
+        task.setOnFailed(event -> searchStatusLabel.setText("Search failed"));
+        searchTask = task;
+        SEARCH_EXECUTOR.execute(task);
+    }
+
+    /**
+     * Afișează clienții dați, păstrând selecția curentă dacă clientul selectat este printre ei.
+     * Într-o listă pe pagini este verificat doar rândul selectat anterior, ca să nu fie încărcate toate paginile.
+     */
+    private void showClients(ObservableList<ClientSummary> clients) {
+        ClientSummary selected = clientsTable.getSelectionModel().getSelectedItem();
+        int selectedIndex = clientsTable.getSelectionModel().getSelectedIndex();
+        clientsTable.setItems(clients);
+        if (selected == null) {
+            return;
+        }
+
+        if (selectedIndex < clients.size() && clients.get(selectedIndex) != null
+                && clients.get(selectedIndex).getCNP().equals(selected.getCNP())) {
+            clientsTable.getSelectionModel().select(selectedIndex);
+        } else if (!(clients instanceof PagedList)) {
+            for (ClientSummary c : clients) {
+                if (c.getCNP().equals(selected.getCNP())) {
+                    clientsTable.getSelectionModel().select(c);
+                    break;
+                }
+            }
+        }
     }
 
     @FXML
     void handleEditClient(ActionEvent event) {
-        Client selectedClient = clientsTable.getSelectionModel().getSelectedItem();
+        ClientSummary selectedClient = clientsTable.getSelectionModel().getSelectedItem();
 
         if (selectedClient != null) {
             try {
                 FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/ClientEditView.fxml"));
                 Parent root = loader.load();
                 ClientEditController controller = loader.getController();
-                controller.initData(appConfig, selectedClient);
+                controller.initData(appConfig, appConfig.getClientService().findClientByCNP(selectedClient.getCNP()));
                 Stage editStage = new Stage();
                 editStage.setTitle("Edit Client");
                 editStage.setScene(new Scene(root));
@@ -150,7 +294,7 @@ public class ClientManagementController implements Initializable {
 
     @FXML
     void handleCashOperations(ActionEvent event) {
-        Client selectedClient = clientsTable.getSelectionModel().getSelectedItem();
+        ClientSummary selectedClient = clientsTable.getSelectionModel().getSelectedItem();
 
         if (selectedClient == null) {
             Alert alert = new Alert(Alert.AlertType.WARNING);
@@ -159,7 +303,7 @@ public class ClientManagementController implements Initializable {
             return;
         }
 
-        if (selectedClient.getAccounts().isEmpty()) {
+        if (selectedClient.getAccountCount() == 0) {
             Alert alert = new Alert(Alert.AlertType.WARNING);
             alert.setContentText("This client has no accounts.");
             alert.showAndWait();
@@ -183,12 +327,12 @@ public class ClientManagementController implements Initializable {
         typeCombo.getSelectionModel().select(TransactionType.DEPOSIT);
 
         ComboBox<BankAccount> accountCombo = new ComboBox<>();
-        accountCombo.getItems().setAll(selectedClient.getAccounts());
+        accountCombo.getItems().setAll(appConfig.getClientService().findClientByCNP(selectedClient.getCNP()).getAccounts());
 
         accountCombo.setConverter(new javafx.util.StringConverter<>() {
             @Override
             public String toString(BankAccount acc) {
-                return (acc != null) ? acc.getCurrency() + " - " + acc.getIban() + " (Bal: " + acc.getBalance() + ")" : "";
+                return (acc != null) ? acc.getCurrency() + " - " + acc.getIban() + " (Bal: " + Money.format(acc.getBalance()) + ")" : "";
             }
             @Override
             public BankAccount fromString(String string) { return null; }
@@ -213,7 +357,7 @@ public class ClientManagementController implements Initializable {
             try {
                 TransactionType type = typeCombo.getValue();
                 BankAccount account = accountCombo.getValue();
-                double amount = Double.parseDouble(amountField.getText());
+                long amount = Money.parse(amountField.getText());
 
                 if (type == TransactionType.DEPOSIT) {
                     appConfig.getBankService().deposit(account.getIban(), amount);
@@ -225,17 +369,8 @@ public class ClientManagementController implements Initializable {
                 alert.setContentText("Transaction successful!");
                 alert.showAndWait();
 
-                String currentCnp = selectedClient.getCNP();
-
                 loadClientData();
 
-                for (Client c : clientsTable.getItems()) {
-                    if (c.getCNP().equals(currentCnp)) {
-                        clientsTable.getSelectionModel().select(c);
-                        break;
-                    }
-                }
-
             } catch (NumberFormatException e) {
                 Alert alert = new Alert(Alert.AlertType.ERROR);
                 alert.setContentText("Invalid amount.");
@@ -250,7 +385,7 @@ public class ClientManagementController implements Initializable {
 
     @FXML
     void handleDeleteClient(ActionEvent event) {
-        Client selectedClient = clientsTable.getSelectionModel().getSelectedItem();
+        ClientSummary selectedClient = clientsTable.getSelectionModel().getSelectedItem();
 
         if (selectedClient != null) {
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
@@ -262,9 +397,9 @@ public class ClientManagementController implements Initializable {
 
             if (result.isPresent() && result.get() == ButtonType.OK) {
                 try {
-                    appConfig.getClientService().delete(selectedClient);
+                    appConfig.getClientService().delete(appConfig.getClientService().findClientByCNP(selectedClient.getCNP()));
 
-                    clientList.remove(selectedClient);
+                    loadClientData();
                 } catch (Exception e) {
                     Alert errorAlert = new Alert(Alert.AlertType.ERROR);
                     errorAlert.setTitle("Deletion Error");
@@ -302,25 +437,23 @@ public class ClientManagementController implements Initializable {
 
     @FXML
     void handleViewHistory(ActionEvent event) {
-        Client selectedClient = clientsTable.getSelectionModel().getSelectedItem();
+        ClientSummary selectedClient = clientsTable.getSelectionModel().getSelectedItem();
 
         if (selectedClient != null) {
             try {
-                if (appConfig != null) {
-                    Client freshClient = appConfig.getClientService().findClientByCNP(selectedClient.getCNP());
-                    if (freshClient != null) {
-                        selectedClient = freshClient;
-                    }
+                Client freshClient = appConfig.getClientService().findClientByCNP(selectedClient.getCNP());
+                if (freshClient == null) {
+                    return;
                 }
 
                 FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/TransactionsView.fxml"));
                 Parent root = loader.load();
 
                 TransactionsController controller = loader.getController();
-                controller.initData(selectedClient);
+                controller.initData(appConfig, freshClient);
 
                 Stage stage = new Stage();
-                stage.setTitle("History for: " + selectedClient.getFirstname() + " " + selectedClient.getLastname());
+                stage.setTitle("History for: " + freshClient.getFirstname() + " " + freshClient.getLastname());
                 stage.setScene(new Scene(root, 800, 500));
                 stage.initModality(Modality.APPLICATION_MODAL); // Fereastra modală
                 stage.show();
@@ -339,26 +472,27 @@ public class ClientManagementController implements Initializable {
 
     @FXML
     void handleManageAccounts(ActionEvent event) {
-        Client selectedClient = clientsTable.getSelectionModel().getSelectedItem();
+        ClientSummary selectedClient = clientsTable.getSelectionModel().getSelectedItem();
 
         if (selectedClient != null) {
             try {
-                if (appConfig != null) {
-                    Client freshClient = appConfig.getClientService().findClientByCNP(selectedClient.getCNP());
-                    if (freshClient != null) selectedClient = freshClient;
+                Client freshClient = appConfig.getClientService().findClientByCNP(selectedClient.getCNP());
+                if (freshClient == null) {
+                    return;
                 }
 
                 FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/AccountManagementView.fxml"));
                 Parent root = loader.load();
 
                 AccountManagementController controller = loader.getController();
-                controller.initData(appConfig, selectedClient);
+                controller.initData(appConfig, freshClient);
 
                 Stage stage = new Stage();
-                stage.setTitle("Manage Accounts - " + selectedClient.getFirstname());
+                stage.setTitle("Manage Accounts - " + freshClient.getFirstname());
                 stage.setScene(new Scene(root));
                 stage.initModality(Modality.APPLICATION_MODAL);
                 stage.showAndWait();
+                loadClientData();
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -373,7 +507,7 @@ public class ClientManagementController implements Initializable {
 
     @FXML
     void handleResetPassword(ActionEvent event) {
-        Client selectedClient = clientsTable.getSelectionModel().getSelectedItem();
+        ClientSummary selectedClient = clientsTable.getSelectionModel().getSelectedItem();
 
         if (selectedClient == null) {
             Alert alert = new Alert(Alert.AlertType.WARNING);
@@ -1,5 +1,6 @@
 package ro.ppoo.banking.controller.client;
 
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -19,8 +20,10 @@ import ro.ppoo.banking.enums.AccountType;
 import ro.ppoo.banking.enums.Currency;
 import ro.ppoo.banking.model.BankAccount;
 import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.Money;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.Optional;
 
 public class ClientDashboardController {
@@ -30,7 +33,7 @@ public class ClientDashboardController {
     @FXML private TableColumn<BankAccount, String> ibanColumn;
     @FXML private TableColumn<BankAccount, Currency> currencyColumn;
     @FXML private TableColumn<BankAccount, String> typeColumn;
-    @FXML private TableColumn<BankAccount, Double> balanceColumn;
+    @FXML private TableColumn<BankAccount, BigDecimal> balanceColumn;
 
     private AppConfig appConfig;
     private Client currentClient;
@@ -45,7 +48,7 @@ public class ClientDashboardController {
         ibanColumn.setCellValueFactory(new PropertyValueFactory<>("iban"));
         currencyColumn.setCellValueFactory(new PropertyValueFactory<>("currency"));
         typeColumn.setCellValueFactory(new PropertyValueFactory<>("type"));
-        balanceColumn.setCellValueFactory(new PropertyValueFactory<>("balance"));
+        balanceColumn.setCellValueFactory(cellData -> new SimpleObjectProperty<>(Money.toDecimal(cellData.getValue().getBalance())));
 
         refreshTable();
     }
@@ -130,7 +133,7 @@ public class ClientDashboardController {
             Parent root = loader.load();
 
             TransactionsController controller = loader.getController();
-            controller.initData(currentClient);
+            controller.initData(appConfig, currentClient);
 
             Stage stage = new Stage();
             stage.setTitle("My Transaction History");
@@ -10,6 +10,10 @@ import javafx.util.StringConverter;
 import ro.ppoo.banking.config.AppConfig;
 import ro.ppoo.banking.model.BankAccount;
 import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.Money;
+
+import java.util.List;
+import java.util.UUID;
 
 public class TransferController {
 
@@ -19,6 +23,12 @@ public class TransferController {
     @FXML private Label errorLabel;
     @FXML private TextField detailsField;
     private AppConfig appConfig;
+    /**
+     * Cheia de idempotență a transferului din formular: refolosită cât timp utilizatorul retrimite
+     * aceleași date (ex: după o eroare de timeout), deci transferul nu este executat de două ori.
+     */
+    private String requestKey;
+    private List<Object> submitted;
 
     public void initData(AppConfig config, Client client) {
         this.appConfig = config;
@@ -28,7 +38,7 @@ public class TransferController {
             @Override
             public String toString(BankAccount account) {
                 if (account == null) return "";
-                return account.getCurrency() + " - " + account.getIban() + " (Balance: " + account.getBalance() + ")";
+                return account.getCurrency() + " - " + account.getIban() + " (Balance: " + Money.format(account.getBalance()) + ")";
             }
 
             @Override
@@ -58,14 +68,19 @@ public class TransferController {
             if (destination.isEmpty()) throw new IllegalArgumentException("Please enter a destination IBAN.");
             if (amountText.isEmpty()) throw new IllegalArgumentException("Please enter an amount.");
 
-            double amount;
+            long amount;
             try {
-                amount = Double.parseDouble(amountText);
+                amount = Money.parse(amountText);
             } catch (NumberFormatException e) {
-                throw new IllegalArgumentException("Invalid amount format.");
+                throw new IllegalArgumentException("Invalid amount format. Use at most 2 decimals.");
             }
 
-            appConfig.getBankService().transferMoney(source.getIban(), destination, amount, userDetails);
+            List<Object> request = List.of(source.getIban(), destination, amount, userDetails);
+            if (!request.equals(submitted)) {
+                requestKey = UUID.randomUUID().toString();
+                submitted = request;
+            }
+            appConfig.getBankService().transferMoney(source.getIban(), destination, amount, userDetails, requestKey);
             closeWindow();
 
         } catch (Exception e) {
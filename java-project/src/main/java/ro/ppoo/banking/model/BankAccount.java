@@ -3,21 +3,35 @@ package ro.ppoo.banking.model;
 import ro.ppoo.banking.enums.AccountType;
 import ro.ppoo.banking.enums.Currency;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class BankAccount implements Serializable {
-    private final String iban;
-    private double balance;
-    private final Currency currency;
-    private final AccountType type;
-    private final List<Transaction> transactions;
+    private static final long serialVersionUID = 1021592980966390451L;
+
+    // nu sunt final doar pentru readObject, care citește și formatul serializat vechi
+    private String iban;
+    /**
+     * Soldul, în subunități (vezi {@link Money}). Formatul serializat vechi păstra soldul
+     * ca <code>double</code>, în câmpul <code>balance</code>.
+     */
+    private long balanceMinor;
+    private Currency currency;
+    private AccountType type;
+    private List<Transaction> transactions;
     private boolean blocked = false;
+    private transient boolean readOnly;
 
-    public BankAccount(String iban, double balance, Currency currency, AccountType type) {
+    /**
+     * @param balance Soldul inițial, în subunități (vezi {@link Money}).
+     */
+    public BankAccount(String iban, long balance, Currency currency, AccountType type) {
         this.iban = iban;
-        this.balance = balance;
+        this.balanceMinor = balance;
         this.currency = currency;
         this.type = type;
         this.transactions = new ArrayList<>();
@@ -25,10 +39,14 @@ public class BankAccount implements Serializable {
 
     public BankAccount(BankAccount other) {
         this.iban = other.iban;
-        this.balance = other.balance;
+        this.balanceMinor = other.balanceMinor;
         this.currency = other.currency;
         this.type = other.type;
         this.blocked = other.blocked;
+        if (other.transactions instanceof TransactionHistory history) {
+            this.transactions = history.copy();
+            return;
+        }
         this.transactions = new ArrayList<>();
         if (other.transactions != null) {
             for (Transaction t : other.transactions) {
@@ -36,21 +54,74 @@ public class BankAccount implements Serializable {
             }
         }
     }
+
+    /**
+     * Creează o versiune nouă, doar pentru citire, a contului, cu soldul, starea și istoricul date.
+     * Istoricul nu este copiat, ci partajat cu versiunea anterioară.
+     */
+    public BankAccount withState(long balance, boolean blocked, List<Transaction> transactions) {
+        BankAccount next = new BankAccount(iban, balance, currency, type);
+        next.blocked = blocked;
+        next.transactions = transactions instanceof TransactionHistory
+                ? transactions
+                : Collections.unmodifiableList(transactions);
+        next.readOnly = true;
+        return next;
+    }
+
+    /**
+     * @return <code>true</code> pentru conturile returnate de depozit, care nu pot fi modificate direct.
+     */
+    public boolean isReadOnly() { return readOnly; }
+
     public boolean isBlocked() { return blocked; }
-    public void setBlocked(boolean blocked) { this.blocked = blocked; }
+    public void setBlocked(boolean blocked) {
+        checkWritable();
+        this.blocked = blocked;
+    }
     public String getIban() { return iban; }
-    public double getBalance() { return balance; }
+
+    /**
+     * @return Soldul, în subunități (vezi {@link Money}).
+     */
+    public long getBalance() { return balanceMinor; }
     public Currency getCurrency() { return currency; }
     public AccountType getType() { return type; }
     public List<Transaction> getTransactions() { return transactions; }
 
-    public void setBalance(double balance) {
-        this.balance = balance;
+    /**
+     * @param balance Soldul nou, în subunități.
+     */
+    public void setBalance(long balance) {
+        checkWritable();
+        this.balanceMinor = balance;
+    }
+
+    /**
+     * Citește atât formatul curent, cât și cel vechi, în care soldul era un <code>double</code>.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        iban = (String) fields.get("iban", null);
+        currency = (Currency) fields.get("currency", null);
+        type = (AccountType) fields.get("type", null);
+        transactions = (List<Transaction>) fields.get("transactions", null);
+        blocked = fields.get("blocked", false);
+        balanceMinor = fields.getObjectStreamClass().getField("balanceMinor") != null
+                ? fields.get("balanceMinor", 0L)
+                : Money.fromDouble(fields.get("balance", 0.0));
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Account " + iban + " is read-only; use a copy or a repository command.");
+        }
     }
 
     @Override
     public String toString() {
         String status = blocked ? "[BLOCKED]" : "";
-        return type + " " + status + " (" + currency + ") - " + iban + ": " + String.format("%.2f", balance);
+        return type + " " + status + " (" + currency + ") - " + iban + ": " + Money.format(balanceMinor);
     }
 }
\ No newline at end of file
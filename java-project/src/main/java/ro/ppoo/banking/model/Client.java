@@ -4,6 +4,8 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 public class Client implements Serializable {
+    private static final long serialVersionUID = -8132920287421251979L;
+
     private String firstname;
     private String lastname;
     private String email;
@@ -12,6 +14,7 @@ public class Client implements Serializable {
     private String CNP;
     private final boolean gdprAccepted;
     private String password;
+    private transient boolean readOnly;
 
     public Client(String firstname, String lastname, String email, String phone, String CNP, boolean gdprAccepted, String password) {
         this.firstname = firstname;
@@ -37,14 +40,48 @@ public class Client implements Serializable {
             this.accounts.add(new BankAccount(account));
         }
     }
+
+    /**
+     * Creează o versiune nouă, doar pentru citire, a clientului, cu profilul (nume, email, telefon,
+     * parolă) preluat din <code>profile</code>. Conturile nu sunt copiate, ci partajate.
+     */
+    public Client withProfile(Client profile) {
+        Client next = new Client(profile.firstname, profile.lastname, profile.email, profile.phone,
+                CNP, gdprAccepted, profile.password);
+        next.accounts = readOnly ? accounts : List.copyOf(accounts);
+        next.readOnly = true;
+        return next;
+    }
+
+    /**
+     * Creează o versiune nouă, doar pentru citire, a clientului, cu lista de conturi dată.
+     */
+    public Client withAccounts(List<BankAccount> accounts) {
+        Client next = new Client(firstname, lastname, email, phone, CNP, gdprAccepted, password);
+        next.accounts = List.copyOf(accounts);
+        next.readOnly = true;
+        return next;
+    }
+
+    /**
+     * @return <code>true</code> pentru clienții returnați de depozit, care nu pot fi modificați direct.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
     public String getPassword() { return password; }
-    public void setPassword(String password) { this.password = password; }
+    public void setPassword(String password) {
+        checkWritable();
+        this.password = password;
+    }
 
     public String getFirstname() {
         return firstname;
     }
 
     public void setFirstname(String firstname) {
+        checkWritable();
         this.firstname = firstname;
     }
 
@@ -53,6 +90,7 @@ public class Client implements Serializable {
     }
 
     public void setLastname(String lastname) {
+        checkWritable();
         this.lastname = lastname;
     }
 
@@ -61,6 +99,7 @@ public class Client implements Serializable {
     }
 
     public void setEmail(String email) {
+        checkWritable();
         this.email = email;
     }
 
@@ -69,6 +108,7 @@ public class Client implements Serializable {
     }
 
     public void setPhone(String phone) {
+        checkWritable();
         this.phone = phone;
     }
 
@@ -77,6 +117,7 @@ public class Client implements Serializable {
     }
 
     public void setAccounts(List<BankAccount> accounts) {
+        checkWritable();
         this.accounts = accounts;
     }
 
@@ -85,10 +126,17 @@ public class Client implements Serializable {
     }
 
     public void setCNP(String CNP) {
+        checkWritable();
         this.CNP = CNP;
     }
 
     public boolean isGdprAccepted() {
         return gdprAccepted;
     }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Client is read-only; use a copy or a repository command.");
+        }
+    }
 }
@@ -0,0 +1,71 @@
+package ro.ppoo.banking.model;
+
+import ro.ppoo.banking.enums.AccountType;
+import ro.ppoo.banking.enums.Currency;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Proiecție a unui client pentru ecranele de tip listă și rapoarte.
+ * <p>
+ * Conține datele de contact și agregatele conturilor (număr de conturi și tranzacții, sold total
+ * pe monedă, conturi pe monedă și pe tip), fără conturile sau tranzacțiile propriu-zise.
+ * Este calculată de depozit la fiecare modificare a clientului, deci citirea ei nu încarcă
+ * istoricul tranzacțiilor.
+ * </p>
+ */
+public class ClientSummary {
+    private final String CNP;
+    private final String firstname;
+    private final String lastname;
+    private final String email;
+    private final String phone;
+    private final int accountCount;
+    private final int transactionCount;
+    private final Map<Currency, Long> balanceByCurrency;
+    private final Map<Currency, Integer> accountsByCurrency;
+    private final Map<AccountType, Integer> accountsByType;
+
+    public ClientSummary(Client client) {
+        this.CNP = client.getCNP();
+        this.firstname = client.getFirstname();
+        this.lastname = client.getLastname();
+        this.email = client.getEmail();
+        this.phone = client.getPhone();
+
+        int transactions = 0;
+        Map<Currency, Long> balances = new EnumMap<>(Currency.class);
+        Map<Currency, Integer> byCurrency = new EnumMap<>(Currency.class);
+        Map<AccountType, Integer> byType = new EnumMap<>(AccountType.class);
+        for (BankAccount account : client.getAccounts()) {
+            // size() nu citește istoricul de pe disc
+            transactions += account.getTransactions().size();
+            balances.merge(account.getCurrency(), account.getBalance(), Long::sum);
+            byCurrency.merge(account.getCurrency(), 1, Integer::sum);
+            byType.merge(account.getType(), 1, Integer::sum);
+        }
+
+        this.accountCount = client.getAccounts().size();
+        this.transactionCount = transactions;
+        this.balanceByCurrency = Collections.unmodifiableMap(balances);
+        this.accountsByCurrency = Collections.unmodifiableMap(byCurrency);
+        this.accountsByType = Collections.unmodifiableMap(byType);
+    }
+
+    public String getCNP() { return CNP; }
+    public String getFirstname() { return firstname; }
+    public String getLastname() { return lastname; }
+    public String getEmail() { return email; }
+    public String getPhone() { return phone; }
+    public int getAccountCount() { return accountCount; }
+    public int getTransactionCount() { return transactionCount; }
+
+    /**
+     * @return Soldul total al conturilor clientului, în subunități, pentru fiecare monedă în care are conturi.
+     */
+    public Map<Currency, Long> getBalanceByCurrency() { return balanceByCurrency; }
+    public Map<Currency, Integer> getAccountsByCurrency() { return accountsByCurrency; }
+    public Map<AccountType, Integer> getAccountsByType() { return accountsByType; }
+}
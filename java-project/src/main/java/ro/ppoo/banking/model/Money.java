@@ -0,0 +1,74 @@
+package ro.ppoo.banking.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversii pentru sumele de bani, păstrate în aplicație ca <code>long</code>, în subunități
+ * (bani, cenți): 12,34 RON este <code>1234</code>.
+ * <p>
+ * Toate monedele folosite au {@value #SCALE} zecimale. Regulile de rotunjire sunt:
+ * <ul>
+ * <li>sumele introduse de utilizator trebuie să fie exacte: o sumă cu mai mult de {@value #SCALE}
+ * zecimale este respinsă, nu rotunjită;</li>
+ * <li>conversia valutară rotunjește o singură dată, la subunitate, prin
+ * {@link RoundingMode#HALF_EVEN} (vezi <code>CurrencyService#convert</code>);</li>
+ * <li>valorile <code>double</code> din formatele vechi de fișiere sunt rotunjite la subunitate tot prin
+ * {@link RoundingMode#HALF_EVEN}, pornind de la reprezentarea zecimală cea mai scurtă a valorii.</li>
+ * </ul>
+ * </p>
+ */
+public final class Money {
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * Citește o sumă scrisă de utilizator (ex: <code>"12.5"</code>, <code>"12,50"</code>).
+     *
+     * @return Suma în subunități.
+     * @throws NumberFormatException Dacă textul nu este un număr sau are mai mult de {@value #SCALE} zecimale.
+     */
+    public static long parse(String text) {
+        BigDecimal value;
+        try {
+            value = new BigDecimal(text.trim().replace(',', '.'));
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        if (value.stripTrailingZeros().scale() > SCALE) {
+            throw new NumberFormatException("Amounts can have at most " + SCALE + " decimals: " + text);
+        }
+        try {
+            return value.movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    /**
+     * Rotunjește o sumă <code>double</code> (din formatele vechi) la subunitate.
+     */
+    public static long fromDouble(double amount) {
+        return BigDecimal.valueOf(amount).setScale(SCALE, RoundingMode.HALF_EVEN).movePointRight(SCALE).longValueExact();
+    }
+
+    /**
+     * @return Suma ca <code>double</code>, doar pentru formatele vechi de fișiere și afișare.
+     */
+    public static double toDouble(long amount) {
+        return BigDecimal.valueOf(amount, SCALE).doubleValue();
+    }
+
+    public static BigDecimal toDecimal(long amount) {
+        return BigDecimal.valueOf(amount, SCALE);
+    }
+
+    /**
+     * @return Suma cu exact {@value #SCALE} zecimale (ex: <code>"12.50"</code>).
+     */
+    public static String format(long amount) {
+        return toDecimal(amount).toPlainString();
+    }
+}
@@ -0,0 +1,36 @@
+package ro.ppoo.banking.model;
+
+/**
+ * Un ordin de plată dintr-un lot (ex: o linie dintr-un fișier de salarii sau de plăți către furnizori).
+ * <p>
+ * Suma este exprimată în moneda contului sursă, ca la un transfer obișnuit.
+ * </p>
+ */
+public class PaymentOrder {
+    private final int line;
+    private final String sourceIban;
+    private final String destinationIban;
+    private final long amount;
+    private final String details;
+
+    /**
+     * @param line            Numărul liniei din fișier (sau poziția în lot), pentru raport.
+     * @param sourceIban      IBAN-ul contului sursă.
+     * @param destinationIban IBAN-ul contului destinație.
+     * @param amount          Suma de transferat, în subunități (vezi {@link Money}).
+     * @param details         Descrierea plății.
+     */
+    public PaymentOrder(int line, String sourceIban, String destinationIban, long amount, String details) {
+        this.line = line;
+        this.sourceIban = sourceIban;
+        this.destinationIban = destinationIban;
+        this.amount = amount;
+        this.details = details;
+    }
+
+    public int getLine() { return line; }
+    public String getSourceIban() { return sourceIban; }
+    public String getDestinationIban() { return destinationIban; }
+    public long getAmount() { return amount; }
+    public String getDetails() { return details; }
+}
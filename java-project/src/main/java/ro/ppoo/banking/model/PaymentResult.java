@@ -0,0 +1,37 @@
+package ro.ppoo.banking.model;
+
+/**
+ * Rezultatul unei linii dintr-un lot de plăți: executată sau respinsă, cu motivul respingerii.
+ */
+public class PaymentResult {
+    private final int line;
+    private final boolean executed;
+    private final String message;
+
+    private PaymentResult(int line, boolean executed, String message) {
+        this.line = line;
+        this.executed = executed;
+        this.message = message;
+    }
+
+    public static PaymentResult executed(int line) {
+        return new PaymentResult(line, true, null);
+    }
+
+    public static PaymentResult rejected(int line, String message) {
+        return new PaymentResult(line, false, message);
+    }
+
+    public int getLine() { return line; }
+    public boolean isExecuted() { return executed; }
+
+    /**
+     * @return Motivul respingerii, sau <code>null</code> pentru o plată executată.
+     */
+    public String getMessage() { return message; }
+
+    @Override
+    public String toString() {
+        return line + ": " + (executed ? "OK" : "REJECTED - " + message);
+    }
+}
@@ -1,61 +1,128 @@
 package ro.ppoo.banking.model;
 
 import ro.ppoo.banking.enums.TransactionType;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.time.LocalDate;
 
 public class Transaction implements Serializable {
-    private final int id;
-    private final LocalDate date;
-    private final double amount;
-    private final TransactionType type;
-    private BankAccount source;
-    private BankAccount destination;
-    private final String senderName;
-    private final String receiverName;
-    private final String details;
-
-    public Transaction(int id, LocalDate date, double amount, TransactionType type,
+    private static final long serialVersionUID = -1604984605206501611L;
+
+    /**
+     * Id-ul unic al tranzacției (vezi <code>TransactionIdGenerator</code>). Formatul serializat vechi
+     * păstra id-ul ca <code>int</code>, în câmpul <code>id</code>.
+     */
+    private long transactionId;
+    private LocalDate date;
+    /**
+     * Suma, în subunități (vezi {@link Money}). Formatul serializat vechi păstra suma
+     * ca <code>double</code>, în câmpul <code>amount</code>.
+     */
+    private long amountMinor;
+    private TransactionType type;
+    private String sourceIban;
+    private String destinationIban;
+    private String senderName;
+    private String receiverName;
+    private String details;
+
+    /**
+     * @param amount Suma, în subunități, în moneda contului în al cărui istoric apare tranzacția.
+     */
+    public Transaction(long id, LocalDate date, long amount, TransactionType type,
                        BankAccount source, BankAccount destination,
                        String senderName, String receiverName, String details) { // Parametru nou
-        this.id = id;
+        this(id, date, amount, type,
+                source != null ? source.getIban() : null,
+                destination != null ? destination.getIban() : null,
+                senderName, receiverName, details);
+    }
+
+    public Transaction(long id, LocalDate date, long amount, TransactionType type,
+                       String sourceIban, String destinationIban,
+                       String senderName, String receiverName, String details) {
+        this.transactionId = id;
         this.date = date;
-        this.amount = amount;
+        this.amountMinor = amount;
         this.type = type;
-        this.source = source;
-        this.destination = destination;
+        this.sourceIban = sourceIban;
+        this.destinationIban = destinationIban;
         this.senderName = senderName;
         this.receiverName = receiverName;
         this.details = details;
     }
 
     public Transaction(Transaction other) {
-        this.id = other.id;
+        this.transactionId = other.transactionId;
         this.date = other.date;
-        this.amount = other.amount;
+        this.amountMinor = other.amountMinor;
         this.type = other.type;
+        this.sourceIban = other.sourceIban;
+        this.destinationIban = other.destinationIban;
         this.senderName = other.senderName;
         this.receiverName = other.receiverName;
         this.details = other.details;
+    }
 
-        if (other.source != null) {
-            this.source = new BankAccount(other.source.getIban(), other.source.getBalance(), other.source.getCurrency(), other.source.getType());
+    /**
+     * Citește atât formatul curent, cât și cel vechi, în care tranzacția păstra
+     * copii complete ale conturilor sursă și destinație în loc de IBAN-uri, suma era un <code>double</code>
+     * și id-ul un <code>int</code>.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        transactionId = fields.getObjectStreamClass().getField("transactionId") != null
+                ? fields.get("transactionId", 0L)
+                : fields.get("id", 0);
+        date = (LocalDate) fields.get("date", null);
+        amountMinor = fields.getObjectStreamClass().getField("amountMinor") != null
+                ? fields.get("amountMinor", 0L)
+                : Money.fromDouble(fields.get("amount", 0.0));
+        type = (TransactionType) fields.get("type", null);
+        senderName = (String) fields.get("senderName", null);
+        receiverName = (String) fields.get("receiverName", null);
+        details = (String) fields.get("details", null);
+
+        sourceIban = readIban(fields, "sourceIban", "source");
+        destinationIban = readIban(fields, "destinationIban", "destination");
+    }
+
+    private static String readIban(ObjectInputStream.GetField fields, String ibanField, String legacyAccountField)
+            throws IOException {
+        if (fields.getObjectStreamClass().getField(ibanField) != null) {
+            return (String) fields.get(ibanField, null);
         }
-        if (other.destination != null) {
-            this.destination = new BankAccount(other.destination.getIban(), other.destination.getBalance(), other.destination.getCurrency(), other.destination.getType());
+        if (fields.getObjectStreamClass().getField(legacyAccountField) != null
+                && fields.get(legacyAccountField, null) instanceof BankAccount account) {
+            return account.getIban();
         }
+        return null;
     }
 
-
     public String getDetails() { return details; }
 
-    public int getId() { return id; }
+    public long getId() { return transactionId; }
     public LocalDate getDate() { return date; }
-    public double getAmount() { return amount; }
+    /**
+     * @return Suma, în subunități (vezi {@link Money}).
+     */
+    public long getAmount() { return amountMinor; }
     public TransactionType getType() { return type; }
     public String getSenderName() { return senderName; }
     public String getReceiverName() { return receiverName; }
 
-    public String getSourceIban() { return (source != null) ? source.getIban() : "System/Cash"; }
-    public String getDestinationIban() { return (destination != null) ? destination.getIban() : "System/Cash"; }
-}
\ No newline at end of file
+    /**
+     * @return IBAN-ul contului sursă, sau <code>null</code> pentru depunerile de numerar.
+     */
+    public String getSourceAccountIban() { return sourceIban; }
+
+    /**
+     * @return IBAN-ul contului destinație, sau <code>null</code> pentru retragerile de numerar.
+     */
+    public String getDestinationAccountIban() { return destinationIban; }
+
+    public String getSourceIban() { return (sourceIban != null) ? sourceIban : "System/Cash"; }
+    public String getDestinationIban() { return (destinationIban != null) ? destinationIban : "System/Cash"; }
+}
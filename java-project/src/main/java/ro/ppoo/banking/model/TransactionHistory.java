@@ -0,0 +1,211 @@
+package ro.ppoo.banking.model;
+
+import java.lang.ref.SoftReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Istoricul tranzacțiilor unui cont, citit de pe disc abia la prima accesare.
+ * <p>
+ * Lista are două părți:
+ * <ul>
+ * <li>tranzacțiile deja salvate, al căror număr este cunoscut fără a le citi și care sunt
+ * încărcate prin {@link Loader} doar când sunt parcurse. Lista încărcată este ținută printr-o
+ * referință {@link SoftReference}, deci poate fi eliberată de garbage collector când memoria
+ * se termină și va fi recitită la nevoie;</li>
+ * <li>tranzacțiile adăugate într-o copie de lucru (vezi {@link #copy()}), păstrate în memorie
+ * până când sunt salvate prin depozit.</li>
+ * </ul>
+ * Astfel, <code>size()</code> și <code>add()</code> nu citesc niciodată istoricul de pe disc.
+ * </p>
+ * <p>
+ * Un istoric creat prin constructor sau prin {@link #withPersisted(Transaction)} este o versiune
+ * doar pentru citire: fiecare tranzacție salvată produce o versiune nouă, iar versiunile unui
+ * cont împart aceleași tranzacții încărcate, fără a le copia.
+ * </p>
+ */
+public class TransactionHistory extends AbstractList<Transaction> {
+
+    /**
+     * Citește de pe disc primele <code>count</code> tranzacții salvate ale contului.
+     */
+    public interface Loader {
+        List<Transaction> load(int count);
+
+        /**
+         * Citește tranzacțiile salvate cu indicii din intervalul <code>[from, to)</code>.
+         * Implicit le citește pe toate până la <code>to</code>; depozitul citește doar blocurile necesare.
+         */
+        default List<Transaction> load(int from, int to) {
+            return load(to).subList(from, to);
+        }
+    }
+
+    private final Store store;
+    private final int persistedCount;
+    private final List<Transaction> appended;
+
+    public TransactionHistory(Loader loader, int persistedCount) {
+        this(new Store(loader), persistedCount, null);
+    }
+
+    private TransactionHistory(Store store, int persistedCount, List<Transaction> appended) {
+        this.store = store;
+        this.persistedCount = persistedCount;
+        this.appended = appended;
+    }
+
+    /**
+     * Creează o copie de lucru, în care se pot adăuga tranzacții, fără a încărca istoricul salvat.
+     * Tranzacțiile adăugate în copie nu apar în original și invers.
+     */
+    public TransactionHistory copy() {
+        List<Transaction> copied = new ArrayList<>();
+        if (appended != null) {
+            copied.addAll(appended);
+        }
+        return new TransactionHistory(store, persistedCount, copied);
+    }
+
+    /**
+     * Creează versiunea următoare a istoricului, după ce <code>transaction</code> a fost scrisă
+     * pe disc. Versiunea curentă rămâne neschimbată.
+     */
+    public TransactionHistory withPersisted(Transaction transaction) {
+        store.append(persistedCount, transaction);
+        return new TransactionHistory(store, persistedCount + 1, null);
+    }
+
+    @Override
+    public Transaction get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        if (index >= persistedCount) {
+            return appended.get(index - persistedCount);
+        }
+        return store.read(persistedCount)[index];
+    }
+
+    /**
+     * Returnează o copie a tranzacțiilor cu indicii din intervalul <code>[from, to)</code>.
+     * <p>
+     * Spre deosebire de {@link #subList(int, int)}, nu încarcă tot istoricul: dacă acesta nu este
+     * deja în memorie, citește doar intervalul cerut, fără a-l păstra. Este folosită pentru afișarea
+     * pe pagini a istoricelor lungi.
+     * </p>
+     */
+    public List<Transaction> slice(int from, int to) {
+        if (from < 0 || to > size() || from > to) {
+            throw new IndexOutOfBoundsException("Range: [" + from + ", " + to + "), size: " + size());
+        }
+
+        List<Transaction> slice = new ArrayList<>(to - from);
+        int persistedTo = Math.min(to, persistedCount);
+        if (from < persistedTo) {
+            Transaction[] cached = store.cached(persistedTo);
+            if (cached != null) {
+                slice.addAll(Arrays.asList(cached).subList(from, persistedTo));
+            } else {
+                slice.addAll(store.loader.load(from, persistedTo));
+            }
+        }
+        for (int i = Math.max(from, persistedCount); i < to; i++) {
+            slice.add(appended.get(i - persistedCount));
+        }
+        return slice;
+    }
+
+    @Override
+    public int size() {
+        return persistedCount + (appended != null ? appended.size() : 0);
+    }
+
+    @Override
+    public boolean add(Transaction transaction) {
+        if (appended == null) {
+            throw new UnsupportedOperationException("Transaction history is read-only; use a copy.");
+        }
+        appended.add(transaction);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public Iterator<Transaction> iterator() {
+        Transaction[] persisted = persistedCount > 0 ? store.read(persistedCount) : null;
+        return new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public Transaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int current = index++;
+                return current < persistedCount ? persisted[current] : appended.get(current - persistedCount);
+            }
+        };
+    }
+
+    /**
+     * Tranzacțiile salvate ale unui cont, comune tuturor versiunilor istoricului său.
+     * <p>
+     * Tabloul încărcat este doar extins: o versiune mai veche citește numai primele ei
+     * <code>persistedCount</code> elemente, care nu se mai schimbă.
+     * </p>
+     */
+    private static final class Store {
+        private final Loader loader;
+        private SoftReference<Transaction[]> cache = new SoftReference<>(null);
+        private int cachedCount;
+
+        Store(Loader loader) {
+            this.loader = loader;
+        }
+
+        /**
+         * @return Tabloul încărcat, dacă are cel puțin <code>count</code> tranzacții, altfel <code>null</code>.
+         */
+        synchronized Transaction[] cached(int count) {
+            Transaction[] cached = cache.get();
+            return cached != null && cachedCount >= count ? cached : null;
+        }
+
+        synchronized Transaction[] read(int count) {
+            Transaction[] cached = cache.get();
+            if (cached == null || cachedCount < count) {
+                List<Transaction> loaded = loader.load(count);
+                cached = loaded.toArray(new Transaction[Math.max(count, 1)]);
+                cachedCount = loaded.size();
+                cache = new SoftReference<>(cached);
+            }
+            return cached;
+        }
+
+        synchronized void append(int count, Transaction transaction) {
+            Transaction[] cached = cache.get();
+            if (cached == null) {
+                return;
+            }
+            if (cachedCount != count) {
+                cache = new SoftReference<>(null);
+                return;
+            }
+            if (cachedCount == cached.length) {
+                cached = Arrays.copyOf(cached, cached.length * 2);
+                cache = new SoftReference<>(cached);
+            }
+            cached[cachedCount++] = transaction;
+        }
+    }
+}
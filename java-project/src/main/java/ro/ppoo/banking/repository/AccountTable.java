@@ -0,0 +1,196 @@
+package ro.ppoo.banking.repository;
+
+import ro.ppoo.banking.enums.AccountType;
+import ro.ppoo.banking.enums.Currency;
+import ro.ppoo.banking.model.BankAccount;
+import ro.ppoo.banking.model.Money;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tabel de conturi mapat în memorie (<code>FileChannel.map</code>), cu înregistrări de lungime fixă.
+ * <p>
+ * Fiecare cont ocupă un slot de {@value #SLOT_SIZE} octeți. Soldul și starea de blocare sunt
+ * modificate direct în slot, astfel încât o salvare scrie pe disc doar paginile modificate.
+ * Structura unui slot:
+ * <ul>
+ * <li>octetul 0: starea slotului (liber / ocupat);</li>
+ * <li>octeții 1-3: moneda, tipul contului și indicatorul de blocare;</li>
+ * <li>octeții 8-15: soldul, în subunități (<code>long</code>, vezi {@link Money}); sloturile scrise
+ * înainte de trecerea la subunități au altă stare de ocupat și soldul <code>double</code>,
+ * rotunjit la citire, până la prima lor modificare;</li>
+ * <li>octetul 16: lungimea IBAN-ului, urmat de IBAN în ASCII (maxim {@value #MAX_IBAN_LENGTH} caractere).</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Metodele sunt sincronizate, deoarece conturi din partiții diferite ale depozitului pot fi
+ * modificate simultan, iar alocarea unui slot poate remapa fișierul.
+ * </p>
+ */
+class AccountTable {
+    static final int SLOT_SIZE = 64;
+    static final int MAX_IBAN_LENGTH = 34;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final byte FREE = 0;
+    private static final byte USED_DOUBLE = 1;
+    private static final byte USED = 2;
+
+    private static final int STATE = 0;
+    private static final int CURRENCY = 1;
+    private static final int TYPE = 2;
+    private static final int BLOCKED = 3;
+    private static final int BALANCE = 8;
+    private static final int IBAN_LENGTH = 16;
+    private static final int IBAN = 17;
+
+    private final File file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int slotCount;
+    private final Map<String, Integer> slotsByIban = new HashMap<>();
+
+    AccountTable(String path) {
+        this.file = new File(path);
+    }
+
+    /**
+     * Deschide tabelul păstrând doar primele <code>checkpointSlotCount</code> sloturi,
+     * adică cele cunoscute de catalogul salvat. Sloturile de după acestea sunt reconstruite din jurnal.
+     */
+    synchronized void open(int checkpointSlotCount) {
+        try {
+            File parent = file.getParentFile();
+            if (parent != null) parent.mkdirs();
+            if (channel == null) {
+                channel = new RandomAccessFile(file, "rw").getChannel();
+            }
+            slotsByIban.clear();
+            slotCount = checkpointSlotCount;
+            int minimumCapacity = Math.max(INITIAL_CAPACITY, slotCount);
+            map(Math.max(minimumCapacity, (int) (channel.size() / SLOT_SIZE)));
+        } catch (IOException e) {
+            throw new RuntimeException("Error at opening the account table", e);
+        }
+    }
+
+    synchronized int getSlotCount() {
+        return slotCount;
+    }
+
+    synchronized Integer slotOf(String iban) {
+        return slotsByIban.get(iban);
+    }
+
+    /**
+     * Citește contul dintr-un slot salvat și îl asociază IBAN-ului său.
+     *
+     * @return Contul citit, fără tranzacții, sau <code>null</code> dacă slotul este liber.
+     */
+    synchronized BankAccount load(int slot) {
+        int base = slot * SLOT_SIZE;
+        byte state = buffer.get(base + STATE);
+        if (state != USED && state != USED_DOUBLE) {
+            return null;
+        }
+
+        byte[] ibanBytes = new byte[buffer.get(base + IBAN_LENGTH)];
+        buffer.get(base + IBAN, ibanBytes);
+        String iban = new String(ibanBytes, StandardCharsets.US_ASCII);
+
+        BankAccount account = new BankAccount(
+                iban,
+                state == USED ? buffer.getLong(base + BALANCE) : Money.fromDouble(buffer.getDouble(base + BALANCE)),
+                Currency.values()[buffer.get(base + CURRENCY)],
+                AccountType.values()[buffer.get(base + TYPE)]
+        );
+        account.setBlocked(buffer.get(base + BLOCKED) != 0);
+        slotsByIban.put(iban, slot);
+        return account;
+    }
+
+    /**
+     * Citește contul dintr-un slot salvat, ca {@link #load(int)}, după ce îi scrie în slot soldul
+     * salvat în catalog. Soldul din slot poate fi mai nou decât checkpoint-ul, iar operațiile care
+     * l-au modificat sunt reluate din jurnal.
+     *
+     * @return Contul citit, sau <code>null</code> dacă slotul este liber.
+     */
+    synchronized BankAccount restore(int slot, long checkpointBalance) {
+        int base = slot * SLOT_SIZE;
+        byte state = buffer.get(base + STATE);
+        if (state != USED && state != USED_DOUBLE) {
+            return null;
+        }
+        buffer.putLong(base + BALANCE, checkpointBalance);
+        buffer.put(base + STATE, USED);
+        return load(slot);
+    }
+
+    /**
+     * Scrie soldul și starea contului în slotul lui, alocând un slot nou pentru conturile noi.
+     */
+    synchronized void put(BankAccount account) {
+        Integer slot = slotsByIban.get(account.getIban());
+        if (slot == null) {
+            slot = allocate(account);
+        }
+
+        int base = slot * SLOT_SIZE;
+        buffer.putLong(base + BALANCE, account.getBalance());
+        buffer.put(base + BLOCKED, (byte) (account.isBlocked() ? 1 : 0));
+        buffer.put(base + STATE, USED);
+    }
+
+    synchronized void remove(String iban) {
+        Integer slot = slotsByIban.remove(iban);
+        if (slot != null) {
+            buffer.put(slot * SLOT_SIZE + STATE, FREE);
+        }
+    }
+
+    /**
+     * Forțează scrierea pe disc a paginilor modificate.
+     */
+    synchronized void force() {
+        buffer.force();
+    }
+
+    private int allocate(BankAccount account) {
+        byte[] ibanBytes = account.getIban().getBytes(StandardCharsets.US_ASCII);
+        if (ibanBytes.length > MAX_IBAN_LENGTH) {
+            throw new IllegalArgumentException("IBAN is too long: " + account.getIban());
+        }
+        if (slotCount == capacity) {
+            map(capacity * 2);
+        }
+
+        int slot = slotCount++;
+        int base = slot * SLOT_SIZE;
+        buffer.put(base + CURRENCY, (byte) account.getCurrency().ordinal());
+        buffer.put(base + TYPE, (byte) account.getType().ordinal());
+        buffer.put(base + IBAN_LENGTH, (byte) ibanBytes.length);
+        buffer.put(base + IBAN, ibanBytes);
+        buffer.put(base + STATE, USED);
+        slotsByIban.put(account.getIban(), slot);
+        return slot;
+    }
+
+    private void map(int newCapacity) {
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) newCapacity * SLOT_SIZE);
+            capacity = newCapacity;
+        } catch (IOException e) {
+            throw new RuntimeException("Error at mapping the account table", e);
+        }
+    }
+}
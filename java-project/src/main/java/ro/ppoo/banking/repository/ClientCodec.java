@@ -0,0 +1,477 @@
+package ro.ppoo.banking.repository;
+
+import ro.ppoo.banking.enums.AccountType;
+import ro.ppoo.banking.enums.Currency;
+import ro.ppoo.banking.enums.TransactionType;
+import ro.ppoo.banking.model.BankAccount;
+import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.Money;
+import ro.ppoo.banking.model.Transaction;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codec binar, versionat, pentru clienți, conturi și tranzacții.
+ * <p>
+ * Este folosit de catalog, de jurnal și de segmentele de istoric. Versiunea este scrisă
+ * în antetul fiecărui fișier (sau cadru din jurnal), astfel încât datele scrise de o versiune
+ * mai veche rămân lizibile după actualizarea aplicației.
+ * </p>
+ * <ul>
+ * <li><b>Versiunea 1</b> - formatul inițial: câmpuri de lungime fixă și șiruri scrise cu
+ * <code>writeUTF</code>. Id-urile tranzacțiilor au aici 32 de biți, deci id-urile de 64 de biți
+ * sunt trunchiate; istoricul nu mai adaugă tranzacții în segmentele scrise cu această versiune.</li>
+ * <li><b>Versiunea 2</b> - formatul compact: numerele întregi sunt varint-uri (zigzag pentru
+ * valorile cu semn), moneda, tipul și starea contului sunt împachetate într-un singur octet,
+ * iar șirurile care se repetă (CNP-uri, nume, detalii, IBAN-uri) sunt scrise o singură dată
+ * într-un dicționar și apoi referite prin index. Fiecare înregistrare este precedată de lungimea
+ * ei, deci o versiune viitoare poate adăuga câmpuri la final fără a strica cititorii existenți.</li>
+ * <li><b>Versiunea 3</b> - la fel ca versiunea 2, plus istoricul în blocuri: tranzacțiile unui cont
+ * sunt scrise împreună (vezi {@link #writeTransactionBlock}), iar segmentele de istoric
+ * comprimă fiecare bloc.</li>
+ * <li><b>Versiunea 4</b> - la fel ca versiunea 3, dar soldurile și sumele sunt scrise exact, în
+ * subunități (vezi {@link Money}), ca varint-uri zigzag, nu ca <code>double</code>. Valorile
+ * <code>double</code> ale versiunilor anterioare sunt rotunjite la subunitate la citire.</li>
+ * </ul>
+ * <p>
+ * Dicționarul trăiește cât instanța codec-ului: un fișier de catalog, un cadru din jurnal
+ * sau o înregistrare (bloc) din istoric. De aceea o instanță nu trebuie folosită pentru mai multe fluxuri.
+ * </p>
+ */
+final class ClientCodec {
+    static final int LEGACY_VERSION = 1;
+    static final int CURRENT_VERSION = 4;
+
+    /**
+     * Prima versiune care scrie istoricul în blocuri de tranzacții.
+     */
+    static final int BLOCK_VERSION = 3;
+
+    /**
+     * Prima versiune care scrie sumele în subunități, nu ca <code>double</code>.
+     */
+    static final int MONEY_VERSION = 4;
+
+    private static final int NULL_STRING = 0;
+    private static final int NEW_STRING = 1;
+    private static final int FIRST_REFERENCE = 2;
+
+    private final int version;
+    private final Map<String, Integer> writeDictionary = new HashMap<>();
+    private final List<String> readDictionary = new ArrayList<>();
+
+    ClientCodec(int version) {
+        if (version < LEGACY_VERSION || version > CURRENT_VERSION) {
+            throw new IllegalArgumentException("Unsupported storage codec version: " + version);
+        }
+        this.version = version;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    void writeClient(DataOutput out, Client client) throws IOException {
+        if (version == LEGACY_VERSION) {
+            out.writeUTF(client.getCNP());
+            writeUtfOrNull(out, client.getFirstname());
+            writeUtfOrNull(out, client.getLastname());
+            writeUtfOrNull(out, client.getEmail());
+            writeUtfOrNull(out, client.getPhone());
+            out.writeBoolean(client.isGdprAccepted());
+            writeUtfOrNull(out, client.getPassword());
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        writeShared(record, client.getCNP());
+        writeShared(record, client.getFirstname());
+        writeShared(record, client.getLastname());
+        writeLiteral(record, client.getEmail());
+        writeLiteral(record, client.getPhone());
+        record.writeBoolean(client.isGdprAccepted());
+        writeLiteral(record, client.getPassword());
+        writeRecord(out, bytes);
+    }
+
+    /**
+     * Citește profilul unui client; lista de conturi a obiectului returnat este goală.
+     */
+    Client readClient(DataInput in) throws IOException {
+        if (version == LEGACY_VERSION) {
+            String cnp = in.readUTF();
+            String firstname = readUtfOrNull(in);
+            String lastname = readUtfOrNull(in);
+            String email = readUtfOrNull(in);
+            String phone = readUtfOrNull(in);
+            boolean gdprAccepted = in.readBoolean();
+            String password = readUtfOrNull(in);
+            return new Client(firstname, lastname, email, phone, cnp, gdprAccepted, password);
+        }
+
+        DataInputStream record = readRecord(in);
+        String cnp = readShared(record);
+        String firstname = readShared(record);
+        String lastname = readShared(record);
+        String email = readLiteral(record);
+        String phone = readLiteral(record);
+        boolean gdprAccepted = record.readBoolean();
+        String password = readLiteral(record);
+        return new Client(firstname, lastname, email, phone, cnp, gdprAccepted, password);
+    }
+
+    void writeAccount(DataOutput out, BankAccount account) throws IOException {
+        if (version == LEGACY_VERSION) {
+            out.writeUTF(account.getIban());
+            out.writeByte(account.getCurrency().ordinal());
+            out.writeByte(account.getType().ordinal());
+            out.writeDouble(Money.toDouble(account.getBalance()));
+            out.writeBoolean(account.isBlocked());
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        writeShared(record, account.getIban());
+        record.writeByte(account.getCurrency().ordinal() << 4
+                | account.getType().ordinal() << 1
+                | (account.isBlocked() ? 1 : 0));
+        writeAmount(record, account.getBalance());
+        writeRecord(out, bytes);
+    }
+
+    BankAccount readAccount(DataInput in) throws IOException {
+        if (version == LEGACY_VERSION) {
+            String iban = in.readUTF();
+            Currency currency = Currency.values()[in.readByte()];
+            AccountType type = AccountType.values()[in.readByte()];
+            long balance = Money.fromDouble(in.readDouble());
+            boolean blocked = in.readBoolean();
+
+            BankAccount account = new BankAccount(iban, balance, currency, type);
+            account.setBlocked(blocked);
+            return account;
+        }
+
+        DataInputStream record = readRecord(in);
+        String iban = readShared(record);
+        int packed = record.readUnsignedByte();
+        long balance = readAmount(record);
+
+        BankAccount account = new BankAccount(iban, balance,
+                Currency.values()[packed >> 4], AccountType.values()[(packed >> 1) & 0x7]);
+        account.setBlocked((packed & 1) != 0);
+        return account;
+    }
+
+    void writeTransaction(DataOutput out, Transaction transaction) throws IOException {
+        if (version == LEGACY_VERSION) {
+            out.writeInt((int) transaction.getId());
+            out.writeLong(transaction.getDate().toEpochDay());
+            out.writeDouble(Money.toDouble(transaction.getAmount()));
+            out.writeByte(transaction.getType().ordinal());
+            writeUtfOrNull(out, transaction.getSourceAccountIban());
+            writeUtfOrNull(out, transaction.getDestinationAccountIban());
+            writeUtfOrNull(out, transaction.getSenderName());
+            writeUtfOrNull(out, transaction.getReceiverName());
+            writeUtfOrNull(out, transaction.getDetails());
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        writeVarLong(record, zigzag(transaction.getId()));
+        writeVarLong(record, zigzag(transaction.getDate().toEpochDay()));
+        writeAmount(record, transaction.getAmount());
+        record.writeByte(transaction.getType().ordinal());
+        writeShared(record, transaction.getSourceAccountIban());
+        writeShared(record, transaction.getDestinationAccountIban());
+        writeShared(record, transaction.getSenderName());
+        writeShared(record, transaction.getReceiverName());
+        writeShared(record, transaction.getDetails());
+        writeRecord(out, bytes);
+    }
+
+    /**
+     * Scrie mai multe tranzacții ale aceluiași cont ca un singur bloc.
+     * <p>
+     * Id-urile și datele sunt scrise ca diferențe față de tranzacția anterioară (de regulă
+     * un octet fiecare), iar IBAN-urile, numele și detaliile trec prin dicționarul instanței,
+     * deci o valoare repetată în bloc (ex: "Cash Deposit at ATM") este scrisă o singură dată.
+     * </p>
+     */
+    void writeTransactionBlock(DataOutput out, List<Transaction> transactions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream block = new DataOutputStream(bytes);
+        long previousId = 0;
+        long previousDay = 0;
+        for (Transaction transaction : transactions) {
+            long day = transaction.getDate().toEpochDay();
+            writeVarLong(block, zigzag(transaction.getId() - previousId));
+            writeVarLong(block, zigzag(day - previousDay));
+            writeAmount(block, transaction.getAmount());
+            block.writeByte(transaction.getType().ordinal());
+            writeShared(block, transaction.getSourceAccountIban());
+            writeShared(block, transaction.getDestinationAccountIban());
+            writeShared(block, transaction.getSenderName());
+            writeShared(block, transaction.getReceiverName());
+            writeShared(block, transaction.getDetails());
+            previousId = transaction.getId();
+            previousDay = day;
+        }
+        writeRecord(out, bytes);
+    }
+
+    /**
+     * Citește un bloc scris cu {@link #writeTransactionBlock}. Tranzacțiile din bloc împart
+     * instanțele șirurilor și datelor care se repetă.
+     *
+     * @param count Numărul de tranzacții din bloc.
+     */
+    List<Transaction> readTransactionBlock(DataInput in, int count) throws IOException {
+        DataInputStream block = readRecord(in);
+        List<Transaction> transactions = new ArrayList<>(count);
+        long id = 0;
+        LocalDate date = LocalDate.ofEpochDay(0);
+        for (int i = 0; i < count; i++) {
+            id += unzigzag(readVarLong(block));
+            long dayDelta = unzigzag(readVarLong(block));
+            if (dayDelta != 0) {
+                date = date.plusDays(dayDelta);
+            }
+            long amount = readAmount(block);
+            TransactionType type = TransactionType.values()[block.readByte()];
+            String sourceIban = readShared(block);
+            String destinationIban = readShared(block);
+            String senderName = readShared(block);
+            String receiverName = readShared(block);
+            String details = readShared(block);
+            transactions.add(new Transaction(id, date, amount, type, sourceIban, destinationIban,
+                    senderName, receiverName, details));
+        }
+        return transactions;
+    }
+
+    Transaction readTransaction(DataInput in) throws IOException {
+        if (version == LEGACY_VERSION) {
+            int id = in.readInt();
+            LocalDate date = LocalDate.ofEpochDay(in.readLong());
+            long amount = Money.fromDouble(in.readDouble());
+            TransactionType type = TransactionType.values()[in.readByte()];
+            String sourceIban = readUtfOrNull(in);
+            String destinationIban = readUtfOrNull(in);
+            String senderName = readUtfOrNull(in);
+            String receiverName = readUtfOrNull(in);
+            String details = readUtfOrNull(in);
+            return new Transaction(id, date, amount, type, sourceIban, destinationIban, senderName, receiverName, details);
+        }
+
+        DataInputStream record = readRecord(in);
+        long id = unzigzag(readVarLong(record));
+        LocalDate date = LocalDate.ofEpochDay(unzigzag(readVarLong(record)));
+        long amount = readAmount(record);
+        TransactionType type = TransactionType.values()[record.readByte()];
+        String sourceIban = readShared(record);
+        String destinationIban = readShared(record);
+        String senderName = readShared(record);
+        String receiverName = readShared(record);
+        String details = readShared(record);
+        return new Transaction(id, date, amount, type, sourceIban, destinationIban, senderName, receiverName, details);
+    }
+
+    /**
+     * Scrie o sumă în subunități: exact, ca varint zigzag, din versiunea {@value #MONEY_VERSION},
+     * altfel ca <code>double</code>.
+     */
+    void writeAmount(DataOutput out, long amount) throws IOException {
+        if (version >= MONEY_VERSION) {
+            writeVarLong(out, zigzag(amount));
+        } else {
+            out.writeDouble(Money.toDouble(amount));
+        }
+    }
+
+    long readAmount(DataInput in) throws IOException {
+        return version >= MONEY_VERSION
+                ? unzigzag(readVarLong(in))
+                : Money.fromDouble(in.readDouble());
+    }
+
+    /**
+     * Scrie o cheie (CNP, IBAN) care însoțește o înregistrare în jurnal sau în istoric.
+     * În versiunea 2 cheia intră în dicționar, deci IBAN-ul contului nu mai este repetat
+     * în câmpurile sursă / destinație ale tranzacției care urmează.
+     */
+    void writeKey(DataOutput out, String key) throws IOException {
+        if (version == LEGACY_VERSION) {
+            out.writeUTF(key);
+        } else {
+            writeShared(out, key);
+        }
+    }
+
+    String readKey(DataInput in) throws IOException {
+        return version == LEGACY_VERSION ? in.readUTF() : readShared(in);
+    }
+
+    /**
+     * Scrie un număr întreg fără semn ca varint (7 biți pe octet, bitul superior marchează continuarea).
+     */
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeRecord(DataOutput out, ByteArrayOutputStream record) throws IOException {
+        writeVarLong(out, record.size());
+        out.write(record.toByteArray());
+    }
+
+    /**
+     * Citește o înregistrare întreagă; câmpurile adăugate de versiuni viitoare, aflate la final,
+     * rămân necitite și sunt ignorate.
+     */
+    private static DataInputStream readRecord(DataInput in) throws IOException {
+        byte[] record = new byte[(int) readVarLong(in)];
+        in.readFully(record);
+        return new DataInputStream(new RecordInput(record));
+    }
+
+    /**
+     * Scrie un șir care se repetă des; aparițiile ulterioare sunt doar un index în dicționar.
+     */
+    private void writeShared(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, NULL_STRING);
+            return;
+        }
+
+        Integer index = writeDictionary.get(value);
+        if (index != null) {
+            writeVarLong(out, FIRST_REFERENCE + index);
+            return;
+        }
+
+        writeDictionary.put(value, writeDictionary.size());
+        writeVarLong(out, NEW_STRING);
+        writeBytes(out, value);
+    }
+
+    private String readShared(DataInput in) throws IOException {
+        int tag = (int) readVarLong(in);
+        if (tag == NULL_STRING) {
+            return null;
+        }
+        if (tag == NEW_STRING) {
+            String value = readBytes(in);
+            readDictionary.add(value);
+            return value;
+        }
+        return readDictionary.get(tag - FIRST_REFERENCE);
+    }
+
+    /**
+     * Scrie un șir unic (parolă, email, telefon), care nu merită păstrat în dicționar.
+     */
+    private static void writeLiteral(DataOutput out, String value) throws IOException {
+        writeVarLong(out, value == null ? NULL_STRING : NEW_STRING);
+        if (value != null) {
+            writeBytes(out, value);
+        }
+    }
+
+    private static String readLiteral(DataInput in) throws IOException {
+        return readVarLong(in) == NULL_STRING ? null : readBytes(in);
+    }
+
+    private static void writeBytes(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeUtfOrNull(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readUtfOrNull(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Flux peste octeții unei înregistrări. Spre deosebire de {@link ByteArrayInputStream}, nu este
+     * sincronizat: varint-urile și șirurile sunt citite octet cu octet, iar o înregistrare este
+     * citită de un singur fir.
+     */
+    private static final class RecordInput extends InputStream {
+        private final byte[] bytes;
+        private int position;
+
+        RecordInput(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            return position < bytes.length ? bytes[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= bytes.length) {
+                return -1;
+            }
+            int count = Math.min(length, bytes.length - position);
+            System.arraycopy(bytes, position, target, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return bytes.length - position;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package ro.ppoo.banking.repository;
+
+import ro.ppoo.banking.model.BankAccount;
+import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.Transaction;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Jurnal de tip write-ahead pentru modificările aduse clienților.
+ * <p>
+ * Fiecare modificare (client nou, cont nou, sold modificat, tranzacție nouă) este adăugată
+ * la finalul fișierului și forțată pe disc înainte de a fi aplicată în memorie.
+ * La pornire, jurnalul este reluat peste ultimul snapshot din <code>clients.dat</code>,
+ * astfel încât o oprire bruscă a aplicației nu pierde operațiunile deja confirmate.
+ * </p>
+ * <p>
+ * Un cadru (frame) din fișier are forma <code>[lungime][secvență][CRC32][versiune][operații]</code>,
+ * unde versiunea este cea a {@link ClientCodec}-ului folosit pentru operații.
+ * Operațiile dintr-un cadru sunt aplicate împreună sau deloc; un cadru incomplet sau corupt
+ * de la finalul fișierului (scriere întreruptă) este ignorat și trunchiat.
+ * </p>
+ * <p>
+ * Scrierea cadrelor este sincronizată, deci grupurile pot fi confirmate din mai multe fire de
+ * execuție; aplicarea lor în memorie rămâne responsabilitatea apelantului (vezi {@link ClientRepository}).
+ * </p>
+ * <p>
+ * Forțarea pe disc se face în grup (group commit): un cadru este scris fără <code>fsync</code>,
+ * apoi firul care îl confirmă așteaptă până când un singur <code>fsync</code> acoperă cadrul.
+ * Dacă nu rulează niciunul, firul îl pornește el însuși pentru toate cadrele scrise până atunci;
+ * altfel așteaptă sfârșitul celui în curs. Astfel, cât timp durează un <code>fsync</code>,
+ * cadrele celorlalte fire se adună și sunt confirmate toate de următorul.
+ * </p>
+ */
+class ClientJournal {
+    private static final byte PUT_CLIENT = 1;
+    private static final byte DELETE_CLIENT = 2;
+    private static final byte PUT_ACCOUNT = 3;
+    private static final byte DELETE_ACCOUNT = 4;
+    private static final byte ADD_TRANSACTION = 5;
+    private static final byte ADJUST_BALANCE = 6;
+    /**
+     * Cheie de idempotență fără amprentă, scrisă de versiunile anterioare; doar citită.
+     */
+    private static final byte LEGACY_RECORD_REQUEST = 7;
+    private static final byte RECORD_REQUEST = 8;
+
+    /**
+     * Marchează începutul unui cadru versionat. Cadrele scrise înainte de introducerea
+     * versiunilor încep direct cu codul unei operații și sunt citite cu versiunea 1.
+     */
+    private static final byte VERSION_MARKER = (byte) 0x80;
+
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    /**
+     * Primește operațiile citite din jurnal, în ordinea în care au fost scrise.
+     */
+    interface Replayer {
+        void putClient(Client client);
+        void deleteClient(String cnp);
+        void putAccount(String cnp, BankAccount account);
+        void deleteAccount(String cnp, String iban);
+        void addTransaction(String iban, Transaction transaction);
+
+        /**
+         * Adaugă <code>amount</code> (în subunități, poate fi negativ) la soldul unui cont.
+         * Spre deosebire de {@link #putAccount}, care scrie soldul final, diferențele pot fi
+         * aplicate în orice ordine.
+         */
+        void adjustBalance(String iban, long amount);
+
+        /**
+         * Reține că operația cu cheia de idempotență <code>key</code> a fost executată, cu rezultatul
+         * <code>result</code>. Scrisă în același cadru cu operația, deci o cheie reluată din jurnal
+         * corespunde mereu unei operații aplicate.
+         *
+         * @param fingerprint Amprenta parametrilor operației, sau {@link IdempotencyCache#UNKNOWN_FINGERPRINT}
+         *                    pentru cheile scrise fără amprentă.
+         * @param recordedAt  Momentul execuției, în milisecunde.
+         */
+        void recordRequest(String key, long fingerprint, long result, long recordedAt);
+    }
+
+    private final File file;
+    private final int codecVersion;
+    private FileChannel channel;
+    private long lastSequence;
+
+    private final Object durability = new Object();
+    private long durableSequence;
+    private boolean syncing;
+    private long syncCount;
+
+    ClientJournal(String path, int codecVersion) {
+        this.file = new File(path);
+        this.codecVersion = codecVersion;
+    }
+
+    synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return Numărul de apeluri <code>fsync</code> făcute pentru confirmarea cadrelor.
+     */
+    long getSyncCount() {
+        synchronized (durability) {
+            return syncCount;
+        }
+    }
+
+    Batch begin() {
+        return new Batch();
+    }
+
+    /**
+     * Reia toate cadrele cu secvența mai mare decât cea a snapshot-ului încărcat.
+     *
+     * @param snapshotSequence Ultima secvență deja inclusă în snapshot.
+     * @param replayer         Destinația operațiilor citite.
+     * @return Numărul de cadre reluate.
+     */
+    synchronized long replay(long snapshotSequence, Replayer replayer) {
+        lastSequence = snapshotSequence;
+        if (!file.exists()) {
+            return 0;
+        }
+
+        long replayed = 0;
+        long validLength = 0;
+        long fileLength = file.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                long sequence;
+                int checksum;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    sequence = in.readLong();
+                    checksum = in.readInt();
+                    // o lungime mai mare decât restul fișierului vine dintr-un cadru scris incomplet;
+                    // nu se alocă nimic pe baza ei, iar coada este trunchiată
+                    if (length < 0 || length > fileLength - validLength - HEADER_SIZE) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    System.err.println("Journal: corrupt frame " + sequence + ", ignoring the rest of the file");
+                    break;
+                }
+
+                if (sequence > snapshotSequence) {
+                    applyFrame(payload, replayer);
+                    replayed++;
+                }
+                lastSequence = Math.max(lastSequence, sequence);
+                validLength += HEADER_SIZE + length;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error at reading the journal", e);
+        }
+
+        if (validLength < fileLength) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            } catch (IOException e) {
+                throw new RuntimeException("Error at truncating the journal", e);
+            }
+        }
+        synchronized (durability) {
+            durableSequence = lastSequence;
+        }
+        return replayed;
+    }
+
+    /**
+     * Golește jurnalul după ce un snapshot complet a fost scris pe disc.
+     */
+    synchronized void reset() {
+        try {
+            channel().truncate(0);
+            channel().force(true);
+        } catch (IOException e) {
+            throw new RuntimeException("Error at resetting the journal", e);
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            File parent = file.getParentFile();
+            if (parent != null) parent.mkdirs();
+            channel = new FileOutputStream(file, true).getChannel();
+        }
+        return channel;
+    }
+
+    /**
+     * Scrie un cadru la finalul fișierului, fără a-l forța pe disc.
+     *
+     * @return Secvența cadrului.
+     */
+    private synchronized long append(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        frame.putInt(payload.length);
+        frame.putLong(lastSequence + 1);
+        frame.putInt((int) crc.getValue());
+        frame.put(payload);
+        frame.flip();
+
+        try {
+            FileChannel out = channel();
+            while (frame.hasRemaining()) {
+                out.write(frame);
+            }
+            return ++lastSequence;
+        } catch (IOException e) {
+            throw new RuntimeException("Error at writing the journal", e);
+        }
+    }
+
+    /**
+     * Așteaptă până când cadrul cu secvența dată este forțat pe disc.
+     * Primul fir care găsește forțarea liberă o face pentru toate cadrele scrise până atunci.
+     */
+    private void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        synchronized (durability) {
+            while (durableSequence < sequence && syncing) {
+                try {
+                    durability.wait();
+                } catch (InterruptedException e) {
+                    // confirmarea nu poate fi abandonată: cadrul este deja scris
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (durableSequence >= sequence) {
+                return;
+            }
+            syncing = true;
+        }
+
+        long target;
+        FileChannel out;
+        synchronized (this) {
+            target = lastSequence;
+            out = channel;
+        }
+
+        boolean forced = false;
+        try {
+            out.force(false);
+            forced = true;
+        } catch (IOException e) {
+            throw new RuntimeException("Error at writing the journal", e);
+        } finally {
+            synchronized (durability) {
+                syncing = false;
+                if (forced) {
+                    durableSequence = Math.max(durableSequence, target);
+                    syncCount++;
+                }
+                durability.notifyAll();
+            }
+        }
+    }
+
+    private void applyFrame(byte[] payload, Replayer replayer) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        ClientCodec codec;
+        if (payload.length > 0 && payload[0] == VERSION_MARKER) {
+            in.readByte();
+            codec = new ClientCodec(in.readUnsignedByte());
+        } else {
+            codec = new ClientCodec(ClientCodec.LEGACY_VERSION);
+        }
+
+        while (in.available() > 0) {
+            byte op = in.readByte();
+            switch (op) {
+                case PUT_CLIENT -> replayer.putClient(codec.readClient(in));
+                case DELETE_CLIENT -> replayer.deleteClient(codec.readKey(in));
+                case PUT_ACCOUNT -> {
+                    String cnp = codec.readKey(in);
+                    replayer.putAccount(cnp, codec.readAccount(in));
+                }
+                case DELETE_ACCOUNT -> {
+                    String cnp = codec.readKey(in);
+                    replayer.deleteAccount(cnp, codec.readKey(in));
+                }
+                case ADD_TRANSACTION -> {
+                    String iban = codec.readKey(in);
+                    replayer.addTransaction(iban, codec.readTransaction(in));
+                }
+                case ADJUST_BALANCE -> {
+                    String iban = codec.readKey(in);
+                    replayer.adjustBalance(iban, codec.readAmount(in));
+                }
+                case LEGACY_RECORD_REQUEST -> {
+                    String key = codec.readKey(in);
+                    long result = in.readLong();
+                    replayer.recordRequest(key, IdempotencyCache.UNKNOWN_FINGERPRINT, result, in.readLong());
+                }
+                case RECORD_REQUEST -> {
+                    String key = codec.readKey(in);
+                    long fingerprint = in.readLong();
+                    long result = in.readLong();
+                    replayer.recordRequest(key, fingerprint, result, in.readLong());
+                }
+                default -> throw new IOException("Unknown journal operation: " + op);
+            }
+        }
+    }
+
+    /**
+     * Grup de operații scrise în jurnal ca un singur cadru, la apelul {@link #commit(Replayer)}.
+     */
+    class Batch {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(buffer);
+        private final ClientCodec codec = new ClientCodec(codecVersion);
+        private boolean empty = true;
+
+        private DataOutputStream operation(byte op) throws IOException {
+            if (empty) {
+                if (codec.getVersion() > ClientCodec.LEGACY_VERSION) {
+                    out.writeByte(VERSION_MARKER);
+                    out.writeByte(codec.getVersion());
+                }
+                empty = false;
+            }
+            out.writeByte(op);
+            return out;
+        }
+
+        void putClient(Client client) {
+            try {
+                codec.writeClient(operation(PUT_CLIENT), client);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void deleteClient(String cnp) {
+            try {
+                codec.writeKey(operation(DELETE_CLIENT), cnp);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void putAccount(String cnp, BankAccount account) {
+            try {
+                codec.writeKey(operation(PUT_ACCOUNT), cnp);
+                codec.writeAccount(out, account);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void deleteAccount(String cnp, String iban) {
+            try {
+                codec.writeKey(operation(DELETE_ACCOUNT), cnp);
+                codec.writeKey(out, iban);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void addTransaction(String iban, Transaction transaction) {
+            try {
+                codec.writeKey(operation(ADD_TRANSACTION), iban);
+                codec.writeTransaction(out, transaction);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void adjustBalance(String iban, long amount) {
+            try {
+                codec.writeKey(operation(ADJUST_BALANCE), iban);
+                codec.writeAmount(out, amount);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void recordRequest(String key, long fingerprint, long result, long recordedAt) {
+            try {
+                codec.writeKey(operation(RECORD_REQUEST), key);
+                out.writeLong(fingerprint);
+                out.writeLong(result);
+                out.writeLong(recordedAt);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Scrie operațiile acumulate, așteaptă confirmarea scrierii pe disc (împreună cu cadrele
+         * scrise între timp de alte fire) și abia apoi le aplică prin <code>replayer</code>.
+         * Un grup gol nu produce niciun cadru.
+         */
+        void commit(Replayer replayer) {
+            if (empty) {
+                return;
+            }
+
+            byte[] payload = buffer.toByteArray();
+            awaitDurable(append(payload));
+            try {
+                applyFrame(payload, replayer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -1,105 +1,2052 @@
 package ro.ppoo.banking.repository;
+import ro.ppoo.banking.enums.Currency;
+import ro.ppoo.banking.model.BankAccount;
 import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.ClientSummary;
+import ro.ppoo.banking.model.Transaction;
+import ro.ppoo.banking.model.TransactionHistory;
 
 import java.io.*;
+import java.text.Normalizer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
 
 /**
  * Gestionează persistența datelor utilizând fișiere binare.
  * <p>
- * Această clasă implementează mecanismul de salvare și încărcare a listei de clienți
- * (împreună cu conturile și tranzacțiile lor) folosind serializarea Java.
+ * Datele sunt împărțite în trei structuri:
+ * <ul>
+ * <li><code>clients.dat</code> - catalogul cu profilurile clienților și sloturile conturilor;</li>
+ * <li>{@link AccountTable} - soldurile și starea conturilor, în înregistrări fixe mapate în memorie;</li>
+ * <li>{@link HistoryLog} - tranzacțiile, în segmente append-only mapate în memorie;</li>
+ * <li>{@link HistoryArchive} - tranzacțiile mai vechi de orizontul de arhivare, în fișiere lunare
+ * (vezi {@link #archiveHistory(LocalDate)}).</li>
+ * </ul>
+ * Tranzacțiile nu sunt ținute în memorie: fiecare cont primește un {@link TransactionHistory}
+ * care le citește din segmente abia când istoricul contului este afișat.
  * Asigură continuitatea datelor între rulările aplicației.
  * </p>
+ * <p>
+ * Orice modificare este scrisă mai întâi în jurnalul {@link ClientJournal} și abia apoi
+ * aplicată în memorie și în fișierele mapate. Catalogul reține secvența ultimei operații
+ * incluse în checkpoint, iar la pornire jurnalul este reluat peste el.
+ * </p>
+ * <p>
+ * Clienții și conturile returnate sunt versiuni doar pentru citire, partajate fără copiere:
+ * o modificare nu schimbă obiectele existente, ci creează versiuni noi ale clientului și
+ * contului afectat, refolosind restul datelor. Un cititor vede astfel mereu o stare consistentă.
+ * Modificările se fac doar prin comenzile depozitului ({@link #updateProfile}, {@link #addAccount},
+ * {@link #post(Posting...)} etc.).
+ * </p>
+ * <p>
+ * Depozitul poate fi folosit din mai multe fire de execuție. Clienții sunt împărțiți după
+ * hash-ul CNP-ului în {@value #SHARD_COUNT} partiții, fiecare cu propriul lacăt, iar conturile
+ * după hash-ul IBAN-ului în {@value #ACCOUNT_STRIPES} lacăte de cont:
+ * <ul>
+ * <li>citirile nu blochează, deoarece obiectele publicate nu se mai modifică;</li>
+ * <li>comenzile pe profilul unui client blochează partiția lui;</li>
+ * <li>operațiile pe sold ({@link #post(Posting...)}, {@link #postAll(List)}) blochează conturile
+ * implicate doar în mod partajat, deci nu se așteaptă între ele, nici pe același cont: sumele
+ * debitate sunt rezervate prin compare-and-set pe soldul disponibil al contului, iar jurnalul
+ * reține modificările de sold ca diferențe;</li>
+ * <li>comenzile care schimbă starea sau existența conturilor (blocare, închidere, ștergerea
+ * clientului) blochează exclusiv conturile implicate, deci așteaptă terminarea operațiilor pe
+ * sold în curs. Partiția titularului este blocată doar cât este publicată noua versiune a clientului;</li>
+ * <li>checkpoint-ul și încărcarea blochează exclusiv toate conturile și toate partițiile.</li>
+ * </ul>
+ * Lacătele sunt obținute mereu în aceeași ordine: întâi conturile, apoi partițiile, fiecare în
+ * ordinea crescătoare a indicilor, deci comenzile nu se pot bloca reciproc.
+ * Scrierea în jurnal, în tabelul de conturi și în istoric este sincronizată în clasele respective.
+ * </p>
  */
 public class ClientRepository {
-    private final List<Client> clients = new ArrayList<>();
-    private final String FILE_PATH = "data/clients.dat";
+    /**
+     * Numărul de partiții; o putere a lui 2, pentru ca partiția să fie aleasă prin mascarea hash-ului.
+     */
+    private static final int SHARD_COUNT = 64;
+
+    /**
+     * Numărul de lacăte pentru conturi; tot o putere a lui 2. Două IBAN-uri pot împărți un lacăt,
+     * caz în care operațiile lor doar se execută pe rând.
+     */
+    private static final int ACCOUNT_STRIPES = 1024;
+
+    private final Shard[] shards = new Shard[SHARD_COUNT];
+    private final ReentrantReadWriteLock[] accountLocks = new ReentrantReadWriteLock[ACCOUNT_STRIPES];
+    /**
+     * Soldul disponibil al fiecărui cont, în subunități: soldul publicat, minus sumele rezervate
+     * de debitările încă nescrise în jurnal (vezi {@link #reserve}).
+     */
+    private final Map<String, AtomicLong> balances = new ConcurrentHashMap<>();
+    private final IdempotencyCache requests = new IdempotencyCache();
+    private final Map<String, String> cnpByIban = new ConcurrentHashMap<>();
+    private final Map<String, String> cnpByEmail = new ConcurrentHashMap<>();
+    private final Map<String, String> cnpByPhone = new ConcurrentHashMap<>();
+    /**
+     * Indexul de prefixe pentru căutarea după nume: cheile au forma <code>[cuvânt][\0][CNP]</code>,
+     * câte una pentru fiecare cuvânt normalizat din prenumele și numele clientului.
+     */
+    private final ConcurrentSkipListMap<String, String> cnpByName = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, String> cnpByOrder = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextOrder = new AtomicLong();
+    private final AtomicLong orderVersion = new AtomicLong();
+    private volatile OrderSnapshot orderSnapshot = new OrderSnapshot(-1, null, new String[0]);
+    /**
+     * Crește la orice schimbare a datelor de contact, inclusiv la adăugarea și ștergerea unui client.
+     */
+    private final AtomicLong contactVersion = new AtomicLong();
+    private volatile OrderSnapshot sortedSnapshot = new OrderSnapshot(-1, null, new String[0]);
+    private final String FILE_PATH;
+    private final String PREVIOUS_FILE_PATH;
+    private final String TEMP_FILE_PATH;
+    private final String JOURNAL_PATH;
+    private final String TABLE_PATH;
+    private final String HISTORY_DIRECTORY;
+    private final String ARCHIVE_DIRECTORY;
+    private static final int CATALOG_MAGIC = 0x50504F43;
+    private static final short CATALOG_VERSION = 7;
+    private static final int CATALOG_CHUNK_SIZE = 1024;
+    private static final String REUSED_KEY = "The idempotency key was already used for a different request.";
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NAME_SEPARATORS = Pattern.compile("[\\s-]+");
+
+    /**
+     * Execută decodarea blocurilor de catalog și indexarea istoricului la pornire: pe
+     * {@link ForkJoinPool#commonPool()} când există mai multe procesoare, altfel pe firul apelant.
+     */
+    private static final Executor LOAD_EXECUTOR = ForkJoinPool.getCommonPoolParallelism() > 1
+            ? ForkJoinPool.commonPool()
+            : Runnable::run;
+
+    private final int codecVersion;
+    private final ClientJournal journal;
+    private final AccountTable accountTable;
+    private final HistoryLog history;
+    private final HistoryArchive archive;
+    private final ClientJournal.Replayer applier = new JournalApplier();
+    private volatile TransactionColumns columns;
+    private final Object columnsBuild = new Object();
+    /**
+     * Ținut de checkpoint-uri, de încărcare și de toată durata unei arhivări, în timpul căreia
+     * catalogul nu poate fi rescris (vezi {@link #archiveHistory(LocalDate)}).
+     */
+    private final Object checkpoints = new Object();
+    private LocalDate archivedBefore;
+
+    public ClientRepository() {
+        this(ClientCodec.CURRENT_VERSION);
+    }
+
+    /**
+     * Creează un depozit care scrie datele noi cu o anumită versiune a formatului binar.
+     * <p>
+     * Fișierele existente sunt citite cu versiunea cu care au fost scrise, indiferent
+     * de versiunea aleasă aici.
+     * </p>
+     *
+     * @param codecVersion Versiunea {@link ClientCodec} folosită pentru scriere.
+     */
+    public ClientRepository(int codecVersion) {
+        this("data", codecVersion);
+    }
+
+    /**
+     * Creează un depozit ale cărui fișiere se află în <code>directory</code>, scrise cu cea mai recentă versiune a formatului.
+     */
+    public ClientRepository(String directory) {
+        this(directory, ClientCodec.CURRENT_VERSION);
+    }
+
+    /**
+     * Creează un depozit ale cărui fișiere se află într-un alt director decât <code>data</code>.
+     *
+     * @param directory    Directorul fișierelor depozitului.
+     * @param codecVersion Versiunea {@link ClientCodec} folosită pentru scriere.
+     */
+    public ClientRepository(String directory, int codecVersion) {
+        if (codecVersion < ClientCodec.LEGACY_VERSION || codecVersion > ClientCodec.CURRENT_VERSION) {
+            throw new IllegalArgumentException("Unsupported storage codec version: " + codecVersion);
+        }
+        this.FILE_PATH = directory + "/clients.dat";
+        this.PREVIOUS_FILE_PATH = directory + "/clients.dat.prev";
+        this.TEMP_FILE_PATH = directory + "/clients.dat.tmp";
+        this.JOURNAL_PATH = directory + "/clients.journal";
+        this.TABLE_PATH = directory + "/accounts.tbl";
+        this.HISTORY_DIRECTORY = directory + "/history";
+        this.ARCHIVE_DIRECTORY = directory + "/archive";
+        this.codecVersion = codecVersion;
+        this.accountTable = new AccountTable(TABLE_PATH);
+        this.journal = new ClientJournal(JOURNAL_PATH, codecVersion);
+        this.history = new HistoryLog(HISTORY_DIRECTORY, codecVersion);
+        this.archive = new HistoryArchive(ARCHIVE_DIRECTORY, codecVersion);
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new Shard();
+        }
+        for (int i = 0; i < ACCOUNT_STRIPES; i++) {
+            accountLocks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Caută un client în baza de date locală pe baza CNP-ului criptat.
+     *
+     * @param CNP CNP-ul criptat al clientului căutat.
+     * @return Obiectul {@link ro.ppoo.banking.model.Client}, doar pentru citire, dacă este găsit, altfel <code>null</code>.
+     */
+    public Client findByCNP(String CNP){
+        Entry entry = shard(CNP).entries.get(CNP);
+        return entry != null ? entry.client : null;
+    }
+
+    /**
+     * Caută titularul unui cont folosind indexul IBAN -> CNP.
+     *
+     * @param iban IBAN-ul contului căutat.
+     * @return Clientul care deține contul, doar pentru citire, sau <code>null</code> dacă IBAN-ul nu există.
+     */
+    public Client findByAccountIban(String iban) {
+        String cnp = cnpByIban.get(iban);
+        return cnp != null ? findByCNP(cnp) : null;
+    }
+
+    /**
+     * Caută un client după adresa de email, fără a ține cont de majuscule sau de spațiile de la capete.
+     *
+     * @return Clientul, doar pentru citire, sau <code>null</code> dacă adresa nu este înregistrată.
+     */
+    public Client findByEmail(String email) {
+        String key = normalizeEmail(email);
+        String cnp = key != null ? cnpByEmail.get(key) : null;
+        return cnp != null ? findByCNP(cnp) : null;
+    }
+
+    /**
+     * Caută un client după numărul de telefon, ignorând separatorii și prefixul +40.
+     *
+     * @return Clientul, doar pentru citire, sau <code>null</code> dacă numărul nu este înregistrat.
+     */
+    public Client findByPhone(String phone) {
+        String key = normalizePhone(phone);
+        String cnp = key != null ? cnpByPhone.get(key) : null;
+        return cnp != null ? findByCNP(cnp) : null;
+    }
+
+    /**
+     * Caută clienții ale căror nume încep cu cuvintele date, pentru căutarea incrementală.
+     * <p>
+     * Fiecare cuvânt al căutării trebuie să fie începutul unui cuvânt din prenume sau nume,
+     * în orice ordine ("ion pop" găsește și "Popescu Ion"). Majusculele și diacriticele nu contează.
+     * Cel mai lung cuvânt (de obicei cel mai selectiv) este căutat în indexul de prefixe, iar restul
+     * doar filtrează candidații, deci costul depinde de numărul de potriviri parcurse, nu de numărul
+     * total de clienți.
+     * </p>
+     *
+     * @param limit Numărul maxim de rezultate.
+     * @return Proiecțiile clienților găsiți, în ordinea alfabetică a cuvântului căutat în index.
+     */
+    public List<ClientSummary> searchByName(String query, int limit) {
+        List<String> words = nameWords(query);
+        if (words.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        String prefix = Collections.max(words, Comparator.comparingInt(String::length));
+        Set<String> seen = new HashSet<>();
+        List<ClientSummary> matches = new ArrayList<>();
+        for (String cnp : cnpByName.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+            if (!seen.add(cnp)) {
+                continue;
+            }
+            Entry entry = shard(cnp).entries.get(cnp);
+            if (entry != null && matchesName(entry.client, words)) {
+                matches.add(entry.summary);
+                if (matches.size() == limit) break;
+            }
+        }
+        return Collections.unmodifiableList(matches);
+    }
+
+    /**
+     * @return Lista clienților, în ordinea înregistrării. Obiectele nu sunt copiate.
+     */
+    public List<Client> getAll(){
+        List<Client> clients = new ArrayList<>(cnpByOrder.size());
+        for (String cnp : cnpByOrder.values()) {
+            Entry entry = shard(cnp).entries.get(cnp);
+            if (entry != null) clients.add(entry.client);
+        }
+        return Collections.unmodifiableList(clients);
+    }
+
+    /**
+     * Returnează proiecțiile tuturor clienților, în ordinea înregistrării.
+     * <p>
+     * Proiecțiile sunt actualizate la fiecare modificare a unui client, deci apelul doar copiază
+     * referințele, fără a parcurge conturile sau tranzacțiile.
+     * </p>
+     */
+    public List<ClientSummary> getSummaries() {
+        List<ClientSummary> summaries = new ArrayList<>(cnpByOrder.size());
+        for (String cnp : cnpByOrder.values()) {
+            Entry entry = shard(cnp).entries.get(cnp);
+            if (entry != null) summaries.add(entry.summary);
+        }
+        return Collections.unmodifiableList(summaries);
+    }
+
+    /**
+     * @return Numărul clienților înregistrați.
+     */
+    public int getClientCount() {
+        return orderedCnps().length;
+    }
+
+    /**
+     * Returnează o pagină din proiecțiile clienților, în ordinea înregistrării.
+     * <p>
+     * Pagina este citită dintr-o copie sub formă de tablou a ordinii clienților, refăcută doar după
+     * ce un client a fost adăugat sau șters, deci costul unei pagini nu depinde de poziția ei.
+     * </p>
+     *
+     * @param offset Poziția primului client din pagină.
+     * @param limit  Numărul maxim de clienți din pagină.
+     */
+    public List<ClientSummary> getSummaries(int offset, int limit) {
+        return page(orderedCnps(), offset, limit);
+    }
+
+    /**
+     * Returnează o pagină din proiecțiile clienților, sortate după <code>order</code>.
+     * <p>
+     * Sortarea se face peste toți clienții, nu doar peste pagină: ordinea CNP-urilor este calculată
+     * o singură dată și refolosită pentru paginile următoare, până la o altă ordine sau până când
+     * se schimbă datele de contact ale unui client. Clienții egali după <code>order</code> rămân
+     * în ordinea înregistrării.
+     * </p>
+     *
+     * @param order Ordinea clienților; <code>null</code> pentru ordinea înregistrării. Același obiect
+     *              trebuie folosit pentru toate paginile, ca ordinea să nu fie recalculată.
+     */
+    public List<ClientSummary> getSummaries(int offset, int limit, Comparator<? super ClientSummary> order) {
+        return page(order != null ? sortedCnps(order) : orderedCnps(), offset, limit);
+    }
+
+    private List<ClientSummary> page(String[] cnps, int offset, int limit) {
+        int to = (int) Math.min(cnps.length, (long) Math.max(offset, 0) + Math.max(limit, 0));
+        List<ClientSummary> summaries = new ArrayList<>(Math.max(to - offset, 0));
+        for (int i = Math.max(offset, 0); i < to; i++) {
+            Entry entry = shard(cnps[i]).entries.get(cnps[i]);
+            if (entry != null) summaries.add(entry.summary);
+        }
+        return Collections.unmodifiableList(summaries);
+    }
+
+    /**
+     * CNP-urile clienților în ordinea înregistrării. Tabloul este refăcut când versiunea ordinii
+     * s-a schimbat; o modificare făcută în timpul copierii schimbă din nou versiunea, deci
+     * copia eventual incompletă este refăcută la următorul apel.
+     */
+    private String[] orderedCnps() {
+        OrderSnapshot snapshot = orderSnapshot;
+        long version = orderVersion.get();
+        if (snapshot.version != version) {
+            snapshot = new OrderSnapshot(version, null, cnpByOrder.values().toArray(new String[0]));
+            orderSnapshot = snapshot;
+        }
+        return snapshot.cnps;
+    }
+
+    /**
+     * CNP-urile clienților sortate după <code>order</code>, refăcute doar pentru altă ordine sau după
+     * o schimbare a datelor de contact. Proiecțiile sunt citite din nou la fiecare pagină, deci
+     * soldurile și conturile afișate sunt mereu cele curente.
+     */
+    private String[] sortedCnps(Comparator<? super ClientSummary> order) {
+        OrderSnapshot snapshot = sortedSnapshot;
+        long version = contactVersion.get();
+        if (snapshot.version != version || snapshot.order != order) {
+            List<ClientSummary> summaries = new ArrayList<>(getSummaries());
+            summaries.sort(order);
+            snapshot = new OrderSnapshot(version, order, summaries.stream().map(ClientSummary::getCNP).toArray(String[]::new));
+            sortedSnapshot = snapshot;
+        }
+        return snapshot.cnps;
+    }
+
+    /**
+     * Returnează copia pe coloane a tranzacțiilor, pentru agregări în rapoarte.
+     * <p>
+     * Coloanele nu sunt salvate pe disc: sunt construite la primul apel din istoricul conturilor
+     * existente, apoi sunt completate la fiecare tranzacție nouă, până la următoarea încărcare.
+     * </p>
+     * <p>
+     * Construirea nu blochează scrierile decât cât este luat un instantaneu: sub toate lacătele
+     * sunt reținute doar conturile și numărul tranzacțiilor lor salvate, iar coloanele noi sunt
+     * publicate pentru aplicarea jurnalului, deci primesc de acum înainte tranzacțiile noi. Istoricul
+     * de dinaintea instantaneului este apoi citit cont cu cont, fără lacăte. Rândurile nu sunt
+     * în ordinea tranzacțiilor, dar agregările nu depind de ordine. Apelurile simultane așteaptă
+     * aceeași construire.
+     * </p>
+     */
+    public TransactionColumns getTransactionColumns() {
+        TransactionColumns current = columns;
+        if (current != null && current.isComplete()) {
+            return current;
+        }
+
+        synchronized (columnsBuild) {
+            while (true) {
+                current = columns;
+                if (current != null && current.isComplete()) {
+                    return current;
+                }
+                TransactionColumns built = buildColumns();
+                // o încărcare sau o arhivare în timpul construirii renunță la coloane; se reconstruiesc
+                if (columns == built) {
+                    built.markComplete();
+                    return built;
+                }
+            }
+        }
+    }
+
+    /**
+     * Construiește coloanele pornind de la un instantaneu al conturilor (vezi {@link #getTransactionColumns()}).
+     */
+    private TransactionColumns buildColumns() {
+        TransactionColumns built = new TransactionColumns();
+        List<ColumnsSource> sources = new ArrayList<>();
+        lockAll();
+        try {
+            for (String cnp : cnpByOrder.values()) {
+                Entry entry = shard(cnp).entries.get(cnp);
+                if (entry == null) continue;
+                for (BankAccount account : entry.client.getAccounts()) {
+                    String iban = account.getIban();
+                    sources.add(new ColumnsSource(iban, built.register(iban), account.getCurrency(), history.count(iban)));
+                }
+            }
+            columns = built;
+        } finally {
+            unlockAll();
+        }
+
+        for (ColumnsSource source : sources) {
+            built.appendAll(source.accountId, source.currency, history.read(source.iban, source.count));
+        }
+        return built;
+    }
+
+    /**
+     * Înregistrează un client nou, împreună cu conturile și tranzacțiile lui.
+     *
+     * @throws IllegalArgumentException Dacă CNP-ul, email-ul sau telefonul sunt deja înregistrate.
+     */
+    public void add(Client client){
+        int[] locked = lock(client.getCNP());
+        try {
+            if (findByCNP(client.getCNP()) != null) {
+                throw new IllegalArgumentException("This CNP is already registered");
+            }
+
+            try {
+                reserveContacts(client.getCNP(), client.getEmail(), client.getPhone());
+                ClientJournal.Batch batch = journal.begin();
+                batch.putClient(client);
+                for (BankAccount account : client.getAccounts()) {
+                    batch.putAccount(client.getCNP(), account);
+                    for (Transaction transaction : account.getTransactions()) {
+                        batch.addTransaction(account.getIban(), transaction);
+                    }
+                }
+                batch.commit(applier);
+            } finally {
+                releaseContacts(client.getCNP(), client.getEmail(), client.getPhone());
+            }
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    /**
+     * Modifică datele de contact ale unui client. CNP-ul, parola și conturile rămân neschimbate.
+     *
+     * @throws IllegalArgumentException Dacă clientul nu există sau noul email / telefon aparține altui client.
+     */
+    public void updateProfile(String cnp, String firstname, String lastname, String email, String phone) {
+        int[] locked = lock(cnp);
+        try {
+            Client existing = requireClient(cnp);
+            // doar valorile schimbate sunt verificate, ca un profil importat cu duplicate să poată fi modificat
+            String newEmail = Objects.equals(normalizeEmail(email), normalizeEmail(existing.getEmail())) ? null : email;
+            String newPhone = Objects.equals(normalizePhone(phone), normalizePhone(existing.getPhone())) ? null : phone;
+
+            try {
+                reserveContacts(cnp, newEmail, newPhone);
+                ClientJournal.Batch batch = journal.begin();
+                batch.putClient(new Client(firstname, lastname, email, phone, cnp,
+                        existing.isGdprAccepted(), existing.getPassword()));
+                batch.commit(applier);
+            } finally {
+                releaseContacts(cnp, newEmail, newPhone);
+            }
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    /**
+     * Înlocuiește parola (deja criptată) a unui client.
+     *
+     * @throws IllegalArgumentException Dacă clientul nu există.
+     */
+    public void updatePassword(String cnp, String password) {
+        int[] locked = lock(cnp);
+        try {
+            Client existing = requireClient(cnp);
+
+            ClientJournal.Batch batch = journal.begin();
+            batch.putClient(new Client(existing.getFirstname(), existing.getLastname(), existing.getEmail(),
+                    existing.getPhone(), cnp, existing.isGdprAccepted(), password));
+            batch.commit(applier);
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    /**
+     * Deschide un cont nou pentru un client existent.
+     *
+     * @throws IllegalArgumentException Dacă clientul nu există sau IBAN-ul este deja folosit.
+     */
+    public void addAccount(String cnp, BankAccount account) {
+        int[] locked = lock(cnp);
+        try {
+            requireClient(cnp);
+            // rezervă IBAN-ul atomic, deoarece titularul altui cont cu același IBAN poate fi în altă partiție
+            if (cnpByIban.putIfAbsent(account.getIban(), cnp) != null) {
+                throw new IllegalArgumentException("IBAN already exists: " + account.getIban());
+            }
+
+            try {
+                ClientJournal.Batch batch = journal.begin();
+                batch.putAccount(cnp, account);
+                for (Transaction transaction : account.getTransactions()) {
+                    batch.addTransaction(account.getIban(), transaction);
+                }
+                batch.commit(applier);
+            } catch (RuntimeException e) {
+                if (findStoredAccount(account.getIban()) == null) {
+                    cnpByIban.remove(account.getIban(), cnp);
+                }
+                throw e;
+            }
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    /**
+     * Închide un cont. Tranzacțiile lui nu mai pot fi citite după ștergere.
+     */
+    public void removeAccount(String iban) {
+        int[] locked = lockAccounts(List.of(iban));
+        try {
+            if (findStoredAccount(iban) == null) {
+                return;
+            }
+
+            ClientJournal.Batch batch = journal.begin();
+            batch.deleteAccount(cnpByIban.get(iban), iban);
+            batch.commit(applier);
+        } finally {
+            unlockAccounts(locked);
+        }
+    }
+
+    /**
+     * Blochează sau deblochează un cont.
+     *
+     * @throws IllegalArgumentException Dacă IBAN-ul nu există.
+     */
+    public void setBlocked(String iban, boolean blocked) {
+        int[] locked = lockAccounts(List.of(iban));
+        try {
+            BankAccount account = workingCopy(iban);
+            account.setBlocked(blocked);
+
+            ClientJournal.Batch batch = journal.begin();
+            batch.putAccount(cnpByIban.get(iban), account);
+            batch.commit(applier);
+        } finally {
+            unlockAccounts(locked);
+        }
+    }
+
+    /**
+     * Aplică una sau mai multe înregistrări contabile printr-o singură intrare în jurnal.
+     * <p>
+     * Folosită pentru depuneri, retrageri și transferuri: fie toate soldurile și tranzacțiile
+     * ajung pe disc, fie niciuna. Sumele debitate sunt rezervate înainte de scriere, prin
+     * compare-and-set pe soldul disponibil al contului, deci două debitări simultane nu pot trece
+     * amândouă de verificarea soldului, fără ca operațiile pe același cont să se aștepte una pe alta
+     * (vezi {@link #reserve}).
+     * </p>
+     *
+     * @param postings Înregistrările de aplicat, în ordine.
+     * @throws IllegalArgumentException Dacă un cont nu există, un cont debitat este blocat
+     *                                  sau soldul ar deveni negativ.
+     */
+    public void post(Posting... postings) {
+        String rejection = apply(List.<Posting[]>of(postings), null, null, null).get(0);
+        if (rejection != null) {
+            throw new IllegalArgumentException(rejection);
+        }
+    }
+
+    /**
+     * Aplică înregistrările ca {@link #post(Posting...)}, o singură dată pentru o cheie de idempotență.
+     * <p>
+     * Cheia și rezultatul sunt scrise în jurnal în același cadru cu înregistrările, deci o operație
+     * reținută este mereu una aplicată, și invers. Dacă operația cu aceeași cheie a fost deja executată
+     * (inclusiv înainte de o repornire), înregistrările nu mai sunt aplicate și este returnat
+     * rezultatul original. O operație respinsă nu este reținută, deci poate fi reîncercată.
+     * Cheile expiră după 24 de ore (vezi {@link IdempotencyCache}).
+     * </p>
+     * <p>
+     * Odată cu cheia este reținută amprenta parametrilor operației, calculată de apelant (ex: prin
+     * {@link #fingerprint(Object...)}). O cheie refolosită cu alți parametri este respinsă, în loc
+     * să primească rezultatul operației originale.
+     * </p>
+     *
+     * @param requestKey  Cheia de idempotență, aleasă de client pentru operație și refolosită la reîncercări.
+     * @param fingerprint Amprenta parametrilor operației.
+     * @param result      Rezultatul reținut pentru cheie (ex: id-ul tranzacției).
+     * @return <code>result</code>, sau rezultatul operației executate anterior cu aceeași cheie.
+     * @throws IllegalArgumentException Dacă operația este respinsă, ca la {@link #post(Posting...)},
+     *                                  o operație cu aceeași cheie este în execuție sau cheia a fost
+     *                                  folosită pentru o operație cu alți parametri.
+     */
+    public long post(String requestKey, long fingerprint, long result, Posting... postings) {
+        long[] results = {result};
+        String rejection = postAll(List.<Posting[]>of(postings), Collections.singletonList(requestKey),
+                new long[]{fingerprint}, results).get(0);
+        if (rejection != null) {
+            throw new IllegalArgumentException(rejection);
+        }
+        return results[0];
+    }
+
+    /**
+     * @param fingerprint Amprenta parametrilor operației (vezi {@link #post(String, long, long, Posting...)}).
+     * @return Rezultatul operației executate cu cheia de idempotență dată, sau <code>null</code>
+     * dacă nu există sau cheia a expirat.
+     * @throws IllegalArgumentException Dacă cheia a fost folosită pentru o operație cu alți parametri.
+     */
+    public Long findRequestResult(String requestKey, long fingerprint) {
+        IdempotencyCache.Request request = requests.find(requestKey, System.currentTimeMillis());
+        if (request == null) {
+            return null;
+        }
+        if (!request.matches(fingerprint)) {
+            throw new IllegalArgumentException(REUSED_KEY);
+        }
+        return request.result;
+    }
+
+    /**
+     * Calculează amprenta parametrilor unei operații cu cheie de idempotență (FNV-1a pe 64 de biți
+     * peste reprezentarea text a parametrilor, în ordine). Nu este niciodată
+     * {@link IdempotencyCache#UNKNOWN_FINGERPRINT}.
+     *
+     * @param parameters Tipul operației și parametrii ei (ex: conturile și suma).
+     */
+    public static long fingerprint(Object... parameters) {
+        long hash = 0xcbf29ce484222325L;
+        for (Object parameter : parameters) {
+            for (byte b : String.valueOf(parameter).getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+            }
+            // separatorul deosebește ("ab", "c") de ("a", "bc")
+            hash = (hash ^ 0xff) * 0x100000001b3L;
+        }
+        return hash != IdempotencyCache.UNKNOWN_FINGERPRINT ? hash : 1;
+    }
+
+    /**
+     * Aplică un lot de operațiuni independente (ex: plățile dintr-un fișier) printr-o singură
+     * intrare în jurnal.
+     * <p>
+     * Fiecare operațiune este un grup de înregistrări aplicat ca la {@link #post(Posting...)}:
+     * toate sau niciuna. Operațiunile sunt verificate în ordinea din listă, iar o operațiune poate
+     * folosi și sumele creditate de cele acceptate înaintea ei în același lot; o operațiune respinsă
+     * nu le afectează pe celelalte. Operațiunile acceptate sunt scrise împreună, cu un singur
+     * <code>fsync</code>, deci costul unui lot mare nu mai este dominat de forțarea pe disc a
+     * fiecărei operațiuni.
+     * </p>
+     *
+     * @param operations Operațiunile lotului, în ordine.
+     * @return Pentru fiecare operațiune, motivul respingerii, sau <code>null</code> dacă a fost aplicată.
+     */
+    public List<String> postAll(List<Posting[]> operations) {
+        return apply(operations, null, null, null);
+    }
+
+    /**
+     * Aplică un lot ca {@link #postAll(List)}, în care fiecare operațiune poate avea o cheie de
+     * idempotență (vezi {@link #post(String, long, long, Posting...)}).
+     * <p>
+     * O operațiune executată anterior cu aceeași cheie și aceeași amprentă nu este aplicată din nou
+     * și nici respinsă: primește în <code>results</code> rezultatul original; cu altă amprentă, este
+     * respinsă. O cheie care apare de mai multe ori în lot este executată o singură dată, iar
+     * repetările primesc rezultatul primei apariții.
+     * </p>
+     *
+     * @param requestKeys  Cheia fiecărei operațiuni, sau <code>null</code> pentru operațiunile fără cheie.
+     * @param fingerprints Amprenta parametrilor fiecărei operațiuni cu cheie.
+     * @param results      Rezultatul reținut pentru fiecare operațiune cu cheie; la revenire, conține
+     *                     rezultatul original al operațiunilor executate anterior.
+     * @return Pentru fiecare operațiune, motivul respingerii, sau <code>null</code> dacă a fost aplicată
+     * (acum sau anterior).
+     */
+    public List<String> postAll(List<Posting[]> operations, List<String> requestKeys, long[] fingerprints,
+                                long[] results) {
+        int count = operations.size();
+        String[] rejections = new String[count];
+        int[] repeatOf = new int[count];
+        Arrays.fill(repeatOf, -1);
+        Map<String, Integer> firstByKey = new HashMap<>();
+        List<String> started = new ArrayList<>();
+        List<Integer> pending = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                String key = requestKeys.get(i);
+                if (key == null) {
+                    pending.add(i);
+                    continue;
+                }
+                Integer first = firstByKey.putIfAbsent(key, i);
+                if (first != null) {
+                    if (fingerprints[first] == fingerprints[i]) {
+                        repeatOf[i] = first;
+                    } else {
+                        rejections[i] = REUSED_KEY;
+                    }
+                    continue;
+                }
+
+                try {
+                    Long previous = findRequestResult(key, fingerprints[i]);
+                    if (previous == null) {
+                        if (!requests.start(key)) {
+                            rejections[i] = "A request with the same idempotency key is already in progress.";
+                            continue;
+                        }
+                        started.add(key);
+                        // operația cu aceeași cheie se poate termina între prima verificare și marcare
+                        previous = findRequestResult(key, fingerprints[i]);
+                    }
+                    if (previous != null) {
+                        results[i] = previous;
+                    } else {
+                        pending.add(i);
+                    }
+                } catch (IllegalArgumentException e) {
+                    rejections[i] = e.getMessage();
+                }
+            }
+
+            List<Posting[]> pendingOperations = new ArrayList<>(pending.size());
+            List<String> pendingKeys = new ArrayList<>(pending.size());
+            long[] pendingFingerprints = new long[pending.size()];
+            long[] pendingResults = new long[pending.size()];
+            for (int j = 0; j < pending.size(); j++) {
+                pendingOperations.add(operations.get(pending.get(j)));
+                pendingKeys.add(requestKeys.get(pending.get(j)));
+                pendingFingerprints[j] = fingerprints[pending.get(j)];
+                pendingResults[j] = results[pending.get(j)];
+            }
+            List<String> applied = apply(pendingOperations, pendingKeys, pendingFingerprints, pendingResults);
+            for (int j = 0; j < pending.size(); j++) {
+                rejections[pending.get(j)] = applied.get(j);
+            }
+            for (int i = 0; i < count; i++) {
+                if (repeatOf[i] >= 0) {
+                    rejections[i] = rejections[repeatOf[i]];
+                    results[i] = results[repeatOf[i]];
+                }
+            }
+            return Arrays.asList(rejections);
+        } finally {
+            started.forEach(requests::finish);
+        }
+    }
+
+    /**
+     * Implementarea {@link #postAll(List)}. Dacă <code>requestKeys</code> nu este <code>null</code>,
+     * cheile operațiunilor acceptate sunt scrise în același cadru, cu amprentele din <code>fingerprints</code>
+     * și rezultatele din <code>results</code>.
+     */
+    private List<String> apply(List<Posting[]> operations, List<String> requestKeys, long[] fingerprints,
+                               long[] results) {
+        Set<String> ibans = new HashSet<>();
+        for (Posting[] postings : operations) {
+            for (Posting posting : postings) {
+                ibans.add(posting.getIban());
+            }
+        }
+
+        int[] locked = lockAccountsShared(ibans);
+        Map<String, Long> debits = new HashMap<>();
+        Map<String, Long> credits = new HashMap<>();
+        boolean committed = false;
+        try {
+            List<String> rejections = new ArrayList<>(operations.size());
+            List<Posting> accepted = new ArrayList<>();
+            for (Posting[] postings : operations) {
+                try {
+                    reserve(postings, debits, credits);
+                    accepted.addAll(Arrays.asList(postings));
+                    rejections.add(null);
+                } catch (IllegalArgumentException e) {
+                    rejections.add(e.getMessage());
+                }
+            }
+
+            Map<String, Long> changes = new LinkedHashMap<>();
+            for (Posting posting : accepted) {
+                changes.merge(posting.getIban(), posting.getAmount(), Long::sum);
+            }
+            ClientJournal.Batch batch = journal.begin();
+            for (Map.Entry<String, Long> change : changes.entrySet()) {
+                if (change.getValue() != 0) {
+                    batch.adjustBalance(change.getKey(), change.getValue());
+                }
+            }
+            for (Posting posting : accepted) {
+                if (posting.getTransaction() != null) {
+                    batch.addTransaction(posting.getIban(), posting.getTransaction());
+                }
+            }
+            if (requestKeys != null) {
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < operations.size(); i++) {
+                    if (requestKeys.get(i) != null && rejections.get(i) == null) {
+                        batch.recordRequest(requestKeys.get(i), fingerprints[i], results[i], now);
+                    }
+                }
+            }
+            batch.commit(applier);
+            committed = true;
+
+            // sumele creditate devin disponibile abia după ce sunt pe disc
+            credits.forEach((iban, amount) -> balances.get(iban).addAndGet(amount));
+            return rejections;
+        } finally {
+            if (!committed) {
+                debits.forEach((iban, amount) -> balances.get(iban).addAndGet(amount));
+            }
+            unlockAccountsShared(locked);
+        }
+    }
+
+    /**
+     * Verifică o operațiune și rezervă sumele pe care le debitează.
+     * <p>
+     * Soldul disponibil al unui cont ({@link #balances}) este soldul scris pe disc, minus sumele
+     * rezervate de operațiunile încă nescrise. O debitare scade soldul disponibil prin
+     * compare-and-set, doar dacă rezultatul, împreună cu sumele creditate contului mai devreme în
+     * același lot, nu este negativ. Creditările sunt adăugate abia după scrierea pe disc, deci o
+     * debitare scrisă în jurnal nu depinde niciodată de o creditare care s-ar putea pierde la o
+     * oprire bruscă, iar jurnalul poate reține modificările de sold ca diferențe, indiferent de
+     * ordinea în care operațiunile simultane ajung în el.
+     * </p>
+     * Se apelează cu lacătele conturilor obținute în mod partajat.
+     *
+     * @param debits  Sumele rezervate de lot, pe conturi; primește rezervările operațiunii.
+     * @param credits Sumele creditate de lot, pe conturi; primește creditările operațiunii.
+     * @throws IllegalArgumentException Dacă un cont nu există, un cont debitat este blocat
+     *                                  sau soldul ar deveni negativ; nimic nu rămâne rezervat.
+     */
+    private void reserve(Posting[] postings, Map<String, Long> debits, Map<String, Long> credits) {
+        Map<String, Long> changes = new LinkedHashMap<>();
+        for (Posting posting : postings) {
+            BankAccount account = findStoredAccount(posting.getIban());
+            if (account == null) {
+                throw new IllegalArgumentException("Account not found: " + posting.getIban());
+            }
+            if (posting.getAmount() < 0 && account.isBlocked()) {
+                throw new IllegalArgumentException("Account " + account.getIban() + " is BLOCKED.");
+            }
+            changes.merge(posting.getIban(), posting.getAmount(), Long::sum);
+        }
+
+        Map<String, Long> reserved = new HashMap<>();
+        try {
+            for (Map.Entry<String, Long> change : changes.entrySet()) {
+                if (change.getValue() >= 0) {
+                    continue;
+                }
+                AtomicLong balance = balances.get(change.getKey());
+                long credited = credits.getOrDefault(change.getKey(), 0L);
+                long current;
+                do {
+                    current = balance.get();
+                    if (current + credited + change.getValue() < 0) {
+                        throw new IllegalArgumentException("Insufficient funds.");
+                    }
+                } while (!balance.compareAndSet(current, current + change.getValue()));
+                reserved.put(change.getKey(), -change.getValue());
+            }
+        } catch (IllegalArgumentException e) {
+            reserved.forEach((iban, amount) -> balances.get(iban).addAndGet(amount));
+            throw e;
+        }
+
+        reserved.forEach((iban, amount) -> debits.merge(iban, amount, Long::sum));
+        changes.forEach((iban, amount) -> {
+            if (amount > 0) credits.merge(iban, amount, Long::sum);
+        });
+    }
+
+    /**
+     * Șterge un client, împreună cu conturile lui. Sunt blocate și conturile, ca nicio operație
+     * pe sold să nu fie în curs; dacă între timp clientul a primit un cont nou, blocarea este reluată.
+     */
+    public void destroy(Client client) {
+        String cnp = client.getCNP();
+        while (true) {
+            List<String> ibans = accountIbans(findByCNP(cnp));
+            int[] accounts = lockAccounts(ibans);
+            int[] locked = lock(cnp);
+            try {
+                Client current = findByCNP(cnp);
+                if (current == null) {
+                    return;
+                }
+                if (!ibans.equals(accountIbans(current))) {
+                    continue;
+                }
+
+                ClientJournal.Batch batch = journal.begin();
+                batch.deleteClient(cnp);
+                batch.commit(applier);
+                return;
+            } finally {
+                unlock(locked);
+                unlockAccounts(accounts);
+            }
+        }
+    }
+
+    private Client requireClient(String cnp) {
+        Client client = findByCNP(cnp);
+        if (client == null) {
+            throw new IllegalArgumentException("Client not found.");
+        }
+        return client;
+    }
+
+    /**
+     * Copie modificabilă a soldului și stării unui cont, fără istoricul tranzacțiilor.
+     */
+    private BankAccount workingCopy(String iban) {
+        BankAccount stored = findStoredAccount(iban);
+        if (stored == null) {
+            throw new IllegalArgumentException("Account not found: " + iban);
+        }
+        BankAccount copy = new BankAccount(iban, stored.getBalance(), stored.getCurrency(), stored.getType());
+        copy.setBlocked(stored.isBlocked());
+        return copy;
+    }
+
+    private void indexAccounts(Client client) {
+        for (BankAccount account : client.getAccounts()) {
+            cnpByIban.put(account.getIban(), client.getCNP());
+        }
+    }
+
+    private static int shardIndex(String cnp) {
+        int hash = cnp.hashCode();
+        return (hash ^ (hash >>> 16)) & (SHARD_COUNT - 1);
+    }
+
+    private Shard shard(String cnp) {
+        return shards[shardIndex(cnp)];
+    }
+
+    /**
+     * Blochează partițiile clienților dați, în ordinea crescătoare a indicilor.
+     * CNP-urile nule sunt ignorate.
+     *
+     * @return Indicii partițiilor blocate, pentru {@link #unlock(int[])}.
+     */
+    private int[] lock(String... cnps) {
+        int[] indexes = Arrays.stream(cnps)
+                .filter(Objects::nonNull)
+                .mapToInt(ClientRepository::shardIndex)
+                .sorted()
+                .distinct()
+                .toArray();
+        for (int index : indexes) {
+            shards[index].lock.lock();
+        }
+        return indexes;
+    }
+
+    private void unlock(int[] indexes) {
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            shards[indexes[i]].lock.unlock();
+        }
+    }
+
+    private void lockAll() {
+        for (ReentrantReadWriteLock lock : accountLocks) {
+            lock.writeLock().lock();
+        }
+        for (Shard shard : shards) {
+            shard.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = SHARD_COUNT - 1; i >= 0; i--) {
+            shards[i].lock.unlock();
+        }
+        for (int i = ACCOUNT_STRIPES - 1; i >= 0; i--) {
+            accountLocks[i].writeLock().unlock();
+        }
+    }
+
+    private static int stripeIndex(String iban) {
+        int hash = iban.hashCode();
+        return (hash ^ (hash >>> 16)) & (ACCOUNT_STRIPES - 1);
+    }
+
+    /**
+     * Blochează exclusiv lacătele conturilor date, în ordinea crescătoare a indicilor derivați din IBAN.
+     * Se apelează fără nicio partiție blocată.
+     *
+     * @return Indicii lacătelor blocate, pentru {@link #unlockAccounts(int[])}.
+     */
+    private int[] lockAccounts(Collection<String> ibans) {
+        int[] indexes = stripeIndexes(ibans);
+        for (int index : indexes) {
+            accountLocks[index].writeLock().lock();
+        }
+        return indexes;
+    }
+
+    private void unlockAccounts(int[] indexes) {
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            accountLocks[indexes[i]].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Blochează partajat lacătele conturilor date, în aceeași ordine ca {@link #lockAccounts}.
+     * Operațiile pe sold nu se așteaptă între ele, ci doar după comenzile care schimbă starea
+     * sau existența contului.
+     *
+     * @return Indicii lacătelor blocate, pentru {@link #unlockAccountsShared(int[])}.
+     */
+    private int[] lockAccountsShared(Collection<String> ibans) {
+        int[] indexes = stripeIndexes(ibans);
+        for (int index : indexes) {
+            accountLocks[index].readLock().lock();
+        }
+        return indexes;
+    }
+
+    private void unlockAccountsShared(int[] indexes) {
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            accountLocks[indexes[i]].readLock().unlock();
+        }
+    }
+
+    private static int[] stripeIndexes(Collection<String> ibans) {
+        return ibans.stream()
+                .mapToInt(ClientRepository::stripeIndex)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    private static List<String> accountIbans(Client client) {
+        List<String> ibans = new ArrayList<>();
+        if (client != null) {
+            for (BankAccount account : client.getAccounts()) {
+                ibans.add(account.getIban());
+            }
+        }
+        return ibans;
+    }
 
     /**
-     * Caută un client în baza de date locală pe baza CNP-ului criptat.
+     * Realizează un checkpoint: forțează pe disc paginile modificate din tabelul de conturi
+     * și din istoricul tranzacțiilor, rescrie catalogul clienților și golește jurnalul.
+     * <p>
+     * Catalogul (<code>clients.dat</code>) conține profilurile clienților, sloturile conturilor
+     * lor și soldurile de la checkpoint, dar nu și tranzacțiile, deci costul salvării nu crește
+     * odată cu istoricul. Antetul reține versiunea {@link ClientCodec} cu care au fost scrise
+     * profilurile, iar numărul de conturi și sloturile sunt scrise ca varint-uri.
+     * </p>
+     * <p>
+     * Clienții sunt scriși în blocuri de câte {@value #CATALOG_CHUNK_SIZE}, de forma
+     * <code>[lungime][număr clienți][clienți]</code>. Fiecare bloc are propriul dicționar de
+     * șiruri, deci blocurile pot fi decodate independent la încărcare.
+     * </p>
+     * <p>
+     * Din versiunea 4, antetul reține și poziția de început a istoricului și data până la care
+     * tranzacțiile au fost arhivate. Din versiunea 5, fiecare slot este urmat de soldul contului:
+     * tabelul de conturi primește soldurile noi imediat, deci la o oprire bruscă poate conține deja
+     * efectul operațiilor de după checkpoint, pe care jurnalul le reaplică (vezi {@link #decodeChunk}).
+     * Din versiunea 6, după blocuri urmează cheile de idempotență neexpirate (vezi
+     * {@link #post(String, long, long, Posting...)}), care altfel s-ar pierde odată cu jurnalul.
+     * Din versiunea 7, fiecare cheie de idempotență are și amprenta operației.
+     * </p>
+     * <p>
+     * Catalogul nu este suprascris pe loc: este scris într-un fișier temporar, forțat pe disc și
+     * apoi redenumit atomic peste cel vechi, care rămâne ca generație anterioară (vezi {@link #replaceCatalog()}).
+     * </p>
+     */
+    public void saveToFile(){
+        synchronized (checkpoints) {
+            lockAll();
+            try {
+                writeCheckpoint();
+            } finally {
+                unlockAll();
+            }
+        }
+    }
+
+    /**
+     * Mută în arhiva lunară tranzacțiile mai vechi de <code>horizon</code>, pentru ca istoricul
+     * citit de conturi să conțină doar activitatea recentă.
+     * <p>
+     * Istoricul este rescris cont cu cont, în timp ce aplicația rulează: pentru fiecare cont este
+     * blocat doar lacătul lui, iar tranzacțiile sunt citite bloc cu bloc. Cele vechi sunt scrise
+     * în {@link HistoryArchive}, cele recente sunt rescrise în {@link HistoryLog} după poziția
+     * de la începutul arhivării (vezi {@link HistoryLog#startRewrite()}), iar contul își citește
+     * de acum istoricul din noile înregistrări. Celelalte conturi primesc tranzacții în continuare.
+     * </p>
+     * <p>
+     * La final, toate lacătele sunt blocate doar pentru checkpoint-ul care salvează noua poziție
+     * de început. Acesta este momentul în care arhivarea devine validă: dacă aplicația se oprește
+     * înainte, la repornire se folosesc vechiul istoric și vechiul catalog, jurnalul reface
+     * operațiile de după el, iar fișierele de arhivă scrise sunt șterse. Până atunci nu se poate
+     * face alt checkpoint, deci {@link #saveToFile()} așteaptă sfârșitul arhivării.
+     * </p>
+     * <p>
+     * Pragul este reținut în catalog, deci un apel cu același prag (sau cu unul mai vechi) nu
+     * mai face nimic. Tranzacțiile arhivate nu mai apar în istoricul conturilor, în proiecții și
+     * în {@link #getTransactionColumns()}; ele pot fi citite lună cu lună prin
+     * {@link #getArchivedTransactions(String, YearMonth)}.
+     * </p>
      *
-     * @param CNP CNP-ul criptat al clientului căutat.
-     * @return Obiectul {@link ro.ppoo.banking.model.Client} dacă este găsit, altfel <code>null</code>.
+     * @param horizon Prima zi care rămâne în istoric.
+     * @return Numărul de tranzacții arhivate.
      */
-    public Client findByCNP(String CNP){
-        for (Client client : clients){
-            if(client.getCNP().equals(CNP)){
-                return new Client(client);
+    public int archiveHistory(LocalDate horizon) {
+        synchronized (checkpoints) {
+            if (archivedBefore != null && !horizon.isAfter(archivedBefore)) {
+                return 0;
+            }
+
+            HistoryArchive.Writer writer = archive.writer(history.startRewrite());
+            int archivedCount = 0;
+            try {
+                // conturile sunt parcurse în ordinea clienților, deci conturile unui client ajung împreună în arhivă
+                for (Client client : getAll()) {
+                    for (BankAccount account : client.getAccounts()) {
+                        archivedCount += archiveAccount(account.getIban(), horizon, writer);
+                    }
+                }
+
+                lockAll();
+                try {
+                    // conturi cu istoric care nu apăreau în listă, de exemplu adăugate în timpul ei
+                    for (String iban : history.accountsNotRewritten()) {
+                        archivedCount += archiveAccount(iban, horizon, writer);
+                    }
+                    writer.finish();
+                    history.finishRewrite();
+                    archivedBefore = horizon;
+                    writeCheckpoint();
+                    columns = null;
+                } finally {
+                    unlockAll();
+                }
+            } catch (RuntimeException e) {
+                // starea din memorie nu mai corespunde istoricului; se revine la ultimul checkpoint
+                writer.abort();
+                lockAll();
+                try {
+                    load();
+                } finally {
+                    unlockAll();
+                }
+                throw e;
             }
+            history.deleteRetired();
+            return archivedCount;
         }
+    }
 
-        return null;
+    /**
+     * Rescrie istoricul unui cont fără tranzacțiile mai vechi de <code>horizon</code>, pe care le
+     * adaugă în arhivă, și publică versiunea contului care citește noul istoric.
+     *
+     * @return Numărul de tranzacții arhivate.
+     */
+    private int archiveAccount(String iban, LocalDate horizon, HistoryArchive.Writer writer) {
+        int[] locked = lockAccounts(List.of(iban));
+        try {
+            Map<YearMonth, List<Transaction>> archived = new TreeMap<>();
+            int count = history.rewrite(iban, transaction -> !transaction.getDate().isBefore(horizon),
+                    transaction -> archived.computeIfAbsent(YearMonth.from(transaction.getDate()), key -> new ArrayList<>())
+                            .add(transaction));
+            writer.add(iban, archived);
+
+            String cnp = cnpByIban.get(iban);
+            if (cnp != null) {
+                ReentrantLock lock = shard(cnp).lock;
+                lock.lock();
+                try {
+                    BankAccount account = findStoredAccount(iban);
+                    if (account != null) {
+                        replaceAccount(findByAccountIban(iban), iban,
+                                account.withState(account.getBalance(), account.isBlocked(), storedHistory(iban)));
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return count;
+        } finally {
+            unlockAccounts(locked);
+        }
     }
 
-    public List<Client> getAll(){
-        List<Client> copy = new ArrayList<>();
+    /**
+     * @return Lunile care au tranzacții arhivate, de la cea mai recentă la cea mai veche.
+     */
+    public List<YearMonth> getArchivedMonths() {
+        return archive.months();
+    }
+
+    /**
+     * Citește tranzacțiile arhivate ale unui cont dintr-o lună.
+     *
+     * @param iban  IBAN-ul contului.
+     * @param month Luna tranzacțiilor.
+     * @return Tranzacțiile, în ordinea în care au fost salvate; lista este goală dacă nu există.
+     */
+    public List<Transaction> getArchivedTransactions(String iban, YearMonth month) {
+        return archive.read(iban, month);
+    }
+
+    private void writeCheckpoint() {
+        accountTable.force();
+        history.force();
+
+        try (FileOutputStream stream = new FileOutputStream(TEMP_FILE_PATH)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(CATALOG_MAGIC);
+            out.writeShort(CATALOG_VERSION);
+            out.writeByte(codecVersion);
+            out.writeLong(journal.getLastSequence());
+            out.writeInt(accountTable.getSlotCount());
+            out.writeLong(history.getPosition());
+            out.writeLong(history.getStart());
+            out.writeLong(archivedBefore != null ? archivedBefore.toEpochDay() : Long.MIN_VALUE);
+
+            List<Client> clients = getAll();
+            ClientCodec.writeVarLong(out, clients.size());
+            for (int start = 0; start < clients.size(); start += CATALOG_CHUNK_SIZE) {
+                byte[] chunk = encodeChunk(clients.subList(start, Math.min(start + CATALOG_CHUNK_SIZE, clients.size())));
+                out.writeInt(chunk.length);
+                out.write(chunk);
+            }
 
-        for(Client client : clients){
-            copy.add(new Client(client));
+            // cheile de idempotență neexpirate, deoarece jurnalul care le conține este golit
+            List<IdempotencyCache.Request> recorded = requests.snapshot(System.currentTimeMillis());
+            ClientCodec.writeVarLong(out, recorded.size());
+            for (IdempotencyCache.Request request : recorded) {
+                out.writeUTF(request.key);
+                out.writeLong(request.fingerprint);
+                out.writeLong(request.result);
+                out.writeLong(request.recordedAt);
+            }
+            out.flush();
+            stream.getFD().sync();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        return copy;
+        replaceCatalog();
+        journal.reset();
     }
 
-    public void add(Client client){
-        clients.add(client);
+    /**
+     * Înlocuiește catalogul cu cel scris în fișierul temporar, păstrând generația anterioară
+     * în <code>clients.dat.prev</code>.
+     * <p>
+     * Ambele mutări sunt atomice, iar jurnalul este golit abia după ele. La orice oprire bruscă
+     * rămâne deci pe disc fie catalogul nou, fie cel anterior, împreună cu jurnalul scris de la el;
+     * la pornire, dacă <code>clients.dat</code> lipsește, este încărcată generația anterioară.
+     * </p>
+     */
+    private void replaceCatalog() {
+        Path catalog = Path.of(FILE_PATH);
+        try {
+            if (Files.exists(catalog)) {
+                Files.move(catalog, Path.of(PREVIOUS_FILE_PATH), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(Path.of(TEMP_FILE_PATH), catalog, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Error at replacing the clients file", e);
+        }
+
+        // redenumirile devin durabile abia după forțarea directorului; nu toate platformele o permit
+        try (FileChannel directory = FileChannel.open(catalog.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Windows nu permite deschiderea unui director
+        }
+    }
+
+    private byte[] encodeChunk(List<Client> clients) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ClientCodec codec = new ClientCodec(codecVersion);
+        ClientCodec.writeVarLong(out, clients.size());
+        for (Client client : clients) {
+            codec.writeClient(out, client);
+            ClientCodec.writeVarLong(out, client.getAccounts().size());
+            for (BankAccount account : client.getAccounts()) {
+                ClientCodec.writeVarLong(out, accountTable.slotOf(account.getIban()));
+                ClientCodec.writeVarLong(out, account.getBalance());
+            }
+        }
+        return bytes.toByteArray();
     }
 
     /**
-     * Actualizează informațiile unui client existent.
+     * Încarcă datele la pornire.
      * <p>
-     * Metoda caută clientul pe baza CNP-ului (care este imutabil) și îi actualizează
-     * toate celelalte câmpuri (nume, email, parolă, lista de conturi).
-     * Această metodă este esențială pentru salvarea modificărilor precum tranzacțiile noi.
+     * Tabelul de conturi și segmentele de istoric sunt mapate în memorie, blocurile catalogului
+     * sunt decodate în paralel, iar apoi jurnalul este reluat peste checkpoint-ul salvat.
+     * Un fișier <code>clients.dat</code> în formatul vechi (serializare Java) este importat
+     * automat și rescris în formatul nou la următoarea salvare.
      * </p>
      *
-     * @param updatedClient Obiectul client cu datele actualizate.
+     * @return Numărul de înregistrări încărcate și durata încărcării.
      */
-    public void update(Client updatedClient) {
-        for (int i = 0; i < clients.size(); i++) {
-            if (clients.get(i).getCNP().equals(updatedClient.getCNP())) {
+    public LoadStatistics loadFromFile(){
+        long start = System.nanoTime();
+        synchronized (checkpoints) {
+            lockAll();
+            try {
+                long journalFrames = load();
 
-                Client originalClient = clients.get(i);
-                originalClient.setFirstname(updatedClient.getFirstname());
-                originalClient.setLastname(updatedClient.getLastname());
-                originalClient.setEmail(updatedClient.getEmail());
-                originalClient.setPhone(updatedClient.getPhone());
-                originalClient.setAccounts(updatedClient.getAccounts());
-                originalClient.setPassword(updatedClient.getPassword());
-                return;
+                long transactions = 0;
+                for (Shard shard : shards) {
+                    for (Entry entry : shard.entries.values()) {
+                        transactions += entry.summary.getTransactionCount();
+                    }
+                }
+                return new LoadStatistics(cnpByOrder.size(), cnpByIban.size(), transactions, journalFrames,
+                        System.nanoTime() - start);
+            } finally {
+                unlockAll();
             }
         }
     }
 
-    public void destroy(Client client) {
-        clients.removeIf(c -> c.getCNP().equals(client.getCNP()));
+    /**
+     * @return Numărul de cadre reluate din jurnal.
+     */
+    private long load() {
+        File file = new File(FILE_PATH);
+        if (!file.exists() && new File(PREVIOUS_FILE_PATH).exists()) {
+            // oprire între cele două redenumiri ale checkpoint-ului; jurnalul pornește de la generația anterioară
+            System.err.println("Clients file missing, loading the previous generation");
+            file = new File(PREVIOUS_FILE_PATH);
+        }
+        columns = null;
+        archivedBefore = null;
+        requests.clear();
+
+        for (Shard shard : shards) {
+            shard.entries.clear();
+        }
+        cnpByIban.clear();
+        cnpByEmail.clear();
+        cnpByPhone.clear();
+        cnpByName.clear();
+        cnpByOrder.clear();
+        nextOrder.set(0);
+        orderVersion.incrementAndGet();
+
+        long snapshotSequence;
+        if (file.exists() && file.length() > 0 && isLegacySnapshot(file)) {
+            snapshotSequence = importLegacySnapshot(file);
+        } else if (file.exists() && file.length() > 0) {
+            snapshotSequence = readCatalog(file);
+        } else {
+            accountTable.open(0);
+            history.open(0, 0);
+            archive.open(0);
+            snapshotSequence = 0;
+        }
+
+        long replayed = journal.replay(snapshotSequence, applier);
+        resetBalances();
+        return replayed;
+    }
+
+    /**
+     * Pornește soldurile disponibile de la soldurile publicate; se apelează fără operații în curs.
+     */
+    private void resetBalances() {
+        balances.clear();
+        for (Shard shard : shards) {
+            for (Entry entry : shard.entries.values()) {
+                for (BankAccount account : entry.client.getAccounts()) {
+                    balances.put(account.getIban(), new AtomicLong(account.getBalance()));
+                }
+            }
+        }
     }
 
+    private long readCatalog(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != CATALOG_MAGIC) {
+                throw new IOException("Unknown clients file format");
+            }
+            short version = in.readShort();
+            if (version > CATALOG_VERSION) {
+                throw new IOException("Unsupported clients file version: " + version);
+            }
+            // catalogul din versiunea 1 nu reținea codec-ul și folosea întregi de lungime fixă
+            boolean compact = version >= 2;
+            ClientCodec codec = new ClientCodec(compact ? in.readUnsignedByte() : ClientCodec.LEGACY_VERSION);
+            long snapshotSequence = in.readLong();
+            int slotCount = in.readInt();
+            long historyPosition = in.readLong();
+            long historyStart = version >= 4 ? in.readLong() : 0;
+            long archivedDay = version >= 4 ? in.readLong() : Long.MIN_VALUE;
+            archivedBefore = archivedDay != Long.MIN_VALUE ? LocalDate.ofEpochDay(archivedDay) : null;
+            archive.open(historyStart);
 
-    public void saveToFile(){
-        try(ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(FILE_PATH))) {
-            oos.writeObject(clients);
+            accountTable.open(slotCount);
+            // istoricul este indexat în paralel cu decodarea catalogului
+            CompletableFuture<Void> historyOpened = CompletableFuture.runAsync(() -> history.open(historyStart, historyPosition), LOAD_EXECUTOR);
+
+            int clientCount = compact ? (int) ClientCodec.readVarLong(in) : in.readInt();
+            List<Client> loaded = new ArrayList<>(clientCount);
+            if (version >= 3) {
+                List<CompletableFuture<List<Client>>> chunks = new ArrayList<>();
+                for (int read = 0; read < clientCount; ) {
+                    byte[] chunk = new byte[in.readInt()];
+                    in.readFully(chunk);
+                    DataInputStream chunkIn = new DataInputStream(new ByteArrayInputStream(chunk));
+                    int chunkSize = (int) ClientCodec.readVarLong(chunkIn);
+                    chunks.add(CompletableFuture.supplyAsync(
+                            () -> decodeChunk(chunkIn, chunkSize, new ClientCodec(codec.getVersion()), true, version >= 5),
+                            LOAD_EXECUTOR));
+                    read += chunkSize;
+                }
+                for (CompletableFuture<List<Client>> chunk : chunks) {
+                    loaded.addAll(join(chunk));
+                }
+            } else {
+                loaded.addAll(decodeChunk(in, clientCount, codec, compact, false));
+            }
+            if (version >= 6) {
+                long requestCount = ClientCodec.readVarLong(in);
+                for (long i = 0; i < requestCount; i++) {
+                    String key = in.readUTF();
+                    long fingerprint = version >= 7 ? in.readLong() : IdempotencyCache.UNKNOWN_FINGERPRINT;
+                    long result = in.readLong();
+                    requests.record(key, fingerprint, result, in.readLong());
+                }
+            }
+
+            join(historyOpened);
+            for (Client client : loaded) {
+                indexAccounts(client);
+            }
+            attachHistories(loaded);
+            return snapshotSequence;
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new RuntimeException("Error at loading clients file", e);
         }
     }
 
-    public void loadFromFile(){
-        File file = new File(FILE_PATH);
+    /**
+     * Decodează <code>count</code> clienți consecutivi din catalog, împreună cu conturile
+     * citite din sloturile lor.
+     * <p>
+     * Din versiunea 5, catalogul reține și soldul fiecărui cont la checkpoint, care este scris înapoi
+     * în slot înainte de reluarea jurnalului. Slotul poate conține un sold mai nou, scris după
+     * checkpoint de operații aflate încă în jurnal; reluate peste el, diferențele de sold ale acestor
+     * operații ar fi aplicate de două ori.
+     * </p>
+     *
+     * @param compact  Dacă numerele sunt scrise ca varint-uri (catalog din versiunea 2 în sus).
+     * @param balances Dacă după fiecare slot urmează soldul contului (catalog din versiunea 5 în sus).
+     */
+    private List<Client> decodeChunk(DataInputStream in, int count, ClientCodec codec, boolean compact, boolean balances) {
+        List<Client> clients = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                Client client = codec.readClient(in);
+                int accountCount = compact ? (int) ClientCodec.readVarLong(in) : in.readInt();
+                for (int j = 0; j < accountCount; j++) {
+                    int slot = compact ? (int) ClientCodec.readVarLong(in) : in.readInt();
+                    BankAccount account = balances
+                            ? accountTable.restore(slot, ClientCodec.readVarLong(in))
+                            : accountTable.load(slot);
+                    if (account != null) {
+                        client.getAccounts().add(account);
+                    }
+                }
+                clients.add(client);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return clients;
+    }
 
-        if(!file.exists()|| file.length() == 0){
-            return;
+    /**
+     * Așteaptă o operație asincronă și propagă eroarea ei originală.
+     */
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw e;
+        }
+    }
+
+    private boolean isLegacySnapshot(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readShort() == ObjectStreamConstants.STREAM_MAGIC;
+        } catch (IOException e) {
+            return false;
         }
+    }
+
+    /**
+     * Importă un <code>clients.dat</code> scris prin serializare Java: conturile sunt copiate
+     * în tabelul mapat, iar tranzacțiile în segmentele de istoric.
+     */
+    private long importLegacySnapshot(File file) {
+        accountTable.open(0);
+        history.open(0, 0);
+        archive.open(0);
 
         try(ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
             List<Client> loadClients = (List<Client>) ois.readObject();
-            clients.clear();
-            clients.addAll(loadClients);
+            for (Client client : loadClients) {
+                indexAccounts(client);
+                for (BankAccount account : client.getAccounts()) {
+                    accountTable.put(account);
+                    for (Transaction transaction : account.getTransactions()) {
+                        history.append(account.getIban(), transaction);
+                    }
+                }
+            }
+            history.flush();
+            attachHistories(loadClients);
+            return readSnapshotSequence(ois);
         } catch (EOFException e) {
             System.err.println("Empty file");
+            return 0;
         } catch (IOException | ClassNotFoundException e) {
             throw new RuntimeException("Error at loading clients file");
         }
     }
+
+    private long readSnapshotSequence(ObjectInputStream ois) throws IOException {
+        try {
+            return ois.readLong();
+        } catch (EOFException e) {
+            // snapshot scris înainte de introducerea jurnalului
+            return 0;
+        }
+    }
+
+    /**
+     * Publică clienții citiți la pornire ca versiuni doar pentru citire, ale căror conturi
+     * își citesc tranzacțiile din segmentele de istoric.
+     */
+    private void attachHistories(List<Client> loaded) {
+        for (Client loadedClient : loaded) {
+            List<BankAccount> accounts = new ArrayList<>();
+            for (BankAccount account : loadedClient.getAccounts()) {
+                accounts.add(account.withState(account.getBalance(), account.isBlocked(), storedHistory(account.getIban())));
+            }
+            publish(loadedClient.withAccounts(accounts));
+        }
+    }
+
+    /**
+     * Publică o versiune nouă a unui client, împreună cu proiecția lui.
+     * Un client nou primește următorul număr de ordine, folosit de listări.
+     * Se apelează doar cu partiția clientului blocată.
+     */
+    private void publish(Client client) {
+        Shard shard = shard(client.getCNP());
+        Entry existing = shard.entries.get(client.getCNP());
+        long order = existing != null ? existing.order : nextOrder.getAndIncrement();
+        shard.entries.put(client.getCNP(), new Entry(order, client));
+        if (existing == null) {
+            cnpByOrder.put(order, client.getCNP());
+            orderVersion.incrementAndGet();
+        }
+        indexContacts(existing != null ? existing.client : null, client);
+    }
+
+    private Client unpublish(String cnp) {
+        Entry removed = shard(cnp).entries.remove(cnp);
+        if (removed == null) {
+            return null;
+        }
+        cnpByOrder.remove(removed.order);
+        orderVersion.incrementAndGet();
+        indexContacts(removed.client, null);
+        return removed.client;
+    }
+
+    /**
+     * Actualizează indexurile după email, telefon și nume la înlocuirea versiunii <code>previous</code>
+     * a unui client cu <code>next</code> (oricare poate lipsi). Versiunile care modifică doar
+     * conturile (majoritatea) păstrează datele de contact, deci nu ating indexurile.
+     */
+    private void indexContacts(Client previous, Client next) {
+        if (previous != null && next != null
+                && Objects.equals(previous.getEmail(), next.getEmail())
+                && Objects.equals(previous.getPhone(), next.getPhone())
+                && Objects.equals(previous.getFirstname(), next.getFirstname())
+                && Objects.equals(previous.getLastname(), next.getLastname())) {
+            return;
+        }
+
+        contactVersion.incrementAndGet();
+        String cnp = previous != null ? previous.getCNP() : next.getCNP();
+        updateIndex(cnpByEmail, cnp,
+                previous != null ? normalizeEmail(previous.getEmail()) : null,
+                next != null ? normalizeEmail(next.getEmail()) : null);
+        updateIndex(cnpByPhone, cnp,
+                previous != null ? normalizePhone(previous.getPhone()) : null,
+                next != null ? normalizePhone(next.getPhone()) : null);
+
+        Set<String> previousKeys = previous != null ? nameKeys(previous) : Set.of();
+        Set<String> nextKeys = next != null ? nameKeys(next) : Set.of();
+        for (String key : previousKeys) {
+            if (!nextKeys.contains(key)) cnpByName.remove(key);
+        }
+        for (String key : nextKeys) {
+            cnpByName.put(key, cnp);
+        }
+    }
+
+    private static Set<String> nameKeys(Client client) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String word : clientNameWords(client)) {
+            keys.add(word + '\0' + client.getCNP());
+        }
+        return keys;
+    }
+
+    private static boolean matchesName(Client client, List<String> words) {
+        List<String> names = clientNameWords(client);
+        for (String word : words) {
+            if (names.stream().noneMatch(name -> name.startsWith(word))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> clientNameWords(Client client) {
+        List<String> words = new ArrayList<>(nameWords(client.getFirstname()));
+        words.addAll(nameWords(client.getLastname()));
+        return words;
+    }
+
+    /**
+     * Împarte un nume în cuvinte (după spații și cratime), fără diacritice și cu litere mici.
+     */
+    private static List<String> nameWords(String name) {
+        if (name == null || name.isBlank()) {
+            return List.of();
+        }
+        String plain = DIACRITICS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        for (String word : NAME_SEPARATORS.split(plain)) {
+            if (!word.isEmpty()) words.add(word);
+        }
+        return words;
+    }
+
+    private static void updateIndex(Map<String, String> index, String cnp, String previousKey, String nextKey) {
+        if (previousKey != null && !previousKey.equals(nextKey)) {
+            index.remove(previousKey, cnp);
+        }
+        if (nextKey != null) {
+            index.put(nextKey, cnp);
+        }
+    }
+
+    /**
+     * Rezervă atomic email-ul și telefonul pentru un client, înainte de scrierea în jurnal.
+     * Valorile <code>null</code> sunt ignorate. Rezervarea este necesară deoarece un alt client
+     * cu aceeași adresă poate fi modificat în paralel, într-o altă partiție.
+     *
+     * @throws IllegalArgumentException Dacă email-ul sau telefonul aparțin deja altui client.
+     */
+    private void reserveContacts(String cnp, String email, String phone) {
+        String emailKey = normalizeEmail(email);
+        String emailOwner = emailKey != null ? cnpByEmail.putIfAbsent(emailKey, cnp) : null;
+        if (emailOwner != null && !emailOwner.equals(cnp)) {
+            throw new IllegalArgumentException("This email is already registered");
+        }
+        String phoneKey = normalizePhone(phone);
+        String phoneOwner = phoneKey != null ? cnpByPhone.putIfAbsent(phoneKey, cnp) : null;
+        if (phoneOwner != null && !phoneOwner.equals(cnp)) {
+            throw new IllegalArgumentException("This phone number is already registered");
+        }
+    }
+
+    /**
+     * Eliberează rezervările făcute prin {@link #reserveContacts} care nu au ajuns în profilul
+     * publicat al clientului (comanda a eșuat sau a fost respinsă).
+     */
+    private void releaseContacts(String cnp, String email, String phone) {
+        Client current = findByCNP(cnp);
+        String emailKey = normalizeEmail(email);
+        if (emailKey != null && (current == null || !emailKey.equals(normalizeEmail(current.getEmail())))) {
+            cnpByEmail.remove(emailKey, cnp);
+        }
+        String phoneKey = normalizePhone(phone);
+        if (phoneKey != null && (current == null || !phoneKey.equals(normalizePhone(current.getPhone())))) {
+            cnpByPhone.remove(phoneKey, cnp);
+        }
+    }
+
+    private static String normalizeEmail(String email) {
+        if (email == null || email.isBlank()) {
+            return null;
+        }
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Păstrează doar cifrele numărului; prefixul internațional al României devine 0-ul național.
+     */
+    private static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        String digits = phone.replaceAll("[^0-9]", "");
+        if (digits.startsWith("0040")) {
+            digits = "0" + digits.substring(4);
+        } else if (digits.startsWith("40") && digits.length() == 11) {
+            digits = "0" + digits.substring(2);
+        }
+        return digits.isEmpty() ? null : digits;
+    }
+
+    private TransactionHistory storedHistory(String iban) {
+        return new TransactionHistory(new TransactionHistory.Loader() {
+            @Override
+            public List<Transaction> load(int count) {
+                return history.read(iban, count);
+            }
+
+            @Override
+            public List<Transaction> load(int from, int to) {
+                return history.read(iban, from, to);
+            }
+        }, history.count(iban));
+    }
+
+    private BankAccount findStoredAccount(String iban) {
+        Client owner = findByAccountIban(iban);
+        if (owner == null) {
+            return null;
+        }
+        for (BankAccount account : owner.getAccounts()) {
+            if (account.getIban().equals(iban)) return account;
+        }
+        return null;
+    }
+
+    /**
+     * Înlocuiește contul cu IBAN-ul dat din lista unui client cu <code>replacement</code>;
+     * un <code>replacement</code> nul elimină contul, iar un IBAN necunoscut îl adaugă la final.
+     */
+    private void replaceAccount(Client owner, String iban, BankAccount replacement) {
+        List<BankAccount> accounts = new ArrayList<>(owner.getAccounts());
+        int index = 0;
+        while (index < accounts.size() && !accounts.get(index).getIban().equals(iban)) {
+            index++;
+        }
+
+        if (replacement == null) {
+            if (index < accounts.size()) accounts.remove(index);
+        } else if (index < accounts.size()) {
+            accounts.set(index, replacement);
+        } else {
+            accounts.add(replacement);
+        }
+        publish(owner.withAccounts(accounts));
+    }
+
+    /**
+     * Aplică operațiile din jurnal asupra datelor din memorie.
+     * Este folosit atât la reluarea jurnalului la pornire, cât și după fiecare scriere nouă,
+     * astfel încât starea din memorie este mereu cea care ar rezulta dintr-o repornire.
+     * Obiectele existente nu sunt modificate: fiecare operație publică versiuni noi ale
+     * clientului și contului afectat.
+     * <p>
+     * Fiecare operație blochează partiția titularului cât înlocuiește versiunea clientului,
+     * deoarece operațiile pe conturi diferite ale aceluiași client pot fi aplicate în paralel
+     * (vezi {@link #post(Posting...)}); lacătul este reentrant, deci comenzile care țin deja
+     * partiția nu sunt afectate.
+     * </p>
+     */
+    private class JournalApplier implements ClientJournal.Replayer {
+        @Override
+        public void putClient(Client client) {
+            ReentrantLock lock = shard(client.getCNP()).lock;
+            lock.lock();
+            try {
+                Client existing = findByCNP(client.getCNP());
+                publish(existing == null
+                        ? client.withAccounts(List.of())
+                        : existing.withProfile(client));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void deleteClient(String cnp) {
+            ReentrantLock lock = shard(cnp).lock;
+            lock.lock();
+            try {
+                Client removed = unpublish(cnp);
+                if (removed != null) {
+                    for (BankAccount account : removed.getAccounts()) {
+                        cnpByIban.remove(account.getIban(), cnp);
+                        balances.remove(account.getIban());
+                        accountTable.remove(account.getIban());
+                        history.forget(account.getIban());
+                        if (columns != null) columns.removeAccount(account.getIban());
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void putAccount(String cnp, BankAccount account) {
+            ReentrantLock lock = shard(cnp).lock;
+            lock.lock();
+            try {
+                Client owner = findByCNP(cnp);
+                if (owner == null) {
+                    return;
+                }
+
+                BankAccount existing = findStoredAccount(account.getIban());
+                BankAccount next = existing != null
+                        ? existing.withState(account.getBalance(), account.isBlocked(), existing.getTransactions())
+                        : account.withState(account.getBalance(), account.isBlocked(), storedHistory(account.getIban()));
+                cnpByIban.put(account.getIban(), cnp);
+                // soldul final este scris doar pentru conturi noi și de comenzile care blochează
+                // contul exclusiv, deci nu există rezervări în curs
+                balances.computeIfAbsent(account.getIban(), key -> new AtomicLong()).set(next.getBalance());
+                accountTable.put(next);
+                replaceAccount(owner, account.getIban(), next);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void deleteAccount(String cnp, String iban) {
+            ReentrantLock lock = shard(cnp).lock;
+            lock.lock();
+            try {
+                Client owner = findByCNP(cnp);
+                if (owner == null) {
+                    return;
+                }
+                cnpByIban.remove(iban, cnp);
+                balances.remove(iban);
+                accountTable.remove(iban);
+                history.forget(iban);
+                if (columns != null) columns.removeAccount(iban);
+                replaceAccount(owner, iban, null);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void addTransaction(String iban, Transaction transaction) {
+            String cnp = cnpByIban.get(iban);
+            if (cnp == null) {
+                return;
+            }
+            ReentrantLock lock = shard(cnp).lock;
+            lock.lock();
+            try {
+                BankAccount account = findStoredAccount(iban);
+                if (account == null) {
+                    return;
+                }
+
+                history.append(iban, transaction);
+                if (columns != null) columns.append(iban, account.getCurrency(), transaction);
+                TransactionHistory transactions = (TransactionHistory) account.getTransactions();
+                replaceAccount(findByAccountIban(iban), iban,
+                        account.withState(account.getBalance(), account.isBlocked(), transactions.withPersisted(transaction)));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Modifică doar soldul publicat; soldul disponibil este actualizat de {@link #postAll(List)}
+         * (la rezervare și după scriere) sau reconstruit după încărcare.
+         */
+        @Override
+        public void adjustBalance(String iban, long amount) {
+            String cnp = cnpByIban.get(iban);
+            if (cnp == null) {
+                return;
+            }
+            ReentrantLock lock = shard(cnp).lock;
+            lock.lock();
+            try {
+                BankAccount account = findStoredAccount(iban);
+                if (account == null) {
+                    return;
+                }
+
+                BankAccount next = account.withState(account.getBalance() + amount, account.isBlocked(), account.getTransactions());
+                accountTable.put(next);
+                replaceAccount(findByAccountIban(iban), iban, next);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void recordRequest(String key, long fingerprint, long result, long recordedAt) {
+            requests.record(key, fingerprint, result, recordedAt);
+        }
+    }
+
+    /**
+     * O partiție a clienților. Lacătul este ținut doar de comenzi; citirile folosesc direct
+     * harta concurentă, în care sunt publicate doar obiecte care nu se mai modifică.
+     */
+    private static final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Un cont din instantaneul folosit la construirea coloanelor: tranzacțiile lui salvate
+     * până la instantaneu sunt primele <code>count</code>.
+     */
+    private static final class ColumnsSource {
+        private final String iban;
+        private final int accountId;
+        private final Currency currency;
+        private final int count;
+
+        ColumnsSource(String iban, int accountId, Currency currency, int count) {
+            this.iban = iban;
+            this.accountId = accountId;
+            this.currency = currency;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Ordinea clienților la o anumită versiune, pentru paginare: ordinea înregistrării
+     * (<code>order</code> este <code>null</code>) sau cea dată de un comparator.
+     */
+    private static final class OrderSnapshot {
+        private final long version;
+        private final Comparator<? super ClientSummary> order;
+        private final String[] cnps;
+
+        OrderSnapshot(long version, Comparator<? super ClientSummary> order, String[] cnps) {
+            this.version = version;
+            this.order = order;
+            this.cnps = cnps;
+        }
+    }
+
+    /**
+     * Versiunea publicată a unui client, proiecția ei și numărul de ordine al înregistrării.
+     */
+    private static final class Entry {
+        private final long order;
+        private final Client client;
+        private final ClientSummary summary;
+
+        Entry(long order, Client client) {
+            this.order = order;
+            this.client = client;
+            this.summary = new ClientSummary(client);
+        }
+    }
 }
@@ -0,0 +1,331 @@
+package ro.ppoo.banking.repository;
+
+import ro.ppoo.banking.model.Transaction;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Arhiva lunară a tranzacțiilor vechi, mutate din {@link HistoryLog} la arhivare.
+ * <p>
+ * Fiecare arhivare scrie câte un fișier pentru fiecare lună în care au avut loc tranzacțiile
+ * arhivate: <code>AAAA-LL-R.arc</code>, unde <code>R</code> este poziția de început a istoricului
+ * rescris la aceeași arhivare. Un fișier începe cu antetul <code>[magic][versiune codec]</code>,
+ * urmat de grupuri de câte cel mult {@value #CHUNK_ACCOUNTS} conturi:
+ * <code>[lungime][număr conturi][IBAN-uri][lungime necomprimată][date comprimate]</code>.
+ * Datele conțin, pentru fiecare cont, numărul de tranzacții și blocul lor
+ * ({@link ClientCodec#writeTransactionBlock}), scrise cu un dicționar comun grupului.
+ * </p>
+ * <p>
+ * Un cont are de obicei puține tranzacții într-o lună, deci un bloc separat pentru fiecare cont
+ * s-ar comprima prost; grupurile comprimă împreună tranzacțiile mai multor conturi, iar
+ * IBAN-urile lor rămân necomprimate, pentru indexare.
+ * </p>
+ * <p>
+ * O arhivare este validă doar după ce poziția <code>R</code> ajunge în catalog, ca poziție de
+ * început a istoricului. La deschidere, fișierele cu o poziție mai mare decât cea din catalog
+ * provin dintr-o arhivare întreruptă și sunt șterse, deoarece tranzacțiile lor se află încă în istoric.
+ * </p>
+ * <p>
+ * Fișierele sunt citite doar la cerere: la prima citire a unei luni, fișierele ei sunt mapate
+ * în memorie și indexate după IBAN. Citirea unui cont decomprimă doar grupul lui.
+ * </p>
+ */
+class HistoryArchive {
+    private static final int ARCHIVE_MAGIC = 0x50504841;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int CHUNK_ACCOUNTS = 256;
+    private static final Pattern FILE_NAME = Pattern.compile("(\\d{4}-\\d{2})-(\\d+)\\.arc");
+
+    private final File directory;
+    private final int codecVersion;
+    private final TreeMap<YearMonth, List<String>> namesByMonth = new TreeMap<>(Comparator.reverseOrder());
+    private final Map<String, ArchiveFile> filesByName = new HashMap<>();
+
+    /**
+     * @param codecVersion Versiunea {@link ClientCodec} configurată; arhiva folosește mereu blocuri,
+     *                     deci cel puțin {@link ClientCodec#BLOCK_VERSION}.
+     */
+    HistoryArchive(String directory, int codecVersion) {
+        this.directory = new File(directory);
+        this.codecVersion = Math.max(codecVersion, ClientCodec.BLOCK_VERSION);
+    }
+
+    /**
+     * Listează fișierele arhivei și le șterge pe cele ale arhivărilor care nu au ajuns în catalog.
+     *
+     * @param historyStart Poziția de început a istoricului, salvată în catalog.
+     */
+    synchronized void open(long historyStart) {
+        namesByMonth.clear();
+        filesByName.clear();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(file -> runOf(file.getName())));
+        for (File file : files) {
+            Matcher matcher = FILE_NAME.matcher(file.getName());
+            if (!matcher.matches()) {
+                continue;
+            }
+            if (Long.parseLong(matcher.group(2)) > historyStart) {
+                if (!file.delete()) {
+                    throw new RuntimeException("Error at deleting archive file " + file.getName());
+                }
+            } else {
+                namesByMonth.computeIfAbsent(YearMonth.parse(matcher.group(1)), key -> new ArrayList<>()).add(file.getName());
+            }
+        }
+    }
+
+    /**
+     * @return Lunile care au tranzacții arhivate, de la cea mai recentă la cea mai veche.
+     */
+    synchronized List<YearMonth> months() {
+        return new ArrayList<>(namesByMonth.keySet());
+    }
+
+    /**
+     * Citește tranzacțiile arhivate ale unui cont dintr-o lună, în ordinea în care au fost scrise.
+     */
+    synchronized List<Transaction> read(String iban, YearMonth month) {
+        List<Transaction> transactions = new ArrayList<>();
+        try {
+            for (String name : namesByMonth.getOrDefault(month, List.of())) {
+                ArchiveFile file = file(name);
+                Integer offset = file.offsetsByIban.get(iban);
+                if (offset != null) {
+                    transactions.addAll(readChunk(file, offset, iban));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error at reading the archived history of " + iban, e);
+        }
+        return transactions;
+    }
+
+    /**
+     * Începe scrierea fișierelor unei arhivări. Conturile sunt adăugate pe rând, prin
+     * {@link Writer#add}, iar fișierele sunt vizibile pentru citire abia după {@link Writer#finish()}.
+     *
+     * @param run Poziția de început a istoricului rescris la această arhivare.
+     */
+    Writer writer(long run) {
+        directory.mkdirs();
+        return new Writer(run);
+    }
+
+    private synchronized void register(YearMonth month, String name) {
+        namesByMonth.computeIfAbsent(month, key -> new ArrayList<>()).add(name);
+    }
+
+    private byte[] encodeChunk(List<Map.Entry<String, List<Transaction>>> accounts) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(raw);
+        ClientCodec codec = new ClientCodec(codecVersion);
+        for (Map.Entry<String, List<Transaction>> account : accounts) {
+            codec.writeKey(data, account.getKey());
+            ClientCodec.writeVarLong(data, account.getValue().size());
+            codec.writeTransactionBlock(data, account.getValue());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ClientCodec.writeVarLong(out, accounts.size());
+        for (Map.Entry<String, List<Transaction>> account : accounts) {
+            out.writeUTF(account.getKey());
+        }
+        ClientCodec.writeVarLong(out, raw.size());
+        out.write(HistoryLog.deflate(raw.toByteArray()));
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Tranzacțiile contului dat din grupul de la <code>offset</code>. Grupul este decodat întreg,
+     * deoarece conturile lui împart același dicționar, iar ultimul grup decodat din fiecare
+     * fișier este păstrat pentru citirile următoare (de exemplu, pentru celelalte conturi ale clientului).
+     */
+    private static List<Transaction> readChunk(ArchiveFile file, int offset, String iban) throws IOException {
+        if (file.chunk == null || file.chunkOffset != offset) {
+            DataInputStream in = HistoryLog.record(file.buffer, offset, file.buffer.getInt(offset));
+            int accounts = (int) ClientCodec.readVarLong(in);
+            for (int i = 0; i < accounts; i++) {
+                in.readUTF();
+            }
+            byte[] raw = new byte[(int) ClientCodec.readVarLong(in)];
+            HistoryLog.inflate(in.readAllBytes(), raw);
+
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(raw));
+            ClientCodec codec = new ClientCodec(file.version);
+            Map<String, List<Transaction>> chunk = new HashMap<>();
+            for (int i = 0; i < accounts; i++) {
+                String key = codec.readKey(data);
+                chunk.put(key, codec.readTransactionBlock(data, (int) ClientCodec.readVarLong(data)));
+            }
+            file.chunk = chunk;
+            file.chunkOffset = offset;
+        }
+        return file.chunk.getOrDefault(iban, List.of());
+    }
+
+    private ArchiveFile file(String name) throws IOException {
+        ArchiveFile file = filesByName.get(name);
+        if (file == null) {
+            file = index(new File(directory, name));
+            filesByName.put(name, file);
+        }
+        return file;
+    }
+
+    private static ArchiveFile index(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != ARCHIVE_MAGIC) {
+            throw new IOException("Unknown archive file format: " + file.getName());
+        }
+
+        ArchiveFile archive = new ArchiveFile(buffer, buffer.getInt(Integer.BYTES));
+        int offset = HEADER_SIZE;
+        while (offset + Integer.BYTES <= buffer.limit()) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            DataInputStream in = HistoryLog.record(buffer, offset, length);
+            int accounts = (int) ClientCodec.readVarLong(in);
+            for (int i = 0; i < accounts; i++) {
+                archive.offsetsByIban.put(in.readUTF(), offset);
+            }
+            offset += Integer.BYTES + length;
+        }
+        return archive;
+    }
+
+    private static long runOf(String name) {
+        Matcher matcher = FILE_NAME.matcher(name);
+        return matcher.matches() ? Long.parseLong(matcher.group(2)) : 0;
+    }
+
+    /**
+     * Scrierea fișierelor unei arhivări, cont cu cont. Fiecare lună are fișierul ei deschis,
+     * în care conturile sunt adunate până la un grup complet de {@value #CHUNK_ACCOUNTS};
+     * în memorie rămân doar grupurile în curs, nu toată arhivarea.
+     */
+    final class Writer {
+        private final long run;
+        private final Map<YearMonth, MonthFile> files = new TreeMap<>();
+
+        private Writer(long run) {
+            this.run = run;
+        }
+
+        /**
+         * Adaugă tranzacțiile arhivate ale unui cont, pe luni.
+         */
+        void add(String iban, Map<YearMonth, List<Transaction>> transactionsByMonth) {
+            for (Map.Entry<YearMonth, List<Transaction>> month : transactionsByMonth.entrySet()) {
+                String name = month.getKey() + "-" + run + ".arc";
+                try {
+                    MonthFile file = files.get(month.getKey());
+                    if (file == null) {
+                        file = new MonthFile(new File(directory, name));
+                        files.put(month.getKey(), file);
+                        file.out.writeInt(ARCHIVE_MAGIC);
+                        file.out.writeInt(codecVersion);
+                    }
+                    file.accounts.add(Map.entry(iban, month.getValue()));
+                    if (file.accounts.size() == CHUNK_ACCOUNTS) {
+                        file.writeChunk();
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException("Error at writing archive file " + name, e);
+                }
+            }
+        }
+
+        /**
+         * Scrie grupurile rămase, forțează fișierele pe disc și le face vizibile pentru citire.
+         */
+        void finish() {
+            for (Map.Entry<YearMonth, MonthFile> month : files.entrySet()) {
+                MonthFile file = month.getValue();
+                try (FileOutputStream stream = file.stream) {
+                    if (!file.accounts.isEmpty()) {
+                        file.writeChunk();
+                    }
+                    file.out.writeInt(0);
+                    file.out.flush();
+                    stream.getFD().sync();
+                } catch (IOException e) {
+                    throw new RuntimeException("Error at writing archive file " + file.file.getName(), e);
+                }
+            }
+            for (Map.Entry<YearMonth, MonthFile> month : files.entrySet()) {
+                register(month.getKey(), month.getValue().file.getName());
+            }
+        }
+
+        /**
+         * Închide fișierele unei arhivări abandonate; ele sunt șterse la următoarea deschidere.
+         */
+        void abort() {
+            for (MonthFile file : files.values()) {
+                try {
+                    file.stream.close();
+                } catch (IOException e) {
+                    // fișierul nu mai este folosit
+                }
+            }
+        }
+
+        private final class MonthFile {
+            private final File file;
+            private final FileOutputStream stream;
+            private final DataOutputStream out;
+            private final List<Map.Entry<String, List<Transaction>>> accounts = new ArrayList<>();
+
+            MonthFile(File file) throws IOException {
+                this.file = file;
+                this.stream = new FileOutputStream(file);
+                this.out = new DataOutputStream(new BufferedOutputStream(stream));
+            }
+
+            void writeChunk() throws IOException {
+                byte[] chunk = encodeChunk(accounts);
+                out.writeInt(chunk.length);
+                out.write(chunk);
+                accounts.clear();
+            }
+        }
+    }
+
+    /**
+     * Un fișier de arhivă mapat, cu poziția grupului fiecărui cont.
+     */
+    private static final class ArchiveFile {
+        private final MappedByteBuffer buffer;
+        private final int version;
+        private final Map<String, Integer> offsetsByIban = new HashMap<>();
+        private Map<String, List<Transaction>> chunk;
+        private int chunkOffset;
+
+        ArchiveFile(MappedByteBuffer buffer, int version) {
+            this.buffer = buffer;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,789 @@
+package ro.ppoo.banking.repository;
+
+import ro.ppoo.banking.model.Transaction;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Istoricul tranzacțiilor, păstrat în segmente append-only mapate în memorie.
+ * <p>
+ * Fiecare segment (<code>history-NNNNN.seg</code>) are {@value #SEGMENT_SIZE} octeți și începe
+ * cu un antet <code>[magic][versiune codec]</code>, urmat de înregistrări. O lungime 0 marchează
+ * sfârșitul datelor scrise. Segmentele fără antet provin din prima versiune a formatului și sunt
+ * citite cu versiunea 1. Forma înregistrărilor depinde de versiunea segmentului:
+ * <ul>
+ * <li>versiunile 1 și 2: <code>[lungime][IBAN][tranzacție]</code>, o tranzacție pe înregistrare;</li>
+ * <li>versiunea 3: <code>[lungime][IBAN][număr][compresie][bloc]</code>, un bloc cu până la
+ * {@value #BLOCK_SIZE} tranzacții ale aceluiași cont (vezi {@link ClientCodec#writeTransactionBlock}),
+ * comprimat cu {@link Deflater} când astfel ocupă mai puțin.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * În versiunea 3, tranzacțiile noi ale unui cont sunt ținute în memorie până se adună un bloc
+ * complet sau până la următorul checkpoint ({@link #force()}). Nu se pierde nimic la o oprire
+ * bruscă: tot ce este după poziția din checkpoint este oricum refăcut din jurnal.
+ * </p>
+ * <p>
+ * Poziția de scriere este salvată în catalog la fiecare checkpoint; tot ce a fost scris după
+ * ea este refăcut din jurnal la pornire.
+ * </p>
+ * <p>
+ * Pozițiile cresc mereu, dar istoricul nu începe neapărat cu primul segment: la arhivare
+ * (vezi {@link #startRewrite()}), tranzacțiile păstrate ale fiecărui cont sunt rescrise după
+ * poziția de la începutul rescrierii, iar segmentele anterioare sunt șterse. Și poziția de
+ * început este salvată în catalog.
+ * </p>
+ * <p>
+ * La deschidere sunt citite doar IBAN-urile înregistrărilor, pentru a construi un index
+ * IBAN -> poziții. Tranzacțiile unui cont sunt decodate abia când sunt cerute prin
+ * {@link #read(String, int)}.
+ * </p>
+ * <p>
+ * Poziția de scriere, segmentele și indexul sunt comune tuturor conturilor și sunt protejate de
+ * monitorul instanței, ținut doar cât timp sunt modificate sau copiate:
+ * <ul>
+ * <li>o citire copiază sub monitor pozițiile înregistrărilor de care are nevoie și tranzacțiile
+ * din blocul în curs, apoi decodează și decomprimă înregistrările fără monitor. Înregistrările
+ * scrise nu se mai modifică, deci pot fi citite în paralel cu scrierile;</li>
+ * <li>un bloc complet este codificat și comprimat fără monitor, care este obținut doar pentru
+ * a rezerva poziția, a copia octeții în segment și a actualiza indexul. Tranzacțiile blocului
+ * rămân vizibile în blocul în curs până când înregistrarea este indexată.</li>
+ * </ul>
+ * Tranzacțiile unui cont sunt adăugate de un singur fir odată (depozitul blochează partiția
+ * titularului), deci blocurile unui cont ajung în segmente în ordinea tranzacțiilor.
+ * </p>
+ */
+class HistoryLog {
+    static final int SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    static final int BLOCK_SIZE = 128;
+
+    private static final int SEGMENT_MAGIC = 0x50504853;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    /**
+     * Limita tranzacțiilor ținute în memorie în blocuri incomplete, pentru toate conturile.
+     */
+    private static final int MAX_PENDING = 16 * 1024;
+
+    /**
+     * Câți octeți de la începutul unei înregistrări sunt citiți la indexare: cheia și numărul de tranzacții.
+     */
+    private static final int INDEX_PREFIX = 64;
+
+    private static final byte STORED = 0;
+    private static final byte DEFLATED = 1;
+
+    private final File directory;
+    private final int codecVersion;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<Integer> segmentVersions = new ArrayList<>();
+    private final Map<String, Positions> positionsByIban = new HashMap<>();
+    private final Map<String, List<Transaction>> pendingByIban = new HashMap<>();
+    private int pendingCount;
+    private long start;
+    private long position;
+    private long rewriteStart = -1;
+    /**
+     * Conturile care aveau istoric la începutul rescrierii și nu au fost încă rescrise.
+     */
+    private final Set<String> notRewritten = new HashSet<>();
+
+    HistoryLog(String directory, int codecVersion) {
+        this.directory = new File(directory);
+        this.codecVersion = codecVersion;
+    }
+
+    synchronized long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return Poziția primei înregistrări din istoric.
+     */
+    synchronized long getStart() {
+        return start;
+    }
+
+    /**
+     * @return Numărul de tranzacții salvate pentru contul dat.
+     */
+    synchronized int count(String iban) {
+        Positions positions = positionsByIban.get(iban);
+        List<Transaction> pending = pendingByIban.get(iban);
+        return (positions != null ? positions.transactions : 0) + (pending != null ? pending.size() : 0);
+    }
+
+    /**
+     * Decodează primele <code>count</code> tranzacții ale unui cont, în ordinea în care au fost scrise.
+     */
+    List<Transaction> read(String iban, int count) {
+        return read(iban, 0, count);
+    }
+
+    /**
+     * Decodează tranzacțiile contului cu indicii din intervalul <code>[from, to)</code>, în ordinea
+     * în care au fost scrise. Sunt citite doar blocurile care conțin intervalul.
+     */
+    List<Transaction> read(String iban, int from, int to) {
+        List<RecordView> records = new ArrayList<>();
+        List<Transaction> pending;
+        int first = 0;
+        synchronized (this) {
+            Positions positions = positionsByIban.get(iban);
+            for (int i = 0; positions != null && i < positions.size && first < to; i++) {
+                int count = positions.counts != null ? positions.counts[i] : 1;
+                if (first + count > from) {
+                    long position = positions.values[i];
+                    int index = segmentIndex(position);
+                    records.add(new RecordView(segment(index), segmentVersions.get(index), segmentOffset(position), first));
+                }
+                first += count;
+            }
+            pending = new ArrayList<>(pendingByIban.getOrDefault(iban, List.of()));
+        }
+
+        List<Transaction> transactions = new ArrayList<>(Math.max(to - from, 0));
+        try {
+            for (RecordView record : records) {
+                List<Transaction> decoded = record.decode();
+                transactions.addAll(decoded.subList(Math.max(from - record.first, 0), Math.min(to - record.first, decoded.size())));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error at reading the transaction history of " + iban, e);
+        }
+        for (int i = Math.max(from - first, 0); i < pending.size() && first + i < to; i++) {
+            transactions.add(pending.get(i));
+        }
+        return transactions;
+    }
+
+    /**
+     * Uită tranzacțiile unui cont șters; înregistrările rămân în segmente, dar nu mai sunt citite.
+     */
+    synchronized void forget(String iban) {
+        positionsByIban.remove(iban);
+        notRewritten.remove(iban);
+        List<Transaction> pending = pendingByIban.remove(iban);
+        if (pending != null) {
+            pendingCount -= pending.size();
+        }
+    }
+
+    /**
+     * Mapează segmentele existente și indexează înregistrările până la poziția salvată în catalog.
+     * <p>
+     * O înregistrare nu depășește niciodată finalul segmentului ei, deci segmentele sunt indexate
+     * în paralel, pe {@link ForkJoinPool#commonPool()}, iar indexurile lor sunt apoi concatenate
+     * în ordinea segmentelor. Pe un singur procesor, segmentele sunt indexate pe firul apelant.
+     * </p>
+     *
+     * @param startPosition      Poziția de început salvată la ultimul checkpoint.
+     * @param checkpointPosition Poziția de scriere salvată la ultimul checkpoint.
+     */
+    synchronized void open(long startPosition, long checkpointPosition) {
+        segments.clear();
+        segmentVersions.clear();
+        positionsByIban.clear();
+        pendingByIban.clear();
+        pendingCount = 0;
+        rewriteStart = -1;
+        notRewritten.clear();
+        directory.mkdirs();
+
+        // segmentele sunt mapate aici, pe un singur fir; indexarea doar le citește
+        int firstSegment = segmentIndex(startPosition);
+        start = firstPosition(firstSegment);
+        int lastSegment = segmentIndex(Math.max(start, checkpointPosition));
+        for (int index = firstSegment; index <= lastSegment; index++) {
+            segment(index);
+        }
+        deleteRetired();
+
+        IntStream segmentIndexes = IntStream.rangeClosed(firstSegment, lastSegment);
+        if (ForkJoinPool.getCommonPoolParallelism() > 1) {
+            segmentIndexes = segmentIndexes.parallel();
+        }
+        List<SegmentIndex> indexes = segmentIndexes
+                .mapToObj(index -> indexSegment(index, checkpointPosition))
+                .toList();
+
+        for (SegmentIndex index : indexes) {
+            for (Map.Entry<String, Positions> entry : index.positionsByIban.entrySet()) {
+                positions(entry.getKey()).addAll(entry.getValue());
+            }
+        }
+
+        position = Math.max(indexes.get(indexes.size() - 1).end, checkpointPosition);
+        markEnd();
+    }
+
+    /**
+     * Indexează înregistrările unui segment deja mapat, până la marcajul de final
+     * sau până la poziția checkpoint-ului.
+     */
+    private SegmentIndex indexSegment(int index, long checkpointPosition) {
+        MappedByteBuffer segment = segments.get(index);
+        int version = segmentVersions.get(index);
+        SegmentIndex result = new SegmentIndex();
+
+        long position = (long) index * SEGMENT_SIZE + (version > ClientCodec.LEGACY_VERSION ? HEADER_SIZE : 0);
+        try {
+            while (position < checkpointPosition && segmentOffset(position) + Integer.BYTES <= SEGMENT_SIZE) {
+                int offset = segmentOffset(position);
+                int length = segment.getInt(offset);
+                if (length == 0) {
+                    break;
+                }
+
+                DataInputStream in = record(segment, offset, Math.min(length, INDEX_PREFIX));
+                String iban = new ClientCodec(version).readKey(in);
+                int count = version >= ClientCodec.BLOCK_VERSION ? (int) ClientCodec.readVarLong(in) : 1;
+                result.positionsByIban.computeIfAbsent(iban, key -> new Positions()).add(position, count);
+                position += Integer.BYTES + length;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error at reading the transaction history", e);
+        }
+        result.end = position;
+        return result;
+    }
+
+    /**
+     * Adaugă o tranzacție la istoricul unui cont. Cu versiunea 3, tranzacția intră în blocul
+     * în curs al contului, scris în segment când are {@value #BLOCK_SIZE} tranzacții.
+     */
+    void append(String iban, Transaction transaction) {
+        List<Transaction> block;
+        int version;
+        synchronized (this) {
+            if (codecVersion < ClientCodec.BLOCK_VERSION) {
+                write(iban, List.of(transaction));
+                return;
+            }
+
+            List<Transaction> pending = pendingByIban.computeIfAbsent(iban, key -> new ArrayList<>());
+            pending.add(transaction);
+            pendingCount++;
+            if (pending.size() < BLOCK_SIZE || notRewritten.contains(iban)) {
+                if (pendingCount > MAX_PENDING) {
+                    flush();
+                }
+                return;
+            }
+            block = List.copyOf(pending);
+            version = nextRecordVersion();
+        }
+
+        // compresia blocului, partea costisitoare a scrierii, se face fără monitor
+        byte[] record = version >= ClientCodec.BLOCK_VERSION ? encode(iban, block, version) : null;
+        synchronized (this) {
+            List<Transaction> pending = pendingByIban.get(iban);
+            if (pending == null || pending.size() < block.size() || pending.get(0) != block.get(0)) {
+                // blocul a fost scris între timp de flush()
+                return;
+            }
+            write(iban, block, record, version);
+            pending.subList(0, block.size()).clear();
+            pendingCount -= block.size();
+            if (pending.isEmpty()) {
+                pendingByIban.remove(iban);
+            }
+            if (pendingCount > MAX_PENDING) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Scrie în segmente blocurile incomplete ale tuturor conturilor, în afară de cele care
+     * așteaptă rescrierea (vezi {@link #startRewrite()}).
+     */
+    synchronized void flush() {
+        pendingByIban.entrySet().removeIf(entry -> {
+            if (notRewritten.contains(entry.getKey())) {
+                return false;
+            }
+            write(entry.getKey(), entry.getValue());
+            pendingCount -= entry.getValue().size();
+            return true;
+        });
+    }
+
+    /**
+     * Scrie blocurile incomplete și forțează scrierea pe disc a paginilor modificate din toate segmentele.
+     */
+    synchronized void force() {
+        flush();
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) segment.force();
+        }
+    }
+
+    /**
+     * Începe rescrierea istoricului: scrie blocurile incomplete și mută poziția de scriere la
+     * începutul unui segment nou. De aici, orice înregistrare nouă ajunge după această poziție.
+     * <p>
+     * Conturile sunt apoi rescrise unul câte unul, prin {@link #rewrite(String, Predicate, Consumer)},
+     * în timp ce restul conturilor primesc tranzacții în continuare. Tranzacțiile noi ale unui cont
+     * care așteaptă rescrierea rămân în memorie, în blocul lui în curs: o înregistrare scrisă acum
+     * ar fi înlocuită de rescriere, dar tot ar fi indexată la următoarea deschidere, deoarece
+     * indexul este refăcut din segmente. Conturile fără istoric la începutul rescrierii nu au
+     * nimic de rescris. Segmentele anterioare nu mai
+     * sunt citite după {@link #finishRewrite()}, dar rămân pe disc până la {@link #deleteRetired()}:
+     * până când noua poziție de început ajunge în catalog, o repornire folosește în continuare
+     * vechiul istoric și reface din jurnal tot ce a fost scris după checkpoint.
+     * </p>
+     *
+     * @return Viitoarea poziție de început a istoricului.
+     */
+    synchronized long startRewrite() {
+        flush();
+        notRewritten.addAll(positionsByIban.keySet());
+        int index = segmentIndex(position) + 1;
+        startSegment(index);
+        rewriteStart = firstPosition(index);
+        position = rewriteStart;
+        markEnd();
+        return rewriteStart;
+    }
+
+    /**
+     * Rescrie istoricul unui cont după poziția de la începutul rescrierii, bloc cu bloc, fără
+     * tranzacțiile respinse de <code>keep</code>. Se apelează doar cât timp contul nu primește
+     * tranzacții noi (depozitul îi blochează exclusiv lacătul).
+     * <p>
+     * Tranzacțiile sunt citite câte {@value #BLOCK_SIZE} odată, deci în memorie se află doar blocul
+     * curent. Înregistrările noi sunt indexate separat, iar indexul contului este înlocuit abia
+     * la final; până atunci, citirile folosesc vechile înregistrări.
+     * </p>
+     *
+     * @param removed Primește, în ordine, tranzacțiile respinse.
+     * @return Numărul de tranzacții respinse.
+     */
+    int rewrite(String iban, Predicate<Transaction> keep, Consumer<Transaction> removed) {
+        synchronized (this) {
+            if (rewriteStart < 0) {
+                throw new IllegalStateException("History rewrite not started.");
+            }
+            if (!notRewritten.contains(iban)) {
+                return 0;
+            }
+        }
+
+        int count = count(iban);
+        int removedCount = 0;
+        Positions rewritten = new Positions();
+        List<Transaction> block = new ArrayList<>(BLOCK_SIZE);
+        for (int from = 0; from < count; from += BLOCK_SIZE) {
+            for (Transaction transaction : read(iban, from, Math.min(from + BLOCK_SIZE, count))) {
+                if (!keep.test(transaction)) {
+                    removed.accept(transaction);
+                    removedCount++;
+                    continue;
+                }
+                block.add(transaction);
+                if (block.size() == BLOCK_SIZE) {
+                    writeRewritten(iban, block, rewritten);
+                    block = new ArrayList<>(BLOCK_SIZE);
+                }
+            }
+        }
+
+        synchronized (this) {
+            notRewritten.remove(iban);
+            positionsByIban.remove(iban);
+            List<Transaction> pending = pendingByIban.remove(iban);
+            if (pending != null) {
+                pendingCount -= pending.size();
+            }
+            if (!block.isEmpty() && codecVersion < ClientCodec.BLOCK_VERSION) {
+                write(iban, block, null, 0, rewritten);
+            } else if (!block.isEmpty()) {
+                // ultimul bloc incomplet rămâne în memorie, ca blocul în curs al contului
+                pendingByIban.put(iban, block);
+                pendingCount += block.size();
+            }
+            if (rewritten.size > 0) {
+                positionsByIban.put(iban, rewritten);
+            }
+            if (pendingCount > MAX_PENDING) {
+                flush();
+            }
+        }
+        return removedCount;
+    }
+
+    /**
+     * Scrie un bloc rescris, codificat fără monitor, ca în {@link #append}.
+     */
+    private void writeRewritten(String iban, List<Transaction> block, Positions rewritten) {
+        int version;
+        synchronized (this) {
+            version = nextRecordVersion();
+        }
+        byte[] record = version >= ClientCodec.BLOCK_VERSION ? encode(iban, block, version) : null;
+        synchronized (this) {
+            write(iban, block, record, version, rewritten);
+        }
+    }
+
+    /**
+     * @return Conturile care nu au fost încă rescrise.
+     */
+    synchronized Set<String> accountsNotRewritten() {
+        return new HashSet<>(notRewritten);
+    }
+
+    /**
+     * Încheie rescrierea: poziția de la începutul ei devine poziția de început a istoricului.
+     * Se apelează după ce toate conturile au fost rescrise.
+     */
+    synchronized void finishRewrite() {
+        if (rewriteStart < 0) {
+            throw new IllegalStateException("History rewrite not started.");
+        }
+        if (!notRewritten.isEmpty()) {
+            throw new IllegalStateException("History rewrite incomplete.");
+        }
+        start = rewriteStart;
+        rewriteStart = -1;
+    }
+
+    /**
+     * Șterge segmentele de dinaintea poziției de început, rămase de la o rescriere.
+     */
+    synchronized void deleteRetired() {
+        int firstSegment = segmentIndex(start);
+        for (int index = 0; index < firstSegment; index++) {
+            if (index < segments.size()) {
+                segments.set(index, null);
+            }
+            File file = segmentFile(index);
+            if (file.exists() && !file.delete()) {
+                throw new RuntimeException("Error at deleting history segment " + file.getName());
+            }
+        }
+    }
+
+    private void write(String iban, List<Transaction> transactions) {
+        write(iban, transactions, null, 0, positions(iban));
+    }
+
+    private void write(String iban, List<Transaction> transactions, byte[] encoded, int encodedVersion) {
+        write(iban, transactions, encoded, encodedVersion, positions(iban));
+    }
+
+    /**
+     * Versiunea segmentului în care ar fi scrisă următoarea înregistrare, dacă încape în el.
+     * Un segment în versiunea 1 nu mai primește înregistrări, deci pentru el se folosește versiunea configurată.
+     */
+    private int nextRecordVersion() {
+        int index = segmentIndex(position);
+        segment(index);
+        int version = segmentVersions.get(index);
+        return version == ClientCodec.LEGACY_VERSION ? codecVersion : version;
+    }
+
+    /**
+     * Scrie o înregistrare la poziția curentă.
+     *
+     * @param encoded        Înregistrarea deja codificată, sau <code>null</code>; este folosită doar
+     *                       dacă segmentul în care ajunge are versiunea <code>encodedVersion</code>.
+     * @param target         Indexul în care este adăugată poziția înregistrării.
+     */
+    private void write(String iban, List<Transaction> transactions, byte[] encoded, int encodedVersion,
+                       Positions target) {
+        int index = segmentIndex(position);
+        segment(index);
+        if (segmentVersions.get(index) == ClientCodec.LEGACY_VERSION && codecVersion > ClientCodec.LEGACY_VERSION) {
+            // versiunea 1 scrie id-urile pe 32 de biți: tranzacțiile noi încep un segment în versiunea configurată
+            index++;
+            startSegment(index);
+            position = firstPosition(index);
+        }
+        if (segmentVersions.get(index) < ClientCodec.BLOCK_VERSION && transactions.size() > 1) {
+            // segment început de o versiune fără blocuri: tranzacțiile sunt scrise una câte una
+            for (Transaction transaction : transactions) {
+                write(iban, List.of(transaction), null, 0, target);
+            }
+            return;
+        }
+
+        byte[] record = encoded != null && encodedVersion == segmentVersions.get(index)
+                ? encoded
+                : encode(iban, transactions, segmentVersions.get(index));
+        int size = Integer.BYTES + record.length;
+        if (HEADER_SIZE + size + Integer.BYTES > SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Transaction record is too large.");
+        }
+        if (segmentOffset(position) + size + Integer.BYTES > SEGMENT_SIZE) {
+            index++;
+            startSegment(index);
+            position = firstPosition(index);
+            if (encoded == null || encodedVersion != segmentVersions.get(index)) {
+                record = encode(iban, transactions, segmentVersions.get(index));
+            }
+            size = Integer.BYTES + record.length;
+        }
+
+        MappedByteBuffer segment = segment(index);
+        int offset = segmentOffset(position);
+        segment.put(offset + Integer.BYTES, record);
+        segment.putInt(offset, record.length);
+        target.add(position, transactions.size());
+        position += size;
+        markEnd();
+    }
+
+    /**
+     * Codifică o înregistrare, fără lungimea ei: o tranzacție (versiunile 1 și 2) sau un bloc.
+     */
+    static byte[] encode(String iban, List<Transaction> transactions, int version) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            ClientCodec codec = new ClientCodec(version);
+            codec.writeKey(out, iban);
+            if (version < ClientCodec.BLOCK_VERSION) {
+                codec.writeTransaction(out, transactions.get(0));
+                return bytes.toByteArray();
+            }
+
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            codec.writeTransactionBlock(new DataOutputStream(block), transactions);
+            byte[] raw = block.toByteArray();
+            byte[] compressed = deflate(raw);
+
+            ClientCodec.writeVarLong(out, transactions.size());
+            if (compressed.length < raw.length) {
+                out.writeByte(DEFLATED);
+                ClientCodec.writeVarLong(out, raw.length);
+                out.write(compressed);
+            } else {
+                out.writeByte(STORED);
+                out.write(raw);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decodează tranzacțiile unei înregistrări scrise cu {@link #encode(String, List, int)}.
+     */
+    static List<Transaction> decode(DataInputStream in, int version) throws IOException {
+        ClientCodec codec = new ClientCodec(version);
+        codec.readKey(in);
+        if (version < ClientCodec.BLOCK_VERSION) {
+            return List.of(codec.readTransaction(in));
+        }
+
+        int count = (int) ClientCodec.readVarLong(in);
+        if (in.readByte() == DEFLATED) {
+            byte[] raw = new byte[(int) ClientCodec.readVarLong(in)];
+            inflate(in.readAllBytes(), raw);
+            in = new DataInputStream(new ByteArrayInputStream(raw));
+        }
+        return codec.readTransactionBlock(in, count);
+    }
+
+    static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static void inflate(byte[] compressed, byte[] raw) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated history block");
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt history block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private Positions positions(String iban) {
+        return positionsByIban.computeIfAbsent(iban, key -> new Positions());
+    }
+
+    /**
+     * Primii <code>length</code> octeți ai înregistrării de la <code>offset</code>, fără lungimea ei.
+     */
+    static DataInputStream record(MappedByteBuffer segment, int offset, int length) {
+        byte[] record = new byte[length];
+        segment.get(offset + Integer.BYTES, record);
+        return new DataInputStream(new ByteArrayInputStream(record));
+    }
+
+    private void markEnd() {
+        segment(segmentIndex(position)).putInt(segmentOffset(position), 0);
+    }
+
+    private long firstPosition(int index) {
+        segment(index);
+        int dataStart = segmentVersions.get(index) > ClientCodec.LEGACY_VERSION ? HEADER_SIZE : 0;
+        return (long) index * SEGMENT_SIZE + dataStart;
+    }
+
+    /**
+     * Pregătește segmentul următor pentru scriere. Tot ce conține un segment aflat după poziția
+     * de scriere este oricum refăcut din jurnal, deci el primește antetul versiunii configurate.
+     */
+    private void startSegment(int index) {
+        MappedByteBuffer segment = segment(index);
+        if (codecVersion > ClientCodec.LEGACY_VERSION) {
+            segment.putInt(0, SEGMENT_MAGIC);
+            segment.putInt(Integer.BYTES, codecVersion);
+        }
+        segmentVersions.set(index, codecVersion);
+    }
+
+    /**
+     * Mapează un segment. Un segment nou primește un antet cu versiunea configurată;
+     * unul existent își păstrează versiunea cu care a fost scris.
+     */
+    private MappedByteBuffer segment(int index) {
+        while (segments.size() <= index) {
+            segments.add(null);
+            segmentVersions.add(null);
+        }
+        MappedByteBuffer segment = segments.get(index);
+        if (segment == null) {
+            File file = segmentFile(index);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            } catch (IOException e) {
+                throw new RuntimeException("Error at mapping history segment " + file.getName(), e);
+            }
+
+            int version;
+            if (segment.getInt(0) == SEGMENT_MAGIC) {
+                version = segment.getInt(Integer.BYTES);
+            } else if (segment.getInt(0) != 0 || codecVersion == ClientCodec.LEGACY_VERSION) {
+                version = ClientCodec.LEGACY_VERSION;
+            } else {
+                version = codecVersion;
+                segment.putInt(0, SEGMENT_MAGIC);
+                segment.putInt(Integer.BYTES, version);
+            }
+            segments.set(index, segment);
+            segmentVersions.set(index, version);
+        }
+        return segment;
+    }
+
+    private File segmentFile(int index) {
+        return new File(directory, String.format("history-%05d.seg", index));
+    }
+
+    private static int segmentIndex(long position) {
+        return (int) (position / SEGMENT_SIZE);
+    }
+
+    private static int segmentOffset(long position) {
+        return (int) (position % SEGMENT_SIZE);
+    }
+
+    /**
+     * O înregistrare de citit, copiată din index sub monitor: segmentul ei, versiunea acestuia,
+     * poziția în segment și indicele primei ei tranzacții în istoricul contului.
+     */
+    private static final class RecordView {
+        private final MappedByteBuffer segment;
+        private final int version;
+        private final int offset;
+        private final int first;
+
+        RecordView(MappedByteBuffer segment, int version, int offset, int first) {
+            this.segment = segment;
+            this.version = version;
+            this.offset = offset;
+            this.first = first;
+        }
+
+        /**
+         * Decodează tranzacțiile înregistrării: una singură sau un bloc întreg.
+         * Citirile absolute nu modifică starea bufferului, deci pot rula în paralel.
+         */
+        List<Transaction> decode() throws IOException {
+            return HistoryLog.decode(record(segment, offset, segment.getInt(offset)), version);
+        }
+    }
+
+    /**
+     * Pozițiile înregistrărilor unui cont; un <code>long</code> pe înregistrare în loc de obiectele decodate.
+     * Numărul de tranzacții al fiecărei înregistrări este reținut doar după apariția primului bloc.
+     */
+    private static final class Positions {
+        private long[] values = new long[4];
+        private int[] counts;
+        private int size;
+        private int transactions;
+
+        void add(long position, int count) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                if (counts != null) counts = Arrays.copyOf(counts, values.length);
+            }
+            if (count != 1 && counts == null) {
+                counts = new int[values.length];
+                Arrays.fill(counts, 0, size, 1);
+            }
+            if (counts != null) counts[size] = count;
+            values[size++] = position;
+            transactions += count;
+        }
+
+        void addAll(Positions other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i], other.counts != null ? other.counts[i] : 1);
+            }
+        }
+    }
+
+    /**
+     * Indexul unui singur segment, construit la deschidere.
+     */
+    private static final class SegmentIndex {
+        private final Map<String, Positions> positionsByIban = new HashMap<>();
+        private long end;
+    }
+}
@@ -0,0 +1,132 @@
+package ro.ppoo.banking.repository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rezultatele operațiilor executate recent, după cheia de idempotență primită de la client.
+ * <p>
+ * O cheie este reținută cel mult {@value #TTL_MILLIS} ms (24 de ore), iar cache-ul păstrează cel
+ * mult {@value #MAX_ENTRIES} chei; la depășire sunt eliminate cele mai vechi. Cheile sunt ținute în
+ * ordinea înregistrării, deci căutarea, adăugarea și eliminarea celor expirate costă O(1).
+ * </p>
+ * <p>
+ * Cache-ul este doar starea din memorie: cheile sunt scrise în jurnal, în același cadru cu
+ * operația pe care o identifică, și în catalog la checkpoint (vezi {@link ClientRepository}),
+ * deci sunt refăcute la pornire. Momentul înregistrării este cel scris pe disc, astfel încât
+ * o cheie expiră la aceeași oră și după o repornire.
+ * </p>
+ * <p>
+ * Împreună cu rezultatul este reținută amprenta parametrilor operației (vezi {@link Request#matches}),
+ * deci o cheie refolosită pentru altă operație este recunoscută, în loc să primească rezultatul
+ * operației originale.
+ * </p>
+ */
+final class IdempotencyCache {
+    static final int MAX_ENTRIES = 100_000;
+    static final long TTL_MILLIS = 24 * 60 * 60 * 1000L;
+    /**
+     * Amprenta cheilor înregistrate înainte de introducerea amprentelor, potrivită cu orice operație.
+     */
+    static final long UNKNOWN_FINGERPRINT = 0;
+
+    private final Map<String, Request> requests = new LinkedHashMap<>();
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @return Operația înregistrată cu cheia dată, sau <code>null</code> dacă nu există sau a expirat.
+     */
+    synchronized Request find(String key, long now) {
+        expire(now);
+        Request request = requests.get(key);
+        return request != null && !request.isExpired(now) ? request : null;
+    }
+
+    /**
+     * Reține rezultatul unei operații. Se apelează după scrierea ei pe disc și la reluarea jurnalului.
+     *
+     * @param fingerprint Amprenta parametrilor operației, sau {@link #UNKNOWN_FINGERPRINT}.
+     * @param recordedAt  Momentul înregistrării, în milisecunde (ca {@link System#currentTimeMillis()}).
+     */
+    synchronized void record(String key, long fingerprint, long result, long recordedAt) {
+        requests.putIfAbsent(key, new Request(key, fingerprint, result, recordedAt));
+        Iterator<Request> eldest = requests.values().iterator();
+        while (requests.size() > MAX_ENTRIES) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Marchează o cheie ca fiind în execuție, ca o reîncercare simultană să nu execute operația a doua oară.
+     *
+     * @return <code>false</code> dacă o operație cu aceeași cheie este deja în execuție.
+     */
+    boolean start(String key) {
+        return inProgress.add(key);
+    }
+
+    void finish(String key) {
+        inProgress.remove(key);
+    }
+
+    synchronized void clear() {
+        requests.clear();
+    }
+
+    /**
+     * @return Cheile neexpirate, în ordinea înregistrării, pentru checkpoint.
+     */
+    synchronized List<Request> snapshot(long now) {
+        expire(now);
+        return new ArrayList<>(requests.values());
+    }
+
+    /**
+     * Elimină cheile expirate de la începutul listei. Înregistrările vin în ordinea scrierii în
+     * jurnal, deci momentele lor sunt aproape crescătoare; o cheie expirată aflată după una
+     * neexpirată este ignorată de {@link #find} și eliminată la un apel ulterior.
+     */
+    private void expire(long now) {
+        Iterator<Request> iterator = requests.values().iterator();
+        while (iterator.hasNext() && iterator.next().isExpired(now)) {
+            iterator.remove();
+        }
+    }
+
+    /**
+     * O operație înregistrată: cheia, amprenta parametrilor, rezultatul și momentul înregistrării.
+     * Nu se modifică.
+     */
+    static final class Request {
+        final String key;
+        final long fingerprint;
+        final long result;
+        final long recordedAt;
+
+        Request(String key, long fingerprint, long result, long recordedAt) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.result = result;
+            this.recordedAt = recordedAt;
+        }
+
+        /**
+         * @return <code>true</code> dacă operația cu amprenta dată este cea înregistrată. O amprentă
+         * necunoscută, de o parte sau de alta, se potrivește cu orice operație.
+         */
+        boolean matches(long fingerprint) {
+            return this.fingerprint == UNKNOWN_FINGERPRINT || fingerprint == UNKNOWN_FINGERPRINT
+                    || this.fingerprint == fingerprint;
+        }
+
+        boolean isExpired(long now) {
+            return now - recordedAt >= TTL_MILLIS;
+        }
+    }
+}
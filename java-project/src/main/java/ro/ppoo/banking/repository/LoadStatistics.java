@@ -0,0 +1,47 @@
+package ro.ppoo.banking.repository;
+
+/**
+ * Statisticile unei încărcări a depozitului la pornire.
+ * <p>
+ * O înregistrare este un client, un cont, o tranzacție indexată sau un cadru reluat din jurnal;
+ * debitul este calculat pe timpul total al apelului {@link ClientRepository#loadFromFile()}.
+ * </p>
+ */
+public class LoadStatistics {
+    private final long clients;
+    private final long accounts;
+    private final long transactions;
+    private final long journalFrames;
+    private final long elapsedNanos;
+
+    public LoadStatistics(long clients, long accounts, long transactions, long journalFrames, long elapsedNanos) {
+        this.clients = clients;
+        this.accounts = accounts;
+        this.transactions = transactions;
+        this.journalFrames = journalFrames;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getClients() { return clients; }
+    public long getAccounts() { return accounts; }
+    public long getTransactions() { return transactions; }
+    public long getJournalFrames() { return journalFrames; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public long getRecordCount() {
+        return clients + accounts + transactions + journalFrames;
+    }
+
+    /**
+     * @return Numărul de înregistrări încărcate pe secundă.
+     */
+    public double getRecordsPerSecond() {
+        return elapsedNanos > 0 ? getRecordCount() * 1_000_000_000.0 / elapsedNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d clients, %d accounts, %d transactions, %d journal frames in %d ms (%.0f records/s)",
+                clients, accounts, transactions, journalFrames, elapsedNanos / 1_000_000, getRecordsPerSecond());
+    }
+}
@@ -0,0 +1,31 @@
+package ro.ppoo.banking.repository;
+
+import ro.ppoo.banking.model.Transaction;
+
+/**
+ * O înregistrare contabilă: modificarea soldului unui cont, împreună cu tranzacția care o explică.
+ * <p>
+ * Este folosită de {@link ClientRepository#post(Posting...)}, care aplică mai multe înregistrări
+ * (ex: cele două părți ale unui transfer) ca o singură operațiune.
+ * </p>
+ */
+public class Posting {
+    private final String iban;
+    private final long amount;
+    private final Transaction transaction;
+
+    /**
+     * @param iban        IBAN-ul contului afectat.
+     * @param amount      Suma adăugată la sold, în subunități (negativă pentru retrageri și transferuri trimise).
+     * @param transaction Tranzacția adăugată în istoricul contului.
+     */
+    public Posting(String iban, long amount, Transaction transaction) {
+        this.iban = iban;
+        this.amount = amount;
+        this.transaction = transaction;
+    }
+
+    public String getIban() { return iban; }
+    public long getAmount() { return amount; }
+    public Transaction getTransaction() { return transaction; }
+}
@@ -0,0 +1,231 @@
+package ro.ppoo.banking.repository;
+
+import ro.ppoo.banking.enums.Currency;
+import ro.ppoo.banking.enums.TransactionType;
+import ro.ppoo.banking.model.Transaction;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Copie pe coloane a tranzacțiilor tuturor conturilor, pentru rapoarte și statistici.
+ * <p>
+ * Fiecare tranzacție din istoricul unui cont este un rând, păstrat în tablouri de primitive:
+ * suma, ziua (<code>epochDay</code>), tipul, moneda contului și un identificator numeric al contului.
+ * Agregările parcurg astfel tablouri contigue, fără a încărca obiectele {@link Transaction}
+ * și fără a trece prin client și cont. Tranzacțiile arhivate nu sunt incluse.
+ * </p>
+ * <p>
+ * Rândurile sunt doar adăugate, de depozit, la fiecare tranzacție salvată. Tranzacțiile unui cont
+ * șters rămân în tablouri, dar contul este marcat și rândurile lui sunt ignorate.
+ * O interogare parcurge rândurile existente la momentul apelului, fără a bloca scrierile.
+ * </p>
+ */
+public class TransactionColumns {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private int[] epochDays = new int[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private byte[] currencies = new byte[INITIAL_CAPACITY];
+    private int[] accountIds = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private final Map<String, Integer> accountIdsByIban = new HashMap<>();
+    private final BitSet removedAccounts = new BitSet();
+    private int nextAccountId;
+    private volatile boolean complete;
+
+    TransactionColumns() {
+    }
+
+    /**
+     * @return <code>true</code> după ce tranzacțiile existente la construire au fost adăugate
+     * (vezi {@link ClientRepository#getTransactionColumns()}).
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    void markComplete() {
+        complete = true;
+    }
+
+    /**
+     * Adaugă un rând pentru o tranzacție din istoricul contului <code>iban</code>.
+     *
+     * @param currency Moneda contului, în care este exprimată suma.
+     */
+    synchronized void append(String iban, Currency currency, Transaction transaction) {
+        add(register(iban), currency, transaction);
+    }
+
+    /**
+     * @return Identificatorul contului, alocat la prima folosire a IBAN-ului.
+     */
+    synchronized int register(String iban) {
+        return accountIdsByIban.computeIfAbsent(iban, key -> nextAccountId++);
+    }
+
+    /**
+     * Adaugă rândurile tranzacțiilor salvate ale unui cont înregistrat anterior prin {@link #register}.
+     * Dacă între timp contul a fost șters, rândurile sunt adăugate sub vechiul identificator, deci
+     * sunt ignorate de agregări.
+     */
+    synchronized void appendAll(int accountId, Currency currency, List<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            add(accountId, currency, transaction);
+        }
+    }
+
+    private void add(int accountId, Currency currency, Transaction transaction) {
+        if (size == amounts.length) {
+            int capacity = size * 2;
+            amounts = Arrays.copyOf(amounts, capacity);
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            types = Arrays.copyOf(types, capacity);
+            currencies = Arrays.copyOf(currencies, capacity);
+            accountIds = Arrays.copyOf(accountIds, capacity);
+        }
+
+        amounts[size] = transaction.getAmount();
+        epochDays[size] = (int) transaction.getDate().toEpochDay();
+        types[size] = (byte) transaction.getType().ordinal();
+        currencies[size] = (byte) currency.ordinal();
+        accountIds[size] = accountId;
+        size++;
+    }
+
+    /**
+     * Exclude din agregări tranzacțiile unui cont șters. Un cont nou cu același IBAN primește alt identificator.
+     */
+    synchronized void removeAccount(String iban) {
+        Integer id = accountIdsByIban.remove(iban);
+        if (id != null) {
+            removedAccounts.set(id);
+        }
+    }
+
+    /**
+     * @return Numărul de tranzacții ale conturilor existente.
+     */
+    public long count() {
+        Rows rows = rows();
+        long count = 0;
+        for (int i = 0; i < rows.size; i++) {
+            if (rows.isLive(i)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return Numărul de tranzacții pentru fiecare tip.
+     */
+    public Map<TransactionType, Long> countByType() {
+        Rows rows = rows();
+        long[] counts = new long[TransactionType.values().length];
+        for (int i = 0; i < rows.size; i++) {
+            if (rows.isLive(i)) counts[rows.types[i]]++;
+        }
+
+        Map<TransactionType, Long> result = new EnumMap<>(TransactionType.class);
+        for (TransactionType type : TransactionType.values()) {
+            result.put(type, counts[type.ordinal()]);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Suma tranzacțiilor, în subunități, pentru fiecare monedă în care există tranzacții.
+     *
+     * @param type Tipul tranzacțiilor însumate, sau <code>null</code> pentru toate tipurile.
+     */
+    public Map<Currency, Long> sumByCurrency(TransactionType type) {
+        Rows rows = rows();
+        int wanted = type != null ? type.ordinal() : -1;
+        long[] sums = new long[Currency.values().length];
+        boolean[] present = new boolean[sums.length];
+        for (int i = 0; i < rows.size; i++) {
+            if ((wanted < 0 || rows.types[i] == wanted) && rows.isLive(i)) {
+                sums[rows.currencies[i]] += rows.amounts[i];
+                present[rows.currencies[i]] = true;
+            }
+        }
+
+        Map<Currency, Long> result = new EnumMap<>(Currency.class);
+        for (Currency currency : Currency.values()) {
+            if (present[currency.ordinal()]) result.put(currency, sums[currency.ordinal()]);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Suma zilnică a tranzacțiilor dintr-o monedă, în subunități, în intervalul dat (inclusiv capetele).
+     * Zilele fără tranzacții lipsesc din rezultat.
+     */
+    public SortedMap<LocalDate, Long> sumByDay(Currency currency, LocalDate from, LocalDate to) {
+        Rows rows = rows();
+        int first = (int) from.toEpochDay();
+        int last = (int) to.toEpochDay();
+        if (last < first) {
+            return Collections.emptySortedMap();
+        }
+
+        long[] sums = new long[last - first + 1];
+        boolean[] present = new boolean[sums.length];
+        int wanted = currency.ordinal();
+        for (int i = 0; i < rows.size; i++) {
+            int day = rows.epochDays[i];
+            if (day >= first && day <= last && rows.currencies[i] == wanted && rows.isLive(i)) {
+                sums[day - first] += rows.amounts[i];
+                present[day - first] = true;
+            }
+        }
+
+        SortedMap<LocalDate, Long> result = new TreeMap<>();
+        for (int i = 0; i < sums.length; i++) {
+            if (present[i]) result.put(LocalDate.ofEpochDay(first + i), sums[i]);
+        }
+        return Collections.unmodifiableSortedMap(result);
+    }
+
+    /**
+     * Tablourile și numărul de rânduri de la momentul apelului. Rândurile existente nu se mai
+     * modifică, iar o creștere a capacității creează tablouri noi, deci pot fi parcurse fără lacăt.
+     */
+    private synchronized Rows rows() {
+        return new Rows(this);
+    }
+
+    private static final class Rows {
+        private final long[] amounts;
+        private final int[] epochDays;
+        private final byte[] types;
+        private final byte[] currencies;
+        private final int[] accountIds;
+        private final int size;
+        private final BitSet removedAccounts;
+
+        Rows(TransactionColumns columns) {
+            this.amounts = columns.amounts;
+            this.epochDays = columns.epochDays;
+            this.types = columns.types;
+            this.currencies = columns.currencies;
+            this.accountIds = columns.accountIds;
+            this.size = columns.size;
+            this.removedAccounts = columns.removedAccounts.isEmpty() ? null : (BitSet) columns.removedAccounts.clone();
+        }
+
+        boolean isLive(int row) {
+            return removedAccounts == null || !removedAccounts.get(accountIds[row]);
+        }
+    }
+}
@@ -5,11 +5,23 @@ import ro.ppoo.banking.enums.Currency;
 import ro.ppoo.banking.enums.TransactionType;
 import ro.ppoo.banking.model.BankAccount;
 import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.Money;
+import ro.ppoo.banking.model.PaymentOrder;
+import ro.ppoo.banking.model.PaymentResult;
 import ro.ppoo.banking.model.Transaction;
 import ro.ppoo.banking.repository.ClientRepository;
+import ro.ppoo.banking.repository.Posting;
+import ro.ppoo.banking.repository.TransactionColumns;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.util.Random;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * Gestionează operațiunile bancare principale și logica tranzacțională.
@@ -22,18 +34,51 @@ public class BankService {
 
     private final ClientRepository clientRepository;
     private final CurrencyService currencyService;
+    private final TransactionIdGenerator idGenerator;
+    private final IbanAllocator ibanAllocator;
+    private final CommandPipeline commandPipeline;
 
-    public BankService(ClientRepository clientRepository, CurrencyService currencyService) {
+    public BankService(ClientRepository clientRepository, CurrencyService currencyService,
+                       TransactionIdGenerator idGenerator, IbanAllocator ibanAllocator,
+                       CommandPipeline commandPipeline) {
         this.clientRepository = clientRepository;
         this.currencyService = currencyService;
+        this.idGenerator = idGenerator;
+        this.ibanAllocator = ibanAllocator;
+        this.commandPipeline = commandPipeline;
     }
+    /**
+     * Deschide un cont nou, cu sold zero, pentru un client existent.
+     *
+     * @param client   Titularul contului.
+     * @param currency Moneda contului.
+     * @param type     Tipul contului.
+     */
     public void createAccount(Client client, Currency currency, AccountType type) {
-        String newIban = generateRandomIBAN();
-        double initialBalance = 0.0;
+        String newIban = ibanAllocator.nextIban();
+        long initialBalance = 0;
 
         BankAccount newAccount = new BankAccount(newIban, initialBalance, currency, type);
-        client.getAccounts().add(newAccount);
-        clientRepository.update(client);
+        commandPipeline.execute(() -> clientRepository.addAccount(client.getCNP(), newAccount));
+    }
+
+    /**
+     * Închide un cont bancar.
+     *
+     * @param iban IBAN-ul contului închis.
+     */
+    public void deleteAccount(String iban) {
+        commandPipeline.execute(() -> clientRepository.removeAccount(iban));
+    }
+
+    /**
+     * Blochează sau deblochează un cont; un cont blocat nu permite retrageri.
+     *
+     * @param iban    IBAN-ul contului.
+     * @param blocked Noua stare a contului.
+     */
+    public void setAccountBlocked(String iban, boolean blocked) {
+        commandPipeline.execute(() -> clientRepository.setBlocked(iban, blocked));
     }
 
     /**
@@ -44,56 +89,177 @@ public class BankService {
      * <li>Identifică clienții și conturile pe baza IBAN-urilor.</li>
      * <li>Verifică dacă conturile sunt active (neblocate) și dacă există fonduri suficiente.</li>
      * <li>Calculează suma convertită dacă transferul este între valute diferite (ex: EUR -> RON).</li>
-     * <li>Actualizează soldurile și creează două înregistrări de tranzacție (una pentru expeditor, una pentru destinatar).</li>
-     * <li>Salvează modificările în repository.</li>
+     * <li>Creează două înregistrări de tranzacție (una pentru expeditor, una pentru destinatar).</li>
+     * <li>Trimite ambele înregistrări, cu modificările de sold, către repository într-o singură operațiune.</li>
      * </ol>
+     * Transferurile simultane sunt sigure: depozitul verifică din nou starea contului sursă și
+     * rezervă atomic suma din soldul lui înainte de scriere (vezi {@link ClientRepository#post(Posting...)}).
      * </p>
      *
      * @param fromIban IBAN-ul contului sursă.
      * @param toIban   IBAN-ul contului destinație.
-     * @param amount   Suma de transferat (în moneda contului sursă).
+     * @param amount   Suma de transferat, în subunități ale monedei contului sursă (vezi {@link Money}).
      * @param details  Descrierea tranzacției oferită de utilizator (ex: "Plată factură").
      * @throws IllegalArgumentException Dacă conturile nu există, sunt blocate sau soldul este insuficient.
      */
-    public void transferMoney(String fromIban, String toIban, double amount, String details) {
-        if (amount <= 0) throw new IllegalArgumentException("Amount must be positive.");
+    public void transferMoney(String fromIban, String toIban, long amount, String details) {
+        transferMoney(fromIban, toIban, amount, details, null);
+    }
 
+    /**
+     * Realizează un transfer ca {@link #transferMoney(String, String, long, String)}, cel mult o dată
+     * pentru o cheie de idempotență.
+     * <p>
+     * Clientul alege o cheie nouă pentru fiecare transfer și o refolosește când reîncearcă același
+     * transfer (ex: după un timeout). Dacă transferul cu cheia dată a fost deja executat, chiar și
+     * înainte de o repornire, nu este executat din nou: metoda returnează imediat rezultatul original
+     * (vezi {@link ClientRepository#post(String, long, long, Posting...)}). O cheie refolosită
+     * pentru un transfer cu alte conturi, altă sumă sau alte detalii este respinsă.
+     * </p>
+     *
+     * @param idempotencyKey Cheia transferului, sau <code>null</code> pentru un transfer fără cheie.
+     * @return Id-ul tranzacției de debitare a contului sursă, din execuția originală.
+     * @throws IllegalArgumentException Dacă transferul este respins sau cheia a fost folosită pentru
+     *                                  o altă operație.
+     */
+    public long transferMoney(String fromIban, String toIban, long amount, String details, String idempotencyKey) {
+        long fingerprint = ClientRepository.fingerprint(TransactionType.TRANSFER_SENT, fromIban, toIban, amount, details);
+        Long previous = findPreviousResult(idempotencyKey, fingerprint);
+        if (previous != null) {
+            return previous;
+        }
+        Posting[] postings = prepareTransfer(fromIban, toIban, amount, details);
+
+        // verificare rapidă; cea definitivă o face depozitul, cu lacătele conturilor obținute
         Client sourceClient = findClientByAccountIban(fromIban);
-        Client destClient = findClientByAccountIban(toIban);
+        BankAccount sourceAccount = sourceClient != null ? getAccountFromClient(sourceClient, fromIban) : null;
+        if (sourceAccount != null && sourceAccount.getBalance() < amount) {
+            throw new IllegalArgumentException("Insufficient funds.");
+        }
 
-        if (sourceClient == null || destClient == null) {
-            throw new IllegalArgumentException("One of the accounts could not be found.");
+        return post(idempotencyKey, fingerprint, postings);
+    }
+
+    /**
+     * Execută un fișier de plăți (ex: salarii sau plăți către furnizori).
+     * <p>
+     * Fiecare linie nevidă are forma <code>IBAN sursă;IBAN destinație;sumă;detalii</code>, unde
+     * suma are cel mult două zecimale (vezi {@link Money#parse(String)}) și detaliile pot lipsi. Liniile care nu respectă formatul sunt raportate ca respinse, fără a
+     * opri restul lotului. Plățile valide sunt executate prin {@link #transferBatch(List)}.
+     * </p>
+     *
+     * @param path Calea fișierului de plăți.
+     * @return Rezultatul fiecărei linii nevide, în ordinea din fișier.
+     */
+    public List<PaymentResult> processPaymentFile(String path) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(path));
+        } catch (IOException e) {
+            throw new RuntimeException("Error at reading the payment file " + path, e);
         }
 
-        boolean isSameClient = sourceClient.getCNP().equals(destClient.getCNP());
+        List<PaymentOrder> orders = new ArrayList<>();
+        List<PaymentResult> results = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split(";", 4);
+            if (parts.length < 3) {
+                results.add(PaymentResult.rejected(i + 1, "Expected: source IBAN;destination IBAN;amount;details"));
+                continue;
+            }
+            try {
+                orders.add(new PaymentOrder(i + 1, parts[0].trim(), parts[1].trim(),
+                        Money.parse(parts[2]), parts.length > 3 ? parts[3].trim() : ""));
+            } catch (NumberFormatException e) {
+                results.add(PaymentResult.rejected(i + 1, e.getMessage()));
+            }
+        }
 
-        BankAccount sourceAccount = getAccountFromClient(sourceClient, fromIban);
-        BankAccount destAccount;
+        results.addAll(transferBatch(orders));
+        results.sort(Comparator.comparingInt(PaymentResult::getLine));
+        return results;
+    }
 
-        if (isSameClient) {
-            destAccount = getAccountFromClient(sourceClient, toIban);
-        } else {
-            destAccount = getAccountFromClient(destClient, toIban);
+    /**
+     * Execută un lot de transferuri și întoarce rezultatul fiecăruia.
+     * <p>
+     * Toate ordinele sunt validate înainte de executarea oricăruia: conturile sunt căutate,
+     * sumele convertite și tranzacțiile create în paralel. Ordinele valide sunt apoi trimise ca o
+     * singură comandă prin {@link CommandPipeline#submitAll(List)} și aplicate printr-o singură
+     * scriere în jurnal, în ordinea din lot, deci un ordin vede soldurile lăsate de cele executate
+     * înaintea lui.
+     * Un ordin respins (cont inexistent, blocat, fonduri insuficiente) nu îi afectează pe ceilalți.
+     * </p>
+     *
+     * @param orders Ordinele de plată, în ordinea execuției.
+     * @return Rezultatul fiecărui ordin, în aceeași ordine.
+     */
+    public List<PaymentResult> transferBatch(List<PaymentOrder> orders) {
+        Posting[][] prepared = new Posting[orders.size()][];
+        String[] errors = new String[orders.size()];
+        IntStream.range(0, orders.size()).parallel().forEach(i -> {
+            PaymentOrder order = orders.get(i);
+            try {
+                prepared[i] = prepareTransfer(order.getSourceIban(), order.getDestinationIban(),
+                        order.getAmount(), order.getDetails());
+            } catch (IllegalArgumentException e) {
+                errors[i] = e.getMessage();
+            }
+        });
+
+        List<Posting[]> operations = new ArrayList<>();
+        for (Posting[] postings : prepared) {
+            if (postings != null) {
+                operations.add(postings);
+            }
+        }
+        List<String> rejections = commandPipeline.submitAll(operations);
+
+        List<PaymentResult> results = new ArrayList<>(orders.size());
+        int next = 0;
+        for (int i = 0; i < orders.size(); i++) {
+            String error = prepared[i] != null ? rejections.get(next++) : errors[i];
+            results.add(error == null
+                    ? PaymentResult.executed(orders.get(i).getLine())
+                    : PaymentResult.rejected(orders.get(i).getLine(), error));
         }
+        return results;
+    }
 
-        if (sourceAccount.getBalance() < amount) {
-            throw new IllegalArgumentException("Insufficient funds.");
+    /**
+     * Validează un transfer și creează înregistrările lui, fără a le aplica: debitul contului sursă
+     * și creditul contului destinație, cu suma convertită în moneda acestuia.
+     *
+     * @throws IllegalArgumentException Dacă suma nu este pozitivă sau un cont nu există.
+     */
+    private Posting[] prepareTransfer(String fromIban, String toIban, long amount, String details) {
+        if (amount <= 0) throw new IllegalArgumentException("Amount must be positive.");
+
+        Client sourceClient = findClientByAccountIban(fromIban);
+        Client destClient = findClientByAccountIban(toIban);
+
+        if (sourceClient == null || destClient == null) {
+            throw new IllegalArgumentException("One of the accounts could not be found.");
         }
 
-        double convertedAmount = currencyService.convert(
+        BankAccount sourceAccount = getAccountFromClient(sourceClient, fromIban);
+        BankAccount destAccount = getAccountFromClient(destClient, toIban);
+
+        long convertedAmount = currencyService.convert(
                 amount,
                 sourceAccount.getCurrency(),
                 destAccount.getCurrency()
         );
 
-        sourceAccount.setBalance(sourceAccount.getBalance() - amount);
-        destAccount.setBalance(destAccount.getBalance() + convertedAmount);
-
         String sourceName = sourceClient.getFirstname() + " " + sourceClient.getLastname();
         String destName = destClient.getFirstname() + " " + destClient.getLastname();
 
         Transaction tOut = new Transaction(
-                new java.util.Random().nextInt(1000000),
+                idGenerator.nextId(),
                 LocalDate.now(),
                 amount,
                 TransactionType.TRANSFER_SENT,
@@ -101,10 +267,9 @@ public class BankService {
                 sourceName, destName,
                 details
         );
-        sourceAccount.getTransactions().add(tOut);
 
         Transaction tIn = new Transaction(
-                new java.util.Random().nextInt(1000000),
+                idGenerator.nextId(),
                 LocalDate.now(),
                 convertedAmount,
                 TransactionType.TRANSFER_RECEIVED,
@@ -112,22 +277,61 @@ public class BankService {
                 sourceName, destName,
                 details
         );
-        destAccount.getTransactions().add(tIn);
 
-        clientRepository.update(sourceClient);
+        return new Posting[] {
+                new Posting(fromIban, -amount, tOut),
+                new Posting(toIban, convertedAmount, tIn)
+        };
+    }
 
-        if (!isSameClient) {
-            clientRepository.update(destClient);
+    /**
+     * @return Tranzacțiile tuturor conturilor, pe coloane, pentru rapoarte și statistici.
+     */
+    public TransactionColumns getTransactionColumns() {
+        return clientRepository.getTransactionColumns();
+    }
+
+    /**
+     * @return Lunile care au tranzacții arhivate, de la cea mai recentă la cea mai veche.
+     */
+    public List<YearMonth> getArchivedMonths() {
+        return clientRepository.getArchivedMonths();
+    }
+
+    /**
+     * Citește tranzacțiile arhivate ale tuturor conturilor unui client dintr-o lună.
+     *
+     * @param client Clientul ale cărui conturi sunt citite.
+     * @param month  Luna tranzacțiilor.
+     */
+    public List<Transaction> getArchivedTransactions(Client client, YearMonth month) {
+        List<Transaction> transactions = new ArrayList<>();
+        for (BankAccount account : client.getAccounts()) {
+            transactions.addAll(clientRepository.getArchivedTransactions(account.getIban(), month));
         }
+        return transactions;
+    }
+
+    /**
+     * @return Rezultatul operației executate deja cu cheia dată, sau <code>null</code>.
+     * @throws IllegalArgumentException Dacă cheia a fost folosită pentru o operație cu altă amprentă.
+     */
+    private Long findPreviousResult(String idempotencyKey, long fingerprint) {
+        return idempotencyKey != null ? clientRepository.findRequestResult(idempotencyKey, fingerprint) : null;
+    }
+
+    /**
+     * Aplică înregistrările unei operații prin {@link CommandPipeline}, o singură dată pentru cheia
+     * dată, dacă există.
+     *
+     * @return Id-ul tranzacției primei înregistrări, din execuția originală a operației.
+     */
+    private long post(String idempotencyKey, long fingerprint, Posting... postings) {
+        return commandPipeline.submit(postings, idempotencyKey, fingerprint, postings[0].getTransaction().getId());
     }
 
     private Client findClientByAccountIban(String iban) {
-        for (Client c : clientRepository.getAll()) {
-            for (BankAccount acc : c.getAccounts()) {
-                if (acc.getIban().equals(iban)) return c;
-            }
-        }
-        return null;
+        return clientRepository.findByAccountIban(iban);
     }
 
     private BankAccount getAccountFromClient(Client client, String iban) {
@@ -137,33 +341,39 @@ public class BankService {
         return null;
     }
 
-    private String generateRandomIBAN() {
-        Random rand = new Random();
-        StringBuilder sb = new StringBuilder("RO");
-        sb.append(String.format("%02d", rand.nextInt(100)));
-        sb.append("PPOO");
-        for (int i = 0; i < 14; i++) sb.append(rand.nextInt(10));
-        return sb.toString();
-    }
-
     /**
      * Alimentează un cont bancar cu o sumă de bani (Simulare depunere numerar la ghișeu/ATM).
      *
      * @param iban   IBAN-ul contului unde se face depunerea.
-     * @param amount Suma depusă (trebuie să fie pozitivă).
+     * @param amount Suma depusă, în subunități (trebuie să fie pozitivă).
+     */
+    public void deposit(String iban, long amount) {
+        deposit(iban, amount, null);
+    }
+
+    /**
+     * Depune o sumă ca {@link #deposit(String, long)}, cel mult o dată pentru o cheie de idempotență
+     * (vezi {@link #transferMoney(String, String, long, String, String)}).
+     *
+     * @param idempotencyKey Cheia depunerii, sau <code>null</code>.
+     * @return Id-ul tranzacției de depunere, din execuția originală.
      */
-    public void deposit(String iban, double amount) {
+    public long deposit(String iban, long amount, String idempotencyKey) {
+        long fingerprint = ClientRepository.fingerprint(TransactionType.DEPOSIT, iban, amount);
+        Long previous = findPreviousResult(idempotencyKey, fingerprint);
+        if (previous != null) {
+            return previous;
+        }
         if (amount <= 0) throw new IllegalArgumentException("Amount must be positive.");
 
         Client client = findClientByAccountIban(iban);
         if (client == null) throw new IllegalArgumentException("Account not found.");
 
         BankAccount account = getAccountFromClient(client, iban);
-        account.setBalance(account.getBalance() + amount);
         String clientName = client.getFirstname() + " " + client.getLastname();
 
         Transaction transaction = new Transaction(
-                new java.util.Random().nextInt(1000000),
+                idGenerator.nextId(),
                 LocalDate.now(),
                 amount,
                 TransactionType.DEPOSIT,
@@ -171,11 +381,32 @@ public class BankService {
                 "ATM Deposit", clientName,
                 "Cash Deposit at ATM"
         );
-        account.getTransactions().add(transaction);
-        clientRepository.update(client);
+        return post(idempotencyKey, fingerprint, new Posting(iban, amount, transaction));
     }
 
-    public void withdraw(String iban, double amount) {
+    /**
+     * Retrage o sumă dintr-un cont bancar (Simulare retragere de numerar la ATM).
+     *
+     * @param iban   IBAN-ul contului din care se face retragerea.
+     * @param amount Suma retrasă, în subunități (trebuie să fie pozitivă).
+     */
+    public void withdraw(String iban, long amount) {
+        withdraw(iban, amount, null);
+    }
+
+    /**
+     * Retrage o sumă ca {@link #withdraw(String, long)}, cel mult o dată pentru o cheie de idempotență
+     * (vezi {@link #transferMoney(String, String, long, String, String)}).
+     *
+     * @param idempotencyKey Cheia retragerii, sau <code>null</code>.
+     * @return Id-ul tranzacției de retragere, din execuția originală.
+     */
+    public long withdraw(String iban, long amount, String idempotencyKey) {
+        long fingerprint = ClientRepository.fingerprint(TransactionType.WITHDRAW, iban, amount);
+        Long previous = findPreviousResult(idempotencyKey, fingerprint);
+        if (previous != null) {
+            return previous;
+        }
         if (amount <= 0) throw new IllegalArgumentException("Amount must be positive.");
         Client client = findClientByAccountIban(iban);
         if (client == null) throw new IllegalArgumentException("Account not found.");
@@ -190,12 +421,10 @@ public class BankService {
             throw new IllegalArgumentException("Insufficient funds.");
         }
 
-        account.setBalance(account.getBalance() - amount);
-
         String clientName = client.getFirstname() + " " + client.getLastname();
 
         Transaction transaction = new Transaction(
-                new java.util.Random().nextInt(1000000),
+                idGenerator.nextId(),
                 LocalDate.now(),
                 amount,
                 TransactionType.WITHDRAW,
@@ -204,7 +433,6 @@ public class BankService {
                 "Cash Withdrawal from ATM"
         );
 
-        account.getTransactions().add(transaction);
-        clientRepository.update(client);
+        return post(idempotencyKey, fingerprint, new Posting(iban, -amount, transaction));
     }
 }
\ No newline at end of file
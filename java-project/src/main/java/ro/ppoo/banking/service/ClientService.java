@@ -1,9 +1,11 @@
 package ro.ppoo.banking.service;
 
 import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.ClientSummary;
 import ro.ppoo.banking.repository.ClientRepository;
 import ro.ppoo.banking.validation.Validator;
 import ro.ppoo.banking.service.security.DataEncryptionService;
+import java.util.Comparator;
 import java.util.List;
 
 
@@ -31,22 +33,86 @@ public class ClientService {
         clientRepository.add(client);
     }
 
-    public void update(Client client) {
-        if (client == null || client.getFirstname().isEmpty() ||
-                client.getLastname().isEmpty() || client.getEmail().isEmpty()) {
+    /**
+     * Modifică datele de contact ale unui client.
+     *
+     * @param client Clientul modificat (CNP-ul identifică înregistrarea).
+     * @throws IllegalArgumentException Dacă numele sau email-ul lipsesc.
+     */
+    public void updateProfile(Client client, String firstname, String lastname, String email, String phone) {
+        if (client == null || firstname == null || firstname.isEmpty() ||
+                lastname == null || lastname.isEmpty() || email == null || email.isEmpty()) {
             throw new IllegalArgumentException("First name, last name, and email are required.");
         }
 
-        clientRepository.update(client);
+        clientRepository.updateProfile(client.getCNP(), firstname, lastname, email, phone);
     }
 
     public List<Client> getAll() {
         return clientRepository.getAll();
     }
+
+    /**
+     * @return Proiecțiile tuturor clienților, pentru ecranele de tip listă și rapoarte.
+     */
+    public List<ClientSummary> getSummaries() {
+        return clientRepository.getSummaries();
+    }
+
+    /**
+     * Returnează o pagină din proiecțiile clienților, în ordinea înregistrării.
+     *
+     * @param offset Poziția primului client din pagină.
+     * @param limit  Numărul maxim de clienți din pagină.
+     */
+    public List<ClientSummary> getSummaries(int offset, int limit) {
+        return clientRepository.getSummaries(offset, limit);
+    }
+
+    /**
+     * Returnează o pagină din proiecțiile clienților, sortate după <code>order</code> înainte de paginare.
+     *
+     * @param order Ordinea clienților; <code>null</code> pentru ordinea înregistrării.
+     */
+    public List<ClientSummary> getSummaries(int offset, int limit, Comparator<? super ClientSummary> order) {
+        return clientRepository.getSummaries(offset, limit, order);
+    }
+
+    public int getClientCount() {
+        return clientRepository.getClientCount();
+    }
+    /**
+     * Căutare incrementală după începutul prenumelui sau numelui.
+     *
+     * @param limit Numărul maxim de rezultate returnate.
+     * @return Proiecțiile clienților găsiți; o listă goală pentru o căutare goală.
+     */
+    public List<ClientSummary> searchByName(String query, int limit) {
+        return clientRepository.searchByName(query, limit);
+    }
+
     public Client findClientByCNP(String encryptedCNP) {
         return clientRepository.findByCNP(encryptedCNP);
     }
 
+    /**
+     * Caută un client după email; majusculele și spațiile de la capete nu contează.
+     *
+     * @return Clientul găsit sau <code>null</code>.
+     */
+    public Client findClientByEmail(String email) {
+        return clientRepository.findByEmail(email);
+    }
+
+    /**
+     * Caută un client după telefon; separatorii și prefixul +40 nu contează.
+     *
+     * @return Clientul găsit sau <code>null</code>.
+     */
+    public Client findClientByPhone(String phone) {
+        return clientRepository.findByPhone(phone);
+    }
+
     /**
      * Autentifică un client pe baza CNP-ului și a parolei.
      * CNP-ul introdus este criptat înainte de a fi comparat cu datele din repository.
@@ -77,8 +143,7 @@ public class ClientService {
 
     public void updatePassword(Client client, String newPlainPassword) {
         String encryptedPass = encryptionService.encrypt(newPlainPassword);
-        client.setPassword(encryptedPass);
-        clientRepository.update(client);
+        clientRepository.updatePassword(client.getCNP(), encryptedPass);
     }
 
     public void delete(Client client) {
@@ -0,0 +1,458 @@
+package ro.ppoo.banking.service;
+
+import ro.ppoo.banking.repository.ClientRepository;
+import ro.ppoo.banking.repository.Posting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Coadă de comenzi cu un singur fir de scriere, în stilul LMAX Disruptor, prin care trec toate
+ * modificările conturilor făcute de {@link BankService}: depunerile, retragerile, transferurile,
+ * loturile de plăți și deschiderea, închiderea sau blocarea conturilor.
+ * <p>
+ * Firele care trimit comenzi (interfața, fișierele de plăți) validează operațiunea și îi pregătesc
+ * înregistrările pe firul propriu, apoi o publică într-un buffer circular alocat o singură dată:
+ * <ul>
+ * <li>fiecare comandă primește o secvență printr-un {@link AtomicLong}, iar poziția ei în buffer este
+ * <code>secvență &amp; (capacitate - 1)</code>; dacă bufferul este plin, firul așteaptă eliberarea poziției;</li>
+ * <li>după scrierea comenzii, secvența ei este publicată în {@link #published}, deci firul de scriere
+ * vede comanda completă fără lacăte;</li>
+ * <li>firul de scriere preia toate comenzile publicate consecutiv, eliberează imediat pozițiile lor
+ * și le aplică printr-un singur {@link ClientRepository#postAll(List, List, long[], long[])}: o singură
+ * intrare în jurnal și un singur <code>fsync</code> pentru tot lotul; un lot de plăți trimis prin
+ * {@link #submitAll(List)} ocupă o singură poziție și intră întreg în același apel;</li>
+ * <li>rezultatul fiecărei comenzi este scris în obiectul de așteptare al firului care a trimis-o,
+ * refolosit de la o comandă la alta, iar firul este trezit.</li>
+ * </ul>
+ * Cât timp un lot este scris pe disc, comenzile noi se adună în buffer și formează lotul următor,
+ * deci sub încărcare costul forțării pe disc este împărțit între tot mai multe comenzi.
+ * </p>
+ * <p>
+ * Comenzile sunt aplicate în ordinea secvențelor. Comenzile pe conturi trimise prin
+ * {@link #execute(Runnable)} sunt aplicate singure, între loturi: înregistrările publicate înaintea
+ * lor sunt scrise întâi, iar cele publicate după le văd efectul. Astfel, lacătele și rezervările
+ * depozitului nu mai sunt disputate de modificările conturilor, fiind folosite de un singur fir;
+ * ele rămân necesare pentru checkpoint-uri și arhivare, care rulează pe alte fire, și pentru
+ * profilurile clienților, modificate prin {@link ClientService}.
+ * </p>
+ * <p>
+ * {@link #close()} oprește coada în ordine: comenzile trimise deja sunt aplicate, iar cele noi sunt
+ * refuzate. Dacă aplicarea unui lot aruncă un {@link Error} (ex: memorie insuficientă), starea
+ * depozitului nu mai este sigură: comenzile lotului și toate cele trimise ulterior eșuează cu
+ * {@link IllegalStateException}, iar eroarea este aruncată mai departe de firul de scriere.
+ * </p>
+ */
+public class CommandPipeline {
+    /**
+     * Numărul de poziții din buffer; o putere a lui 2.
+     */
+    static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * De câte ori verifică firul de scriere dacă au apărut comenzi înainte de a se opri în așteptare.
+     */
+    private static final int SPIN_TRIES = 100;
+
+    private final ClientRepository clientRepository;
+    private final Slot[] slots = new Slot[CAPACITY];
+    private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    /**
+     * Următoarea secvență de alocat; bitul de semn marchează coada închisă, după care nu se mai alocă secvențe.
+     */
+    private final AtomicLong claimed = new AtomicLong();
+    /**
+     * Prima secvență încă nepreluată de firul de scriere; pozițiile secvențelor mai mici sunt libere.
+     */
+    private final AtomicLong consumed = new AtomicLong();
+    private final ThreadLocal<Completion> completions = ThreadLocal.withInitial(Completion::new);
+    // folosite doar de firul de scriere, pentru lotul transmis depozitului
+    private final List<Posting[]> operations = new ArrayList<>(CAPACITY);
+    private final List<String> keys = new ArrayList<>(CAPACITY);
+    private long[] fingerprints = new long[CAPACITY];
+    private long[] results = new long[CAPACITY];
+    private final Thread writer;
+    private volatile boolean writerWaiting;
+    /**
+     * Eroarea care a oprit firul de scriere, sau <code>null</code>.
+     */
+    private volatile Error failure;
+
+    public CommandPipeline(ClientRepository clientRepository) {
+        this.clientRepository = clientRepository;
+        for (int i = 0; i < CAPACITY; i++) {
+            slots[i] = new Slot();
+            published.set(i, -1);
+        }
+        this.writer = new Thread(this::run, "command-pipeline");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Trimite o operațiune și așteaptă aplicarea ei.
+     *
+     * @param postings       Înregistrările operațiunii, aplicate toate sau niciuna.
+     * @param idempotencyKey Cheia operațiunii, sau <code>null</code>.
+     * @param fingerprint    Amprenta parametrilor operațiunii, reținută pentru cheie
+     *                       (vezi {@link ClientRepository#fingerprint(Object...)}).
+     * @param result         Rezultatul operațiunii, reținut pentru cheie.
+     * @return <code>result</code>, sau rezultatul original dacă operațiunea cu aceeași cheie a fost deja executată.
+     * @throws IllegalArgumentException Dacă operațiunea este respinsă (vezi {@link ClientRepository#post(Posting...)}).
+     * @throws IllegalStateException    Dacă coada a fost închisă sau oprită de o eroare.
+     */
+    public long submit(Posting[] postings, String idempotencyKey, long fingerprint, long result) {
+        Completion completion = publish(postings, null, null, idempotencyKey, fingerprint, result);
+        if (completion.rejection != null) {
+            throw new IllegalArgumentException(completion.rejection);
+        }
+        return completion.result;
+    }
+
+    /**
+     * Trimite un lot de operațiuni independente și așteaptă aplicarea lui. Lotul ocupă o singură
+     * poziție în buffer și este aplicat ca la {@link ClientRepository#postAll(List)}, împreună cu
+     * comenzile publicate lângă el.
+     *
+     * @param operations Operațiunile lotului, în ordine; fiecare este aplicată toată sau deloc.
+     * @return Pentru fiecare operațiune, motivul respingerii, sau <code>null</code> dacă a fost aplicată.
+     * @throws IllegalStateException Dacă coada a fost închisă sau oprită de o eroare.
+     */
+    public List<String> submitAll(List<Posting[]> operations) {
+        if (operations.isEmpty()) {
+            return List.of();
+        }
+        return publish(null, operations, null, null, 0, 0).rejections;
+    }
+
+    /**
+     * Trimite o comandă pe conturi (ex: deschiderea sau blocarea unui cont) și așteaptă aplicarea ei.
+     * Comanda este rulată de firul de scriere, după înregistrările publicate înaintea ei.
+     *
+     * @param command Modificarea de aplicat prin depozit.
+     * @throws RuntimeException      Excepția aruncată de comandă (ex: {@link IllegalArgumentException}).
+     * @throws IllegalStateException Dacă coada a fost închisă sau oprită de o eroare.
+     */
+    public void execute(Runnable command) {
+        publish(null, null, command, null, 0, 0);
+    }
+
+    /**
+     * Publică o comandă și așteaptă aplicarea ei; exact unul dintre <code>postings</code>,
+     * <code>batch</code> și <code>action</code> este dat.
+     *
+     * @return Rezultatul comenzii, valabil până la următoarea comandă a firului.
+     */
+    private Completion publish(Posting[] postings, List<Posting[]> batch, Runnable action,
+                               String idempotencyKey, long fingerprint, long result) {
+        Completion completion = completions.get();
+        completion.done = false;
+        completion.rejection = null;
+        completion.rejections = null;
+        completion.error = null;
+
+        // secvența alocată trebuie publicată, iar comanda publicată nu mai poate fi anulată, deci o
+        // întrerupere nu oprește așteptările de mai jos: este reținută și refăcută pentru apelant
+        boolean interrupted = false;
+        long sequence = claim();
+        while (sequence - consumed.get() >= CAPACITY) {
+            // bufferul este plin: se așteaptă ca firul de scriere să preia comenzile mai vechi
+            LockSupport.parkNanos(1_000);
+            interrupted |= Thread.interrupted();
+        }
+        Slot slot = slots[(int) sequence & MASK];
+        slot.postings = postings;
+        slot.batch = batch;
+        slot.action = action;
+        slot.idempotencyKey = idempotencyKey;
+        slot.fingerprint = fingerprint;
+        slot.result = result;
+        slot.completion = completion;
+        published.set((int) sequence & MASK, sequence);
+        if (writerWaiting) {
+            LockSupport.unpark(writer);
+        }
+
+        while (!completion.done) {
+            LockSupport.park(this);
+            interrupted |= Thread.interrupted();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (completion.error != null) {
+            throw completion.error;
+        }
+        return completion;
+    }
+
+    /**
+     * Închide coada: comenzile trimise până acum sunt aplicate, cele trimise după sunt refuzate.
+     * Revine după oprirea firului de scriere; apelurile repetate nu mai au efect.
+     */
+    public void close() {
+        stopClaims();
+        LockSupport.unpark(writer);
+
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Marchează coada ca închisă; secvențele alocate deja rămân valabile.
+     */
+    private void stopClaims() {
+        long sequence = claimed.get();
+        while (sequence >= 0 && !claimed.compareAndSet(sequence, sequence | Long.MIN_VALUE)) {
+            sequence = claimed.get();
+        }
+    }
+
+    /**
+     * @return Secvența alocată comenzii.
+     * @throws IllegalStateException Dacă coada este închisă.
+     */
+    private long claim() {
+        while (true) {
+            long sequence = claimed.get();
+            if (sequence < 0) {
+                throw failure != null ? stopped(failure) : new IllegalStateException("Command pipeline is closed.");
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> dacă secvența dată nu va mai fi alocată, deoarece coada a fost închisă înaintea ei.
+     */
+    private boolean isClosedAt(long sequence) {
+        long claim = claimed.get();
+        return claim < 0 && sequence >= (claim & Long.MAX_VALUE);
+    }
+
+    private static IllegalStateException stopped(Error error) {
+        return new IllegalStateException("Command pipeline stopped after an error.", error);
+    }
+
+    private void run() {
+        Slot[] taken = new Slot[CAPACITY];
+        for (int i = 0; i < CAPACITY; i++) {
+            taken[i] = new Slot();
+        }
+        long next = 0;
+        while (awaitPublished(next)) {
+
+            // preia toate comenzile publicate consecutiv și eliberează imediat pozițiile lor
+            int count = 0;
+            while (count < CAPACITY && published.get((int) next & MASK) == next) {
+                slots[(int) next & MASK].moveTo(taken[count++]);
+                next++;
+            }
+            consumed.set(next);
+
+            // înregistrările consecutive formează un lot; o comandă pe conturi este aplicată singură
+            int start = 0;
+            while (start < count) {
+                int end = start;
+                while (end < count && taken[end].action == null) {
+                    end++;
+                }
+                if (end > start) {
+                    applyPostings(taken, start, end);
+                } else {
+                    applyAction(taken[end++]);
+                }
+                start = end;
+            }
+            for (int i = 0; i < count; i++) {
+                Completion completion = taken[i].completion;
+                taken[i].clear();
+                completion.done = true;
+                LockSupport.unpark(completion.waiter);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Aplică înregistrările comenzilor <code>[from, to)</code> printr-un singur
+     * {@link ClientRepository#postAll(List, List, long[], long[])}. Rulează doar pe firul de scriere.
+     */
+    private void applyPostings(Slot[] commands, int from, int to) {
+        if (failure != null) {
+            // comenzi trimise înainte ca eroarea să închidă coada: nu mai sunt aplicate
+            fail(commands, from, to, stopped(failure));
+            return;
+        }
+
+        operations.clear();
+        keys.clear();
+        for (int i = from; i < to; i++) {
+            Slot command = commands[i];
+            if (command.batch != null) {
+                for (Posting[] postings : command.batch) {
+                    addOperation(postings, null, 0, 0);
+                }
+            } else {
+                addOperation(command.postings, command.idempotencyKey, command.fingerprint, command.result);
+            }
+        }
+
+        try {
+            List<String> rejections = clientRepository.postAll(operations, keys, fingerprints, results);
+            int operation = 0;
+            for (int i = from; i < to; i++) {
+                Completion completion = commands[i].completion;
+                List<Posting[]> batch = commands[i].batch;
+                if (batch != null) {
+                    completion.rejections = new ArrayList<>(rejections.subList(operation, operation + batch.size()));
+                    operation += batch.size();
+                } else {
+                    completion.result = results[operation];
+                    completion.rejection = rejections.get(operation++);
+                }
+            }
+        } catch (RuntimeException e) {
+            // firul de scriere rămâne pornit; eroarea ajunge la toate comenzile lotului
+            fail(commands, from, to, e);
+        } catch (Error e) {
+            failure = e;
+            stopClaims();
+            fail(commands, from, to, stopped(e));
+        } finally {
+            operations.clear();
+            keys.clear();
+        }
+    }
+
+    private void addOperation(Posting[] postings, String idempotencyKey, long fingerprint, long result) {
+        int index = operations.size();
+        if (index == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, index * 2);
+            results = Arrays.copyOf(results, index * 2);
+        }
+        operations.add(postings);
+        keys.add(idempotencyKey);
+        fingerprints[index] = fingerprint;
+        results[index] = result;
+    }
+
+    /**
+     * Rulează o comandă pe conturi. Rulează doar pe firul de scriere.
+     */
+    private void applyAction(Slot command) {
+        if (failure != null) {
+            command.completion.error = stopped(failure);
+            return;
+        }
+        try {
+            command.action.run();
+        } catch (RuntimeException e) {
+            command.completion.error = e;
+        } catch (Error e) {
+            failure = e;
+            stopClaims();
+            command.completion.error = stopped(e);
+        }
+    }
+
+    private static void fail(Slot[] commands, int from, int to, RuntimeException error) {
+        for (int i = from; i < to; i++) {
+            commands[i].completion.error = error;
+        }
+    }
+
+    /**
+     * Așteaptă publicarea comenzii cu secvența dată: verifică de câteva ori, apoi se oprește până
+     * când un fir care publică o comandă, sau {@link #close()}, îl trezește.
+     *
+     * @return <code>false</code> dacă coada a fost închisă înaintea secvenței, deci comanda nu va mai veni.
+     */
+    private boolean awaitPublished(long sequence) {
+        int index = (int) sequence & MASK;
+        for (int i = 0; i < SPIN_TRIES; i++) {
+            if (published.get(index) == sequence) {
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+        while (published.get(index) != sequence) {
+            if (isClosedAt(sequence)) {
+                return false;
+            }
+            // marcajul este scris înainte de verificare, deci o publicare nu poate fi ratată
+            writerWaiting = true;
+            if (published.get(index) != sequence && !isClosedAt(sequence)) {
+                LockSupport.park(this);
+            }
+            writerWaiting = false;
+        }
+        return true;
+    }
+
+    /**
+     * O poziție din buffer. Câmpurile sunt scrise de firul care a obținut secvența și citite de
+     * firul de scriere după publicarea ei.
+     */
+    private static final class Slot {
+        private Posting[] postings;
+        private List<Posting[]> batch;
+        private Runnable action;
+        private String idempotencyKey;
+        private long fingerprint;
+        private long result;
+        private Completion completion;
+
+        /**
+         * Mută comanda în <code>target</code> și eliberează poziția.
+         */
+        void moveTo(Slot target) {
+            target.postings = postings;
+            target.batch = batch;
+            target.action = action;
+            target.idempotencyKey = idempotencyKey;
+            target.fingerprint = fingerprint;
+            target.result = result;
+            target.completion = completion;
+            clear();
+        }
+
+        void clear() {
+            postings = null;
+            batch = null;
+            action = null;
+            idempotencyKey = null;
+            completion = null;
+        }
+    }
+
+    /**
+     * Rezultatul ultimei comenzi trimise de un fir; scris de firul de scriere înainte de <code>done</code>.
+     */
+    private static final class Completion {
+        private final Thread waiter = Thread.currentThread();
+        private volatile boolean done;
+        private long result;
+        private String rejection;
+        private List<String> rejections;
+        private RuntimeException error;
+    }
+}
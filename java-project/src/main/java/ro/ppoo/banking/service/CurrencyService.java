@@ -1,16 +1,29 @@
 package ro.ppoo.banking.service;
 
 import ro.ppoo.banking.enums.Currency;
+import ro.ppoo.banking.model.Money;
+
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Cursurile de schimb și conversia sumelor între monede.
+ * <p>
+ * Cursurile sunt citite din fișier ca valori zecimale exacte. O conversie înmulțește suma (în
+ * subunități) cu cursul direct sau o împarte la cursul invers și rotunjește rezultatul o singură
+ * dată, la subunitate, prin {@link RoundingMode#HALF_EVEN}, deci nu se pierd bani din erori de
+ * reprezentare și rotunjirea nu favorizează sistematic nicio parte (vezi {@link Money}).
+ * </p>
+ */
 public class CurrencyService {
 
-    private final Map<String, Double> rates = new HashMap<>();
+    private final Map<String, BigDecimal> rates = new HashMap<>();
     private final String FILE_PATH = "data/exchange_rates.txt";
 
     public CurrencyService() {
@@ -24,7 +37,7 @@ public class CurrencyService {
                 String[] parts = line.split(":");
                 if (parts.length == 3) {
                     String key = parts[0].trim() + "->" + parts[1].trim();
-                    double rate = Double.parseDouble(parts[2].trim());
+                    BigDecimal rate = new BigDecimal(parts[2].trim());
                     rates.put(key, rate);
                 }
             }
@@ -33,25 +46,27 @@ public class CurrencyService {
         }
     }
 
-    public double getExchangeRate(Currency from, Currency to) {
-        if (from == to) return 1.0;
-
-        String keyDirect = from.name() + "->" + to.name();
-        String keyReverse = to.name() + "->" + from.name();
+    /**
+     * Convertește o sumă între două monede.
+     *
+     * @param amount Suma, în subunități ale monedei <code>from</code>.
+     * @return Suma în subunități ale monedei <code>to</code>, rotunjită prin {@link RoundingMode#HALF_EVEN}.
+     * @throws IllegalArgumentException Dacă nu există un curs între cele două monede.
+     */
+    public long convert(long amount, Currency from, Currency to) {
+        if (from == to) return amount;
 
-        if (rates.containsKey(keyDirect)) {
-            return rates.get(keyDirect);
+        BigDecimal value = BigDecimal.valueOf(amount);
+        BigDecimal direct = rates.get(from.name() + "->" + to.name());
+        if (direct != null) {
+            return value.multiply(direct).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
         }
 
-        if (rates.containsKey(keyReverse)) {
-            return 1.0 / rates.get(keyReverse);
+        BigDecimal reverse = rates.get(to.name() + "->" + from.name());
+        if (reverse != null) {
+            return value.divide(reverse, 0, RoundingMode.HALF_EVEN).longValueExact();
         }
 
         throw new IllegalArgumentException("No exchange rate found for " + from + " to " + to);
     }
-
-    public double convert(double amount, Currency from, Currency to) {
-        double rate = getExchangeRate(from, to);
-        return amount * rate;
-    }
 }
\ No newline at end of file
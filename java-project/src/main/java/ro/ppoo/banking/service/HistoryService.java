@@ -0,0 +1,135 @@
+package ro.ppoo.banking.service;
+
+import ro.ppoo.banking.model.BankAccount;
+import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.Transaction;
+import ro.ppoo.banking.model.TransactionHistory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Citește istoricul tranzacțiilor unui client pe pagini, de la cea mai recentă tranzacție.
+ * <p>
+ * Tranzacțiile tuturor conturilor clientului sunt interclasate după dată. Parcurgerea este
+ * făcută cu un {@link Cursor}, care reține versiunea istoricului fiecărui cont de la începutul
+ * parcurgerii, deci paginile rămân consistente chiar dacă între timp au loc tranzacții noi.
+ * Pentru o pagină se citesc de pe disc doar ultimele tranzacții ale fiecărui cont, înaintea
+ * cursorului (vezi {@link TransactionHistory#slice(int, int)}), nu tot istoricul.
+ * </p>
+ * <p>
+ * Interclasarea presupune că tranzacțiile unui cont sunt scrise în ordine cronologică, cum le
+ * salvează aplicația; la aceeași dată, tranzacția scrisă mai târziu apare prima.
+ * </p>
+ */
+public class HistoryService {
+
+    /**
+     * Începe parcurgerea istoricului unui client, de la cea mai recentă tranzacție.
+     */
+    public Cursor start(Client client) {
+        List<BankAccount> accounts = client.getAccounts();
+        List<List<Transaction>> histories = new ArrayList<>(accounts.size());
+        int[] remaining = new int[accounts.size()];
+        for (int i = 0; i < accounts.size(); i++) {
+            List<Transaction> history = accounts.get(i).getTransactions() != null
+                    ? accounts.get(i).getTransactions()
+                    : List.of();
+            histories.add(history);
+            remaining[i] = history.size();
+        }
+        return new Cursor(Collections.unmodifiableList(histories), remaining);
+    }
+
+    /**
+     * Citește următoarea pagină de la poziția cursorului.
+     *
+     * @param limit Numărul maxim de tranzacții din pagină.
+     * @return Tranzacțiile paginii, de la cea mai recentă, și cursorul pentru pagina următoare.
+     */
+    public Page next(Cursor cursor, int limit) {
+        int accounts = cursor.histories.size();
+        List<List<Transaction>> tails = new ArrayList<>(accounts);
+        int[] starts = new int[accounts];
+        int[] positions = new int[accounts];
+        for (int i = 0; i < accounts; i++) {
+            // cel mult limit tranzacții din fiecare cont pot intra în pagină
+            starts[i] = Math.max(0, cursor.remaining[i] - Math.max(limit, 0));
+            tails.add(slice(cursor.histories.get(i), starts[i], cursor.remaining[i]));
+            positions[i] = tails.get(i).size() - 1;
+        }
+
+        List<Transaction> page = new ArrayList<>(Math.min(Math.max(limit, 0), cursor.getRemaining()));
+        while (page.size() < limit) {
+            int newest = -1;
+            for (int i = 0; i < accounts; i++) {
+                if (positions[i] >= 0 && (newest < 0 || tails.get(i).get(positions[i]).getDate()
+                        .isAfter(tails.get(newest).get(positions[newest]).getDate()))) {
+                    newest = i;
+                }
+            }
+            if (newest < 0) {
+                break;
+            }
+            page.add(tails.get(newest).get(positions[newest]--));
+        }
+
+        int[] remaining = new int[accounts];
+        for (int i = 0; i < accounts; i++) {
+            remaining[i] = starts[i] + positions[i] + 1;
+        }
+        return new Page(Collections.unmodifiableList(page), new Cursor(cursor.histories, remaining));
+    }
+
+    private static List<Transaction> slice(List<Transaction> history, int from, int to) {
+        return history instanceof TransactionHistory stored
+                ? stored.slice(from, to)
+                : new ArrayList<>(history.subList(from, to));
+    }
+
+    /**
+     * Poziția unei parcurgeri: câte tranzacții au rămas de citit din fiecare cont. Nu se modifică.
+     */
+    public static final class Cursor {
+        private final List<List<Transaction>> histories;
+        private final int[] remaining;
+
+        private Cursor(List<List<Transaction>> histories, int[] remaining) {
+            this.histories = histories;
+            this.remaining = remaining;
+        }
+
+        /**
+         * @return Numărul tranzacțiilor rămase de citit.
+         */
+        public int getRemaining() {
+            int total = 0;
+            for (int count : remaining) {
+                total += count;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * O pagină de tranzacții și cursorul de după ea.
+     */
+    public static final class Page {
+        private final List<Transaction> transactions;
+        private final Cursor next;
+
+        private Page(List<Transaction> transactions, Cursor next) {
+            this.transactions = transactions;
+            this.next = next;
+        }
+
+        public List<Transaction> getTransactions() {
+            return transactions;
+        }
+
+        public Cursor getNext() {
+            return next;
+        }
+    }
+}
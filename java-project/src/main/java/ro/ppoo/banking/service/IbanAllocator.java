@@ -0,0 +1,171 @@
+package ro.ppoo.banking.service;
+
+import ro.ppoo.banking.repository.ClientRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Alocă IBAN-uri pentru conturile noi, din secvență, cu cifre de control ISO 13616 (mod 97).
+ * <p>
+ * Un IBAN are forma <code>RO kk PPOO nnnnnnnnnnnnnnnn</code> (24 de caractere, ca IBAN-urile românești):
+ * codul băncii, urmat de numărul din secvență pe {@value #ACCOUNT_DIGITS} cifre; <code>kk</code> sunt
+ * cifrele de control calculate prin mod 97, deci o greșeală de tastare a unei cifre este detectabilă.
+ * </p>
+ * <p>
+ * Numerele sunt luate dintr-un {@link AtomicLong}, fără blocări. Secvența este rezervată pe disc în
+ * blocuri de {@value #BLOCK_SIZE} numere: înainte de a folosi primul număr dintr-un bloc nou, limita
+ * blocului este scrisă cu <code>fsync</code>, iar după o repornire alocarea continuă de la limita
+ * salvată. Numerele nefolosite dintr-un bloc sunt sărite, dar un IBAN nu este alocat de două ori,
+ * nici după închiderea contului care l-a avut.
+ * </p>
+ * <p>
+ * Un IBAN care există deja în depozit (de exemplu, adăugat de o versiune veche a aplicației) este
+ * sărit. Unicitatea finală este garantată tot de depozit, care refuză un cont cu un IBAN existent.
+ * </p>
+ */
+public class IbanAllocator {
+    static final String COUNTRY_CODE = "RO";
+    static final String BANK_CODE = "PPOO";
+    static final int ACCOUNT_DIGITS = 16;
+
+    /**
+     * Câte numere sunt rezervate pe disc la o scriere.
+     */
+    static final int BLOCK_SIZE = 1000;
+
+    private final ClientRepository clientRepository;
+    private final String filePath;
+    private final AtomicLong next;
+    private volatile long reservedUntil;
+
+    public IbanAllocator(ClientRepository clientRepository) {
+        this(clientRepository, "data/iban_sequence.dat");
+    }
+
+    /**
+     * @param filePath Fișierul în care este păstrată limita secvenței rezervate.
+     */
+    public IbanAllocator(ClientRepository clientRepository, String filePath) {
+        this.clientRepository = clientRepository;
+        this.filePath = filePath;
+        this.reservedUntil = readReservation();
+        this.next = new AtomicLong(reservedUntil);
+    }
+
+    /**
+     * @return Un IBAN nou, nefolosit de niciun cont.
+     */
+    public String nextIban() {
+        while (true) {
+            String iban = toIban(take(1));
+            if (clientRepository.findByAccountIban(iban) == null) {
+                return iban;
+            }
+        }
+    }
+
+    /**
+     * Alocă dintr-o dată mai multe IBAN-uri consecutive, de exemplu pentru deschiderea unui lot de conturi.
+     *
+     * @param count Numărul de IBAN-uri.
+     * @return IBAN-uri noi, nefolosite de niciun cont, în ordinea secvenței.
+     */
+    public List<String> allocate(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("IBAN count cannot be negative: " + count);
+        }
+        List<String> ibans = new ArrayList<>(count);
+        long first = take(count);
+        for (long sequence = first; sequence < first + count; sequence++) {
+            String iban = toIban(sequence);
+            if (clientRepository.findByAccountIban(iban) == null) {
+                ibans.add(iban);
+            }
+        }
+        while (ibans.size() < count) {
+            ibans.add(nextIban());
+        }
+        return ibans;
+    }
+
+    /**
+     * Construiește IBAN-ul cu un anumit număr din secvență.
+     */
+    static String toIban(long sequence) {
+        String number = Long.toString(sequence);
+        if (number.length() > ACCOUNT_DIGITS) {
+            throw new IllegalStateException("IBAN sequence exhausted.");
+        }
+        StringBuilder bban = new StringBuilder(BANK_CODE.length() + ACCOUNT_DIGITS).append(BANK_CODE);
+        for (int i = number.length(); i < ACCOUNT_DIGITS; i++) {
+            bban.append('0');
+        }
+        bban.append(number);
+
+        int check = 98 - mod97(bban + COUNTRY_CODE + "00");
+        return COUNTRY_CODE + (check < 10 ? "0" : "") + check + bban;
+    }
+
+    /**
+     * Restul împărțirii la 97 al numărului obținut înlocuind fiecare literă cu două cifre (A = 10, ..., Z = 35),
+     * calculat cifră cu cifră, fără numere mari.
+     */
+    private static int mod97(String text) {
+        int remainder = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int value = Character.digit(text.charAt(i), 36);
+            remainder = (value < 10 ? remainder * 10 : remainder * 100) + value;
+            remainder %= 97;
+        }
+        return remainder;
+    }
+
+    /**
+     * Ia <code>count</code> numere consecutive din secvență, rezervând pe disc blocurile necesare.
+     *
+     * @return Primul număr luat.
+     */
+    private long take(int count) {
+        long first = next.getAndAdd(count);
+        if (first + count > reservedUntil) {
+            reserve(first + count);
+        }
+        return first;
+    }
+
+    private synchronized void reserve(long end) {
+        if (end <= reservedUntil) {
+            return;
+        }
+        long until = end + BLOCK_SIZE;
+        File file = new File(filePath);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(0);
+            raf.writeLong(until);
+            raf.getFD().sync();
+        } catch (IOException e) {
+            throw new RuntimeException("Error at saving the IBAN sequence", e);
+        }
+        reservedUntil = until;
+    }
+
+    private long readReservation() {
+        File file = new File(filePath);
+        if (file.length() < Long.BYTES) {
+            return 1;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.readLong();
+        } catch (IOException e) {
+            throw new RuntimeException("Error at reading the IBAN sequence", e);
+        }
+    }
+}
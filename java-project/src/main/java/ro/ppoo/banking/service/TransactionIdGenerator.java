@@ -0,0 +1,159 @@
+package ro.ppoo.banking.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generează id-uri unice și crescătoare pentru tranzacții, fără blocări și fără alocări.
+ * <p>
+ * Un id este un <code>long</code> pozitiv, format din (de la biții cei mai semnificativi):
+ * <ul>
+ * <li>{@value #TIME_BITS} biți - milisecunde de la {@link #EPOCH} (2024-01-01 UTC), ajung pentru ~69 de ani;</li>
+ * <li>{@value #NODE_BITS} biți - numărul nodului care a generat id-ul, deci instanțe diferite ale
+ * aplicației nu pot genera același id, iar istoricele lor pot fi interclasate;</li>
+ * <li>{@value #SEQUENCE_BITS} biți - secvența în cadrul aceleiași milisecunde.</li>
+ * </ul>
+ * Id-urile unui nod sunt strict crescătoare, iar ordinea lor urmează ordinea generării.
+ * </p>
+ * <p>
+ * Ultimul id este păstrat într-un {@link AtomicLong} și avansat prin compare-and-set. Dacă secvența
+ * unei milisecunde se epuizează, generatorul trece la milisecunda următoare fără să o aștepte, deci
+ * debitul nu este limitat de ceas; id-urile pot lua temporar un avans față de ceas, recuperat
+ * când ritmul scade. Dacă ceasul sistemului dă înapoi, id-urile continuă de la ultimul id generat.
+ * </p>
+ * <p>
+ * Pentru a rămâne unic după o repornire (chiar dacă ceasul a dat înapoi între timp), generatorul
+ * rezervă timpul în avans: înainte de a genera un id dincolo de limita rezervată, scrie pe disc
+ * (cu <code>fsync</code>) o nouă limită, cu {@value #LEASE_MILLIS} ms mai târziu. La pornire,
+ * id-urile încep după limita salvată, deci nu pot repeta un id generat înainte de oprire.
+ * Fișierul este scris cel mult o dată la {@value #LEASE_MILLIS} ms.
+ * </p>
+ */
+public class TransactionIdGenerator {
+    /**
+     * Începutul timpului id-urilor: 2024-01-01T00:00:00Z, în milisecunde.
+     */
+    public static final long EPOCH = 1_704_067_200_000L;
+
+    static final int TIME_BITS = 41;
+    static final int NODE_BITS = 8;
+    static final int SEQUENCE_BITS = 14;
+
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIME_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    /**
+     * Cât timp este rezervat în avans la fiecare scriere a fișierului.
+     */
+    static final long LEASE_MILLIS = 10_000;
+
+    private final String filePath;
+    private final long nodeBits;
+    private final AtomicLong last;
+    private volatile long leasedUntil;
+
+    /**
+     * @param node Numărul nodului, între 0 și {@value #MAX_NODE}, unic pentru fiecare instanță care scrie tranzacții.
+     */
+    public TransactionIdGenerator(int node) {
+        this(node, "data/transaction_ids.dat");
+    }
+
+    /**
+     * @param node     Numărul nodului, între 0 și {@value #MAX_NODE}.
+     * @param filePath Fișierul în care este păstrată limita de timp rezervată.
+     */
+    public TransactionIdGenerator(int node, String filePath) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE + ": " + node);
+        }
+        this.filePath = filePath;
+        this.nodeBits = (long) node << SEQUENCE_BITS;
+
+        // primul id va fi după limita rezervată de rularea anterioară și după momentul curent
+        long start = Math.max(readLease(), currentTime());
+        this.leasedUntil = start;
+        this.last = new AtomicLong(start << TIME_SHIFT | nodeBits | SEQUENCE_MASK);
+    }
+
+    /**
+     * @return Un id nou, mai mare decât toate id-urile generate anterior de acest nod.
+     */
+    public long nextId() {
+        while (true) {
+            long previous = last.get();
+            long time = previous >>> TIME_SHIFT;
+            long now = currentTime();
+            long next;
+            if (now > time) {
+                next = now << TIME_SHIFT | nodeBits;
+            } else if ((previous & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = previous + 1;
+            } else {
+                next = (time + 1) << TIME_SHIFT | nodeBits;
+            }
+            if (next >>> TIME_SHIFT >= leasedUntil) {
+                extendLease(next >>> TIME_SHIFT);
+            }
+            if (last.compareAndSet(previous, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * @return Momentul generării id-ului, în milisecunde de la 1970 (ca {@link System#currentTimeMillis()}).
+     */
+    public static long timestampOf(long id) {
+        return (id >>> TIME_SHIFT) + EPOCH;
+    }
+
+    /**
+     * @return Nodul care a generat id-ul.
+     */
+    public static int nodeOf(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & MAX_NODE;
+    }
+
+    private static long currentTime() {
+        return System.currentTimeMillis() - EPOCH;
+    }
+
+    /**
+     * Salvează pe disc o limită nouă, după <code>time</code>. Doar firul care depășește primul limita
+     * scrie fișierul; celelalte așteaptă scrierea lui.
+     */
+    private synchronized void extendLease(long time) {
+        if (time < leasedUntil) {
+            return;
+        }
+        long until = time + LEASE_MILLIS;
+        File file = new File(filePath);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(0);
+            raf.writeLong(until);
+            raf.getFD().sync();
+        } catch (IOException e) {
+            throw new RuntimeException("Error at saving the transaction id lease", e);
+        }
+        leasedUntil = until;
+    }
+
+    private long readLease() {
+        File file = new File(filePath);
+        if (file.length() < Long.BYTES) {
+            return 0;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.readLong();
+        } catch (IOException e) {
+            throw new RuntimeException("Error at reading the transaction id lease", e);
+        }
+    }
+}
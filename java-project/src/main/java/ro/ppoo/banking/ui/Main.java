@@ -1,5 +1,6 @@
 package ro.ppoo.banking.ui;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -9,6 +10,7 @@ import ro.ppoo.banking.config.AppConfig;
 import ro.ppoo.banking.controller.RoleSelectionController;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 
 public class Main extends Application {
 
@@ -34,6 +36,23 @@ public class Main extends Application {
         primaryStage.setOnCloseRequest(event -> {
             appConfig.onExit();
         });
+        reportFirstFrame();
+    }
+
+    /**
+     * Afișează timpul de la pornirea JVM-ului până la primul cadru desenat: un
+     * {@link AnimationTimer} este apelat la fiecare puls de randare, deci primul apel
+     * corespunde primului cadru al ferestrei.
+     */
+    private void reportFirstFrame() {
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stop();
+                System.out.println("First frame after " + ManagementFactory.getRuntimeMXBean().getUptime()
+                        + " ms (data " + (appConfig.whenReady().isDone() ? "already loaded" : "still loading") + ")");
+            }
+        }.start();
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,107 @@
+package ro.ppoo.banking;
+
+import ro.ppoo.banking.enums.TransactionType;
+import ro.ppoo.banking.model.BankAccount;
+import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.Transaction;
+import ro.ppoo.banking.repository.ClientRepository;
+import ro.ppoo.banking.repository.Posting;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Utilitare comune testelor: deschiderea unui depozit într-un director temporar, clienții de test,
+ * citirea conturilor și rularea aceleiași sarcini pe mai multe fire.
+ */
+public final class TestSupport {
+    /**
+     * Numărul de fire folosit de testele de concurență.
+     */
+    public static final int THREADS = 8;
+
+    private TestSupport() {
+    }
+
+    /**
+     * @return Un depozit cu datele din <code>directory</code>, încărcat.
+     */
+    public static ClientRepository open(Path directory) {
+        ClientRepository repository = new ClientRepository(directory.toString());
+        repository.loadFromFile();
+        return repository;
+    }
+
+    /**
+     * @return Clientul de test cu numărul dat; CNP-ul lui este <code>"CNP" + index</code>.
+     */
+    public static Client client(int index) {
+        return new Client("First" + index, "Last" + index, "client" + index + "@example.ro",
+                "07" + (20000000 + index), "CNP" + index, true, "password");
+    }
+
+    public static BankAccount account(ClientRepository repository, String iban) {
+        for (BankAccount account : repository.findByAccountIban(iban).getAccounts()) {
+            if (account.getIban().equals(iban)) return account;
+        }
+        throw new AssertionError("Account not found: " + iban);
+    }
+
+    public static long balance(ClientRepository repository, String iban) {
+        return account(repository, iban).getBalance();
+    }
+
+    /**
+     * @return Cele două înregistrări ale unui transfer de <code>amount</code> de la <code>from</code> la <code>to</code>.
+     */
+    public static Posting[] transferPostings(String from, String to, long amount, long id) {
+        return new Posting[]{
+                new Posting(from, -amount, new Transaction(id, LocalDate.now(), amount,
+                        TransactionType.TRANSFER_SENT, from, to, null, null, "test")),
+                new Posting(to, amount, new Transaction(id, LocalDate.now(), amount,
+                        TransactionType.TRANSFER_RECEIVED, from, to, null, null, "test"))
+        };
+    }
+
+    /**
+     * Rulează <code>task</code> pe {@value #THREADS} fire pornite simultan și propagă prima eroare.
+     */
+    public static void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                try {
+                    future.get(2, TimeUnit.MINUTES);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error error) throw error;
+                    throw (Exception) e.getCause();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,182 @@
+package ro.ppoo.banking.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ro.ppoo.banking.enums.AccountType;
+import ro.ppoo.banking.enums.Currency;
+import ro.ppoo.banking.enums.TransactionType;
+import ro.ppoo.banking.model.BankAccount;
+import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.Transaction;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientCodecTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void everyVersionRoundTripsClientsAccountsAndTransactions() throws IOException {
+        Client client = new Client("Ana", "Pop", "ana@example.ro", null, "CNP1", true, "secret");
+        BankAccount account = new BankAccount("RO01", 123_456, Currency.EUR, AccountType.values()[1]);
+        account.setBlocked(true);
+        Transaction transaction = transaction(42, "RO01", "RO02", 10_050);
+
+        for (int version = ClientCodec.LEGACY_VERSION; version <= ClientCodec.CURRENT_VERSION; version++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            ClientCodec writer = new ClientCodec(version);
+            writer.writeClient(out, client);
+            writer.writeAccount(out, account);
+            writer.writeTransaction(out, transaction);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            ClientCodec reader = new ClientCodec(version);
+            Client readClient = reader.readClient(in);
+            BankAccount readAccount = reader.readAccount(in);
+            Transaction readTransaction = reader.readTransaction(in);
+
+            String message = "version " + version;
+            assertEquals("CNP1", readClient.getCNP(), message);
+            assertEquals("Ana", readClient.getFirstname(), message);
+            assertNull(readClient.getPhone(), message);
+            assertEquals("secret", readClient.getPassword(), message);
+            assertEquals("RO01", readAccount.getIban(), message);
+            assertEquals(123_456, readAccount.getBalance(), message);
+            assertEquals(Currency.EUR, readAccount.getCurrency(), message);
+            assertEquals(AccountType.values()[1], readAccount.getType(), message);
+            assertTrue(readAccount.isBlocked(), message);
+            assertSameTransaction(transaction, readTransaction, message);
+            assertEquals(-1, in.read(), message);
+        }
+    }
+
+    @Test
+    void transactionBlocksRoundTrip() throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            transactions.add(transaction(1_000_000L + i * 7, "RO01", i % 2 == 0 ? "RO02" : null, -i * 100));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ClientCodec(ClientCodec.CURRENT_VERSION).writeTransactionBlock(new DataOutputStream(bytes), transactions);
+        List<Transaction> read = new ClientCodec(ClientCodec.CURRENT_VERSION)
+                .readTransactionBlock(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), transactions.size());
+
+        assertEquals(transactions.size(), read.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            assertSameTransaction(transactions.get(i), read.get(i), "transaction " + i);
+        }
+        // detaliile și IBAN-urile repetate sunt scrise o singură dată
+        assertTrue(bytes.size() < 100 * 12, "block size " + bytes.size());
+    }
+
+    @Test
+    void compactVersionsAreSmallerThanTheLegacyFormat() throws IOException {
+        int legacy = encodedSize(ClientCodec.LEGACY_VERSION);
+        int current = encodedSize(ClientCodec.CURRENT_VERSION);
+        assertTrue(current * 2 < legacy, "legacy " + legacy + " bytes, current " + current + " bytes");
+    }
+
+    @Test
+    void varintsRoundTripAtTheLimits() throws IOException {
+        long[] values = {0, 1, -1, 63, -64, 64, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (long value : values) {
+            ClientCodec.writeVarLong(out, ClientCodec.zigzag(value));
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, ClientCodec.unzigzag(ClientCodec.readVarLong(in)));
+        }
+        assertEquals(2, sizeOf(-64) + sizeOf(63));
+    }
+
+    @Test
+    void legacySerializedClientsFileIsImported() throws IOException {
+        Client client = new Client("Ana", "Pop", "ana@example.ro", "0722000001", "CNP1", true, "secret");
+        BankAccount account = new BankAccount("RO01", 25_000, Currency.RON, AccountType.values()[0]);
+        account.getTransactions().add(transaction(7, null, "RO01", 25_000));
+        client.getAccounts().add(account);
+        directory.toFile().mkdirs();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(directory.resolve("clients.dat").toFile()))) {
+            out.writeObject(new ArrayList<>(List.of(client)));
+        }
+
+        ClientRepository imported = open(ClientCodec.CURRENT_VERSION);
+        assertImported(imported);
+        imported.saveToFile();
+
+        assertImported(open(ClientCodec.CURRENT_VERSION));
+    }
+
+    @Test
+    void dataWrittenWithAnOlderVersionIsReadAfterUpgrade() {
+        ClientRepository legacy = open(ClientCodec.LEGACY_VERSION);
+        legacy.add(new Client("Ana", "Pop", "ana@example.ro", "0722000001", "CNP1", true, "secret"));
+        legacy.addAccount("CNP1", new BankAccount("RO01", 25_000, Currency.RON, AccountType.values()[0]));
+        legacy.saveToFile();
+        legacy.updateProfile("CNP1", "Ana", "Popescu", "ana@example.ro", "0722000001");
+
+        ClientRepository upgraded = open(ClientCodec.CURRENT_VERSION);
+        assertEquals("Popescu", upgraded.findByCNP("CNP1").getLastname());
+        assertEquals(25_000, upgraded.findByAccountIban("RO01").getAccounts().get(0).getBalance());
+        upgraded.saveToFile();
+        assertEquals("Popescu", open(ClientCodec.CURRENT_VERSION).findByCNP("CNP1").getLastname());
+    }
+
+    private void assertImported(ClientRepository repository) {
+        Client client = repository.findByCNP("CNP1");
+        assertNotNull(client);
+        BankAccount account = client.getAccounts().get(0);
+        assertEquals(25_000, account.getBalance());
+        assertEquals(1, account.getTransactions().size());
+        assertEquals(7, account.getTransactions().get(0).getId());
+    }
+
+    private ClientRepository open(int codecVersion) {
+        ClientRepository repository = new ClientRepository(directory.toString(), codecVersion);
+        repository.loadFromFile();
+        return repository;
+    }
+
+    private static int encodedSize(int version) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ClientCodec codec = new ClientCodec(version);
+        for (int i = 0; i < 100; i++) {
+            codec.writeTransaction(out, transaction(1_000 + i, "RO49PPOO0000000000000001", "RO22PPOO0000000000000002", 5_000));
+        }
+        return bytes.size();
+    }
+
+    private static int sizeOf(long value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ClientCodec.writeVarLong(new DataOutputStream(bytes), ClientCodec.zigzag(value));
+        return bytes.size();
+    }
+
+    private static Transaction transaction(long id, String source, String destination, long amount) {
+        return new Transaction(id, LocalDate.of(2024, 3, 15), amount, TransactionType.TRANSFER_SENT,
+                source, destination, "Ana Pop", "Ion Ionescu", "Transfer between own accounts");
+    }
+
+    private static void assertSameTransaction(Transaction expected, Transaction actual, String message) {
+        assertEquals(expected.getId(), actual.getId(), message);
+        assertEquals(expected.getDate(), actual.getDate(), message);
+        assertEquals(expected.getAmount(), actual.getAmount(), message);
+        assertEquals(expected.getType(), actual.getType(), message);
+        assertEquals(expected.getSourceAccountIban(), actual.getSourceAccountIban(), message);
+        assertEquals(expected.getDestinationAccountIban(), actual.getDestinationAccountIban(), message);
+        assertEquals(expected.getSenderName(), actual.getSenderName(), message);
+        assertEquals(expected.getReceiverName(), actual.getReceiverName(), message);
+        assertEquals(expected.getDetails(), actual.getDetails(), message);
+    }
+}
@@ -0,0 +1,158 @@
+package ro.ppoo.banking.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ro.ppoo.banking.TestSupport;
+import ro.ppoo.banking.enums.AccountType;
+import ro.ppoo.banking.enums.Currency;
+import ro.ppoo.banking.enums.TransactionType;
+import ro.ppoo.banking.model.BankAccount;
+import ro.ppoo.banking.model.Transaction;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ro.ppoo.banking.TestSupport.*;
+
+/**
+ * Operații simultane pe clienți din partiții diferite: nicio modificare nu se pierde, nici în
+ * memorie, nici după reluarea jurnalului sau după un checkpoint.
+ */
+class ClientRepositoryConcurrencyTest {
+    private static final int CLIENTS = 64;
+    private static final int OPERATIONS_PER_THREAD = 2_000;
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Test
+    void concurrentCommandsLoseNoUpdates() throws Exception {
+        ClientRepository repository = open();
+        List<String> ibans = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            ibans.add("RO" + i + "A");
+            ibans.add("RO" + i + "B");
+        }
+
+        // clienți adăugați simultan, în partiții diferite
+        runConcurrently(thread -> {
+            for (int i = thread; i < CLIENTS; i += THREADS) {
+                repository.add(client(i));
+                repository.addAccount("CNP" + i, new BankAccount("RO" + i + "A", 0, Currency.RON, AccountType.values()[0]));
+                repository.addAccount("CNP" + i, new BankAccount("RO" + i + "B", 0, Currency.RON, AccountType.values()[0]));
+            }
+        });
+        assertEquals(CLIENTS, repository.getClientCount());
+        for (int i = 0; i < CLIENTS; i++) {
+            assertEquals(2, repository.findByCNP("CNP" + i).getAccounts().size());
+        }
+
+        AtomicLongArray expectedBalances = new AtomicLongArray(ibans.size());
+        AtomicIntegerArray expectedTransactions = new AtomicIntegerArray(ibans.size());
+        AtomicIntegerArray profileUpdates = new AtomicIntegerArray(CLIENTS);
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        ExecutorService readerExecutor = Executors.newSingleThreadExecutor();
+        try {
+            // istoricul și proiecțiile sunt citite în timpul scrierilor
+            Future<?> reader = readerExecutor.submit(() -> {
+                Random random = new Random();
+                while (writing.get()) {
+                    String iban = ibans.get(random.nextInt(ibans.size()));
+                    for (BankAccount account : repository.findByAccountIban(iban).getAccounts()) {
+                        List<Transaction> transactions = account.getTransactions();
+                        assertEquals(transactions.size(), new ArrayList<>(transactions).size());
+                    }
+                    assertEquals(CLIENTS, repository.getSummaries().size());
+                }
+                return null;
+            });
+
+            try {
+                runConcurrently(thread -> {
+                    Random random = new Random(thread);
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        int operation = random.nextInt(10);
+                        if (operation == 0) {
+                            int client = random.nextInt(CLIENTS);
+                            repository.updatePassword("CNP" + client, "password-" + thread + "-" + i);
+                            profileUpdates.incrementAndGet(client);
+                        } else if (operation < 5) {
+                            int account = random.nextInt(ibans.size());
+                            long amount = 1 + random.nextInt(10_000);
+                            repository.post(new Posting(ibans.get(account), amount, transaction(null, ibans.get(account), amount)));
+                            expectedBalances.addAndGet(account, amount);
+                            expectedTransactions.incrementAndGet(account);
+                        } else {
+                            int from = random.nextInt(ibans.size());
+                            int to = (from + 1 + random.nextInt(ibans.size() - 1)) % ibans.size();
+                            long amount = 1 + random.nextInt(10_000);
+                            try {
+                                repository.post(
+                                        new Posting(ibans.get(from), -amount, transaction(ibans.get(from), ibans.get(to), amount)),
+                                        new Posting(ibans.get(to), amount, transaction(ibans.get(from), ibans.get(to), amount)));
+                                expectedBalances.addAndGet(from, -amount);
+                                expectedBalances.addAndGet(to, amount);
+                                expectedTransactions.incrementAndGet(from);
+                                expectedTransactions.incrementAndGet(to);
+                            } catch (IllegalArgumentException e) {
+                                assertEquals("Insufficient funds.", e.getMessage());
+                            }
+                        }
+                    }
+                });
+            } finally {
+                writing.set(false);
+            }
+            reader.get(1, TimeUnit.MINUTES);
+        } finally {
+            readerExecutor.shutdownNow();
+        }
+
+        assertState(repository, ibans, expectedBalances, expectedTransactions);
+        for (int i = 0; i < CLIENTS; i++) {
+            String password = repository.findByCNP("CNP" + i).getPassword();
+            assertEquals(profileUpdates.get(i) == 0, password.equals("password"), "client " + i);
+        }
+
+        // după o repornire fără checkpoint: starea este refăcută din jurnal
+        ClientRepository replayed = open();
+        assertState(replayed, ibans, expectedBalances, expectedTransactions);
+
+        // după un checkpoint
+        replayed.saveToFile();
+        assertState(open(), ibans, expectedBalances, expectedTransactions);
+    }
+
+    private void assertState(ClientRepository repository, List<String> ibans,
+                             AtomicLongArray expectedBalances, AtomicIntegerArray expectedTransactions) {
+        assertEquals(CLIENTS, repository.getClientCount());
+        for (int i = 0; i < ibans.size(); i++) {
+            BankAccount account = account(repository, ibans.get(i));
+            assertEquals(expectedBalances.get(i), account.getBalance(), ibans.get(i));
+            assertTrue(account.getBalance() >= 0, ibans.get(i));
+            assertEquals(expectedTransactions.get(i), account.getTransactions().size(), ibans.get(i));
+        }
+    }
+
+    private Transaction transaction(String source, String destination, long amount) {
+        return new Transaction(nextId.incrementAndGet(), LocalDate.now(), amount,
+                source == null ? TransactionType.DEPOSIT : TransactionType.TRANSFER_SENT,
+                source, destination, null, null, "test");
+    }
+
+    private ClientRepository open() {
+        return TestSupport.open(directory);
+    }
+}
@@ -0,0 +1,254 @@
+package ro.ppoo.banking.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ro.ppoo.banking.TestSupport;
+import ro.ppoo.banking.enums.AccountType;
+import ro.ppoo.banking.enums.Currency;
+import ro.ppoo.banking.enums.TransactionType;
+import ro.ppoo.banking.model.BankAccount;
+import ro.ppoo.banking.model.Client;
+import ro.ppoo.banking.model.ClientSummary;
+import ro.ppoo.banking.model.Transaction;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ro.ppoo.banking.TestSupport.account;
+import static ro.ppoo.banking.TestSupport.client;
+
+class ClientRepositoryTest {
+    @TempDir
+    Path directory;
+
+    private ClientRepository repository;
+    private final AtomicLong nextId = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        repository = open();
+    }
+
+    @Test
+    void findsClientsByCnp() {
+        for (int i = 0; i < 100; i++) {
+            repository.add(client(i));
+        }
+
+        assertEquals("First42", repository.findByCNP("CNP42").getFirstname());
+        assertNull(repository.findByCNP("CNP100"));
+        assertEquals(100, repository.getClientCount());
+    }
+
+    @Test
+    void updateReplacesTheIndexedVersion() {
+        repository.add(client(1));
+        repository.updateProfile("CNP1", "Ana", "Pop", "ana@example.ro", "0722000001");
+
+        Client updated = repository.findByCNP("CNP1");
+        assertEquals("Ana", updated.getFirstname());
+        assertSame(updated, repository.findByEmail("ANA@example.ro"));
+        assertNull(repository.findByEmail("client1@example.ro"));
+    }
+
+    @Test
+    void destroyRemovesClientAndItsAccounts() {
+        repository.add(client(1));
+        repository.add(client(2));
+        repository.addAccount("CNP1", new BankAccount("RO01", 0, Currency.RON, AccountType.values()[0]));
+
+        repository.destroy(repository.findByCNP("CNP1"));
+
+        assertNull(repository.findByCNP("CNP1"));
+        assertNull(repository.findByAccountIban("RO01"));
+        assertNotNull(repository.findByCNP("CNP2"));
+    }
+
+    @Test
+    void getAllKeepsRegistrationOrder() {
+        for (int i = 0; i < 10; i++) {
+            repository.add(client(9 - i));
+        }
+        repository.destroy(repository.findByCNP("CNP5"));
+
+        List<String> cnps = repository.getAll().stream().map(Client::getCNP).toList();
+        assertEquals(List.of("CNP9", "CNP8", "CNP7", "CNP6", "CNP4", "CNP3", "CNP2", "CNP1", "CNP0"), cnps);
+    }
+
+    @Test
+    void pagesAreSortedAcrossAllClients() {
+        for (int i = 0; i < 250; i++) {
+            repository.add(client(i));
+        }
+        Comparator<ClientSummary> byLastname = Comparator.comparing(ClientSummary::getLastname).reversed();
+
+        List<String> expected = repository.getSummaries().stream()
+                .sorted(byLastname).map(ClientSummary::getCNP).toList();
+        List<String> paged = new ArrayList<>();
+        for (int offset = 0; offset < 250; offset += 100) {
+            repository.getSummaries(offset, 100, byLastname).forEach(summary -> paged.add(summary.getCNP()));
+        }
+        assertEquals(expected, paged);
+        assertEquals("CNP99", paged.get(0));
+
+        // o schimbare a numelui refă ordinea
+        repository.updateProfile("CNP5", "First5", "Zeta", "client5@example.ro", "0720000005");
+        assertEquals("CNP5", repository.getSummaries(0, 1, byLastname).get(0).getCNP());
+        assertEquals(List.of("CNP0", "CNP1"), repository.getSummaries(0, 2, null).stream().map(ClientSummary::getCNP).toList());
+    }
+
+    @Test
+    void indexIsRebuiltFromCheckpointAndJournal() {
+        repository.add(client(1));
+        repository.addAccount("CNP1", new BankAccount("RO01", 0, Currency.RON, AccountType.values()[0]));
+        repository.saveToFile();
+        repository.add(client(2));
+        repository.updateProfile("CNP1", "Ana", "Pop", "client1@example.ro", "0722000001");
+
+        ClientRepository reopened = open();
+        assertEquals("Ana", reopened.findByCNP("CNP1").getFirstname());
+        assertEquals("CNP1", reopened.findByAccountIban("RO01").getCNP());
+        assertNotNull(reopened.findByCNP("CNP2"));
+    }
+
+    @Test
+    void archiveMovesOldTransactionsWhileOtherAccountsAreWritten() throws Exception {
+        repository.add(client(1));
+        repository.addAccount("CNP1", new BankAccount("RO01", 0, Currency.RON, AccountType.values()[0]));
+        repository.addAccount("CNP1", new BankAccount("RO02", 0, Currency.RON, AccountType.values()[0]));
+        LocalDate old = LocalDate.of(2024, 1, 15);
+        LocalDate recent = LocalDate.now();
+        for (int i = 0; i < 300; i++) {
+            deposit("RO01", i < 200 ? old.plusMonths(i % 2) : recent);
+        }
+        repository.saveToFile();
+        for (int i = 0; i < 10; i++) {
+            deposit("RO02", old);
+        }
+
+        CompletableFuture<Void> writes = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 500; i++) {
+                deposit("RO02", recent);
+            }
+        });
+        int archived = repository.archiveHistory(recent.withDayOfMonth(1));
+        writes.get();
+
+        assertEquals(210, archived);
+        assertArchived(repository);
+        assertEquals(0, repository.archiveHistory(recent.withDayOfMonth(1)));
+
+        // după repornire: depunerile de după checkpoint-ul arhivării sunt reluate din jurnal
+        ClientRepository reopened = open();
+        assertArchived(reopened);
+        assertEquals(List.of(YearMonth.of(2024, 2), YearMonth.of(2024, 1)), reopened.getArchivedMonths());
+        assertEquals(0, reopened.archiveHistory(recent.withDayOfMonth(1)));
+    }
+
+    @Test
+    void tornJournalFrameIsTruncated() throws Exception {
+        repository.add(client(1));
+        Path journal = directory.resolve("clients.journal");
+        long validLength = Files.size(journal);
+
+        // antetul unui cadru scris incomplet: lungimea nu mai încape în fișier
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + Integer.BYTES + 3);
+        header.putInt(Integer.MAX_VALUE - 8).putLong(2).putInt(0);
+        Files.write(journal, header.array(), StandardOpenOption.APPEND);
+
+        repository = open();
+        assertNotNull(repository.findByCNP("CNP1"));
+        assertEquals(validLength, Files.size(journal));
+
+        repository.add(client(2));
+        ClientRepository reopened = open();
+        assertNotNull(reopened.findByCNP("CNP1"));
+        assertNotNull(reopened.findByCNP("CNP2"));
+    }
+
+    @Test
+    void replayAfterCrashDoesNotApplyBalanceChangesTwice() {
+        repository.add(client(1));
+        repository.addAccount("CNP1", new BankAccount("RO01", 0, Currency.RON, AccountType.values()[0]));
+        repository.saveToFile();
+
+        LocalDate today = LocalDate.now();
+        for (int restart = 1; restart <= 3; restart++) {
+            for (int i = 0; i < 100; i++) {
+                deposit("RO01", today);
+            }
+            // oprire bruscă: instanța este abandonată fără checkpoint, iar slotul are deja soldul nou
+            repository = open();
+            assertEquals(100L * restart, account(repository, "RO01").getBalance());
+        }
+
+        // o a doua repornire reia același jurnal peste același checkpoint
+        ClientRepository reopened = open();
+        assertEquals(300, account(reopened, "RO01").getBalance());
+        reopened.saveToFile();
+        assertEquals(300, account(open(), "RO01").getBalance());
+    }
+
+    @Test
+    void reusedIdempotencyKeyWithOtherParametersIsRejected() {
+        repository.add(client(1));
+        repository.addAccount("CNP1", new BankAccount("RO01", 0, Currency.RON, AccountType.values()[0]));
+        long fingerprint = ClientRepository.fingerprint(TransactionType.DEPOSIT, "RO01", 100);
+        long otherFingerprint = ClientRepository.fingerprint(TransactionType.DEPOSIT, "RO01", 200);
+        assertNotEquals(fingerprint, otherFingerprint);
+
+        assertEquals(1, repository.post("key", fingerprint, 1, depositPosting("RO01", 100)));
+        // reîncercarea aceleiași operații primește rezultatul original, fără a fi aplicată din nou
+        assertEquals(1, repository.post("key", fingerprint, 2, depositPosting("RO01", 100)));
+        IllegalArgumentException reused = assertThrows(IllegalArgumentException.class,
+                () -> repository.post("key", otherFingerprint, 3, depositPosting("RO01", 200)));
+        assertEquals("The idempotency key was already used for a different request.", reused.getMessage());
+        assertEquals(100, account(repository, "RO01").getBalance());
+
+        // amprenta este refăcută din jurnal și din checkpoint
+        ClientRepository replayed = open();
+        assertThrows(IllegalArgumentException.class, () -> replayed.findRequestResult("key", otherFingerprint));
+        replayed.saveToFile();
+        ClientRepository reopened = open();
+        assertEquals(1L, reopened.findRequestResult("key", fingerprint));
+        assertThrows(IllegalArgumentException.class, () -> reopened.findRequestResult("key", otherFingerprint));
+    }
+
+    private Posting depositPosting(String iban, long amount) {
+        return new Posting(iban, amount, new Transaction(nextId.incrementAndGet(), LocalDate.now(), amount,
+                TransactionType.DEPOSIT, null, iban, null, null, "test"));
+    }
+
+    private void assertArchived(ClientRepository repository) {
+        BankAccount first = account(repository, "RO01");
+        BankAccount second = account(repository, "RO02");
+        assertEquals(300, first.getBalance());
+        assertEquals(100, first.getTransactions().size());
+        assertEquals(510, second.getBalance());
+        assertEquals(500, second.getTransactions().size());
+        assertTrue(second.getTransactions().stream().noneMatch(transaction -> transaction.getDate().getYear() == 2024));
+        assertEquals(100, repository.getArchivedTransactions("RO01", YearMonth.of(2024, 1)).size());
+        assertEquals(10, repository.getArchivedTransactions("RO02", YearMonth.of(2024, 1)).size());
+        assertEquals(600, repository.getTransactionColumns().count());
+    }
+
+    private void deposit(String iban, LocalDate date) {
+        repository.post(new Posting(iban, 1, new Transaction(nextId.incrementAndGet(), date, 1,
+                TransactionType.DEPOSIT, null, iban, null, null, "test")));
+    }
+
+    private ClientRepository open() {
+        return TestSupport.open(directory);
+    }
+}
@@ -0,0 +1,68 @@
+package ro.ppoo.banking.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ro.ppoo.banking.TestSupport;
+import ro.ppoo.banking.enums.AccountType;
+import ro.ppoo.banking.enums.Currency;
+import ro.ppoo.banking.enums.TransactionType;
+import ro.ppoo.banking.model.BankAccount;
+import ro.ppoo.banking.model.Transaction;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ro.ppoo.banking.TestSupport.*;
+
+class TransactionColumnsTest {
+    @TempDir
+    Path directory;
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Test
+    void columnsBuiltDuringWritesMatchTheHistory() throws Exception {
+        ClientRepository repository = TestSupport.open(directory);
+        for (int i = 0; i < 16; i++) {
+            repository.add(client(i));
+            repository.addAccount("CNP" + i, new BankAccount("RO" + i, 0, i % 2 == 0 ? Currency.RON : Currency.EUR, AccountType.values()[0]));
+            for (int j = 0; j < 200; j++) {
+                deposit(repository, "RO" + i, 100);
+            }
+        }
+
+        // coloanele sunt construite în timp ce alte fire depun, iar checkpoint-urile rulează în paralel
+        runConcurrently(thread -> {
+            for (int i = 0; i < 300; i++) {
+                if (thread == 0) {
+                    if (i % 50 == 0) repository.saveToFile();
+                    assertTrue(repository.getTransactionColumns().count() >= 16 * 200);
+                } else {
+                    deposit(repository, "RO" + (thread * 2 + i % 2), 1 + i);
+                }
+            }
+        });
+        repository.removeAccount("RO15");
+
+        TransactionColumns columns = repository.getTransactionColumns();
+        long count = 0;
+        long ron = 0;
+        long eur = 0;
+        for (int i = 0; i < 15; i++) {
+            BankAccount account = account(repository, "RO" + i);
+            count += account.getTransactions().size();
+            if (account.getCurrency() == Currency.RON) ron += account.getBalance();
+            else eur += account.getBalance();
+        }
+        assertEquals(count, columns.count());
+        assertEquals(Map.of(Currency.RON, ron, Currency.EUR, eur), columns.sumByCurrency(TransactionType.DEPOSIT));
+    }
+
+    private void deposit(ClientRepository repository, String iban, long amount) {
+        repository.post(new Posting(iban, amount, new Transaction(nextId.incrementAndGet(), LocalDate.now(), amount,
+                TransactionType.DEPOSIT, null, iban, null, null, "deposit")));
+    }
+}
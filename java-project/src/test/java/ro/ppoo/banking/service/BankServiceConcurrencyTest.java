@@ -0,0 +1,121 @@
+package ro.ppoo.banking.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ro.ppoo.banking.TestSupport;
+import ro.ppoo.banking.enums.AccountType;
+import ro.ppoo.banking.enums.Currency;
+import ro.ppoo.banking.model.BankAccount;
+import ro.ppoo.banking.repository.ClientRepository;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ro.ppoo.banking.TestSupport.*;
+
+/**
+ * Transferuri simultane prin {@link BankService}: banii nu se creează și nu se pierd, iar niciun
+ * sold nu devine negativ, nici în timpul transferurilor, nici după reluarea jurnalului.
+ */
+class BankServiceConcurrencyTest {
+    private static final int CLIENTS = 16;
+    private static final int TRANSFERS_PER_THREAD = 1_500;
+    private static final long INITIAL_BALANCE = 10_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void transfersConserveTheTotalBalance() throws Exception {
+        ClientRepository repository = open();
+        CommandPipeline pipeline = new CommandPipeline(repository);
+        ExecutorService auditorExecutor = Executors.newSingleThreadExecutor();
+        try {
+            BankService bankService = new BankService(repository, new CurrencyService(),
+                    new TransactionIdGenerator(0, directory.resolve("transaction_ids.dat").toString()),
+                    new IbanAllocator(repository, directory.resolve("iban_sequence.dat").toString()),
+                    pipeline);
+
+            List<String> ibans = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                repository.add(client(i));
+                for (String suffix : List.of("A", "B")) {
+                    String iban = "RO" + i + suffix;
+                    repository.addAccount("CNP" + i, new BankAccount(iban, 0, Currency.RON, AccountType.values()[0]));
+                    bankService.deposit(iban, INITIAL_BALANCE);
+                    ibans.add(iban);
+                }
+            }
+            long total = INITIAL_BALANCE * ibans.size();
+            assertEquals(total, totalBalance(repository, ibans));
+
+            AtomicBoolean transferring = new AtomicBoolean(true);
+            AtomicInteger rejected = new AtomicInteger();
+            Future<?> auditor = auditorExecutor.submit(() -> {
+                // un transfer aflat în curs poate fi văzut pe jumătate, deci în timpul lui se verifică doar semnul
+                while (transferring.get()) {
+                    for (String iban : ibans) {
+                        assertTrue(balance(repository, iban) >= 0, iban);
+                    }
+                }
+                return null;
+            });
+
+            try {
+                runConcurrently(thread -> {
+                    Random random = new Random(thread);
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        int from = random.nextInt(ibans.size());
+                        int to = (from + 1 + random.nextInt(ibans.size() - 1)) % ibans.size();
+                        // sume mari față de solduri, ca debitările simultane să epuizeze des conturile
+                        long amount = 1 + random.nextInt(4_000);
+                        try {
+                            bankService.transferMoney(ibans.get(from), ibans.get(to), amount, "test");
+                        } catch (IllegalArgumentException e) {
+                            assertEquals("Insufficient funds.", e.getMessage());
+                            rejected.incrementAndGet();
+                        }
+                    }
+                });
+            } finally {
+                transferring.set(false);
+            }
+            auditor.get(1, TimeUnit.MINUTES);
+
+            assertTrue(rejected.get() > 0, "no transfer was rejected");
+            assertTrue(rejected.get() < THREADS * TRANSFERS_PER_THREAD, "every transfer was rejected");
+            assertConserved(repository, ibans, total);
+
+            // după o repornire, soldurile sunt refăcute din jurnal
+            assertConserved(open(), ibans, total);
+        } finally {
+            auditorExecutor.shutdownNow();
+            pipeline.close();
+        }
+    }
+
+    private void assertConserved(ClientRepository repository, List<String> ibans, long total) {
+        for (String iban : ibans) {
+            assertTrue(balance(repository, iban) >= 0, iban);
+        }
+        assertEquals(total, totalBalance(repository, ibans));
+    }
+
+    private static long totalBalance(ClientRepository repository, List<String> ibans) {
+        long total = 0;
+        for (String iban : ibans) {
+            total += balance(repository, iban);
+        }
+        return total;
+    }
+
+    private ClientRepository open() {
+        return TestSupport.open(directory.resolve("data"));
+    }
+}
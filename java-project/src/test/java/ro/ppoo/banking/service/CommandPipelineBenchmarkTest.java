@@ -0,0 +1,105 @@
+package ro.ppoo.banking.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ro.ppoo.banking.TestSupport;
+import ro.ppoo.banking.enums.AccountType;
+import ro.ppoo.banking.enums.Currency;
+import ro.ppoo.banking.model.BankAccount;
+import ro.ppoo.banking.repository.ClientRepository;
+import ro.ppoo.banking.repository.Posting;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ro.ppoo.banking.TestSupport.*;
+
+/**
+ * Compară calea sincronă, în care fiecare fir apelează {@link ClientRepository#post(Posting...)}, cu
+ * {@link CommandPipeline#submit(Posting[], String, long, long)}, pentru aceleași transferuri trimise
+ * de {@value TestSupport#THREADS} fire.
+ * <p>
+ * Nu rulează cu testele obișnuite: <code>mvn test -Dgroups=benchmark -DexcludedGroups=none</code>.
+ * </p>
+ */
+@Tag("benchmark")
+class CommandPipelineBenchmarkTest {
+    private static final int ACCOUNTS = 64;
+    private static final int WARMUP_TRANSFERS_PER_THREAD = 1_000;
+    private static final int TRANSFERS_PER_THREAD = 5_000;
+    // destul cât niciun transfer să nu fie respins
+    private static final long INITIAL_BALANCE = 1_000_000_000;
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Test
+    void synchronousPostVersusPipelineSubmit() throws Exception {
+        ClientRepository synchronous = open("post");
+        List<String> ibans = createAccounts(synchronous);
+        measure("post", synchronous, ibans, synchronous::post);
+
+        ClientRepository pipelined = open("pipeline");
+        createAccounts(pipelined);
+        CommandPipeline pipeline = new CommandPipeline(pipelined);
+        try {
+            measure("CommandPipeline.submit", pipelined, ibans,
+                    postings -> pipeline.submit(postings, null, 0, 0));
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    private void measure(String path, ClientRepository repository, List<String> ibans, Transfer transfer)
+            throws Exception {
+        transfer(ibans, transfer, WARMUP_TRANSFERS_PER_THREAD);
+        long start = System.nanoTime();
+        transfer(ibans, transfer, TRANSFERS_PER_THREAD);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-24s %,12.0f transfers/s%n", path, THREADS * TRANSFERS_PER_THREAD / seconds);
+
+        long total = 0;
+        for (String iban : ibans) {
+            total += balance(repository, iban);
+        }
+        assertEquals(INITIAL_BALANCE * ibans.size(), total);
+    }
+
+    private void transfer(List<String> ibans, Transfer transfer, int transfersPerThread) throws Exception {
+        runConcurrently(thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < transfersPerThread; i++) {
+                int from = random.nextInt(ibans.size());
+                int to = (from + 1 + random.nextInt(ibans.size() - 1)) % ibans.size();
+                transfer.post(transferPostings(ibans.get(from), ibans.get(to), 1 + random.nextInt(100),
+                        nextId.incrementAndGet()));
+            }
+        });
+    }
+
+    private List<String> createAccounts(ClientRepository repository) {
+        List<String> ibans = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            repository.add(client(i));
+            repository.addAccount("CNP" + i, new BankAccount("RO" + i, INITIAL_BALANCE, Currency.RON,
+                    AccountType.values()[0]));
+            ibans.add("RO" + i);
+        }
+        return ibans;
+    }
+
+    private ClientRepository open(String name) {
+        return TestSupport.open(directory.resolve(name));
+    }
+
+    private interface Transfer {
+        void post(Posting[] postings);
+    }
+}
@@ -0,0 +1,242 @@
+package ro.ppoo.banking.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ro.ppoo.banking.TestSupport;
+import ro.ppoo.banking.enums.AccountType;
+import ro.ppoo.banking.enums.Currency;
+import ro.ppoo.banking.enums.TransactionType;
+import ro.ppoo.banking.model.BankAccount;
+import ro.ppoo.banking.model.Transaction;
+import ro.ppoo.banking.repository.ClientRepository;
+import ro.ppoo.banking.repository.Posting;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ro.ppoo.banking.TestSupport.*;
+
+/**
+ * Comenzi trimise simultan prin {@link CommandPipeline}: fiecare fir primește rezultatul propriei
+ * comenzi, comenzile fără fonduri sunt respinse, iar o cheie de idempotență trimisă de mai multe
+ * fire este aplicată o singură dată.
+ */
+class CommandPipelineTest {
+    private static final int ACCOUNTS = 16;
+    private static final int COMMANDS_PER_THREAD = 1_000;
+    private static final int KEYS = 200;
+    private static final long INITIAL_BALANCE = 1_000;
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Test
+    void concurrentSubmitsGetTheirResultsAndKeysAreAppliedOnce() throws Exception {
+        ClientRepository repository = open();
+        List<String> ibans = createAccounts(repository);
+        CommandPipeline pipeline = new CommandPipeline(repository);
+        AtomicLongArray expectedBalances = new AtomicLongArray(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            deposit(pipeline, ibans.get(i), INITIAL_BALANCE);
+            expectedBalances.set(i, INITIAL_BALANCE);
+        }
+
+        Map<String, Long> resultsByKey = new ConcurrentHashMap<>();
+        AtomicInteger rejected = new AtomicInteger();
+        runConcurrently(thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < COMMANDS_PER_THREAD; i++) {
+                if (i % 4 == 0) {
+                    // aceeași cheie, cu aceiași parametri, este trimisă de mai multe fire
+                    int key = random.nextInt(KEYS);
+                    String iban = ibans.get(key % ACCOUNTS);
+                    long id = nextId.incrementAndGet();
+                    long result = pipeline.submit(new Posting[]{depositPosting(iban, 1 + key, id)}, "key-" + key,
+                            ClientRepository.fingerprint(TransactionType.DEPOSIT, iban, 1 + key), id);
+                    Long first = resultsByKey.putIfAbsent("key-" + key, result);
+                    assertEquals(first != null ? first : result, result);
+                    continue;
+                }
+
+                int from = random.nextInt(ACCOUNTS);
+                int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                // sume mari față de solduri, ca o parte din transferuri să fie respinse
+                long amount = 1 + random.nextInt(1_500);
+                long id = nextId.incrementAndGet();
+                try {
+                    assertEquals(id, pipeline.submit(transferPostings(ibans.get(from), ibans.get(to), amount, id), null, 0, id));
+                    expectedBalances.addAndGet(from, -amount);
+                    expectedBalances.addAndGet(to, amount);
+                } catch (IllegalArgumentException e) {
+                    assertEquals("Insufficient funds.", e.getMessage());
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+        pipeline.close();
+
+        assertTrue(rejected.get() > 0, "no transfer was rejected");
+        for (Map.Entry<String, Long> entry : resultsByKey.entrySet()) {
+            int key = Integer.parseInt(entry.getKey().substring("key-".length()));
+            expectedBalances.addAndGet(key % ACCOUNTS, 1 + key);
+            // rezultatul reținut este tranzacția aplicată, singura pentru cheie
+            BankAccount account = account(repository, ibans.get(key % ACCOUNTS));
+            assertEquals(1, account.getTransactions().stream()
+                    .filter(transaction -> transaction.getId() == entry.getValue())
+                    .count(), entry.getKey());
+        }
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertEquals(expectedBalances.get(i), account(repository, ibans.get(i)).getBalance(), ibans.get(i));
+        }
+    }
+
+    @Test
+    void batchesAndAccountCommandsAreAppliedInSubmissionOrder() {
+        ClientRepository repository = open();
+        List<String> ibans = createAccounts(repository);
+        CommandPipeline pipeline = new CommandPipeline(repository);
+        try {
+            deposit(pipeline, ibans.get(0), 100);
+
+            // al doilea ordin vede soldul lăsat de primul, din același lot
+            List<String> rejections = pipeline.submitAll(List.of(
+                    transferPostings(ibans.get(0), ibans.get(1), 60, nextId.incrementAndGet()),
+                    transferPostings(ibans.get(0), ibans.get(1), 60, nextId.incrementAndGet())));
+            assertEquals(2, rejections.size());
+            assertNull(rejections.get(0));
+            assertEquals("Insufficient funds.", rejections.get(1));
+            assertEquals(List.of(), pipeline.submitAll(List.of()));
+
+            pipeline.execute(() -> repository.setBlocked(ibans.get(1), true));
+            IllegalArgumentException blocked = assertThrows(IllegalArgumentException.class, () -> pipeline.submit(
+                    transferPostings(ibans.get(1), ibans.get(0), 10, nextId.incrementAndGet()), null, 0, 0));
+            assertEquals("Account " + ibans.get(1) + " is BLOCKED.", blocked.getMessage());
+
+            // excepția comenzii ajunge la apelant, iar coada rămâne pornită
+            assertThrows(IllegalArgumentException.class, () -> pipeline.execute(() -> repository.setBlocked("RO-missing", true)));
+            pipeline.execute(() -> repository.removeAccount(ibans.get(2)));
+            assertNull(repository.findByAccountIban(ibans.get(2)));
+
+            assertEquals(40, account(repository, ibans.get(0)).getBalance());
+            assertEquals(60, account(repository, ibans.get(1)).getBalance());
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    void closeAppliesSubmittedCommandsAndRejectsNewOnes() throws Exception {
+        ClientRepository repository = open();
+        String iban = createAccounts(repository).get(0);
+        CommandPipeline pipeline = new CommandPipeline(repository);
+
+        AtomicInteger applied = new AtomicInteger();
+        CountDownLatch submitting = new CountDownLatch(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    submitting.countDown();
+                    try {
+                        while (true) {
+                            deposit(pipeline, iban, 1);
+                            applied.incrementAndGet();
+                        }
+                    } catch (IllegalStateException e) {
+                        assertEquals("Command pipeline is closed.", e.getMessage());
+                    }
+                    return null;
+                }));
+            }
+            submitting.await();
+            pipeline.close();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // o comandă acceptată înainte de închidere este aplicată, iar cele refuzate nu
+        assertEquals(applied.get(), account(repository, iban).getBalance());
+        assertThrows(IllegalStateException.class, () -> deposit(pipeline, iban, 1));
+        pipeline.close();
+    }
+
+    @Test
+    void interruptedSubmitterWaitsForItsResult() {
+        ClientRepository repository = open();
+        String iban = createAccounts(repository).get(0);
+        CommandPipeline pipeline = new CommandPipeline(repository);
+
+        Thread.currentThread().interrupt();
+        try {
+            deposit(pipeline, iban, 10);
+        } finally {
+            assertTrue(Thread.interrupted(), "the interrupt flag was not restored");
+        }
+        assertEquals(10, account(repository, iban).getBalance());
+        pipeline.close();
+    }
+
+    @Test
+    void errorStopsThePipeline() {
+        Error failure = new Error("test");
+        ClientRepository repository = new ClientRepository(directory.resolve("data").toString()) {
+            @Override
+            public List<String> postAll(List<Posting[]> operations, List<String> requestKeys, long[] fingerprints,
+                                        long[] results) {
+                throw failure;
+            }
+        };
+        CommandPipeline pipeline = new CommandPipeline(repository);
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        // firul de scriere aruncă eroarea mai departe; aici este doar ignorată
+        Thread.setDefaultUncaughtExceptionHandler((thread, error) -> { });
+        try {
+            IllegalStateException stopped = assertThrows(IllegalStateException.class, () -> deposit(pipeline, "RO0", 1));
+            assertSame(failure, stopped.getCause());
+            IllegalStateException later = assertThrows(IllegalStateException.class, () -> deposit(pipeline, "RO0", 1));
+            assertSame(failure, later.getCause());
+            pipeline.close();
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+    }
+
+    private List<String> createAccounts(ClientRepository repository) {
+        List<String> ibans = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            repository.add(client(i));
+            repository.addAccount("CNP" + i, new BankAccount("RO" + i, 0, Currency.RON, AccountType.values()[0]));
+            ibans.add("RO" + i);
+        }
+        return ibans;
+    }
+
+    private void deposit(CommandPipeline pipeline, String iban, long amount) {
+        long id = nextId.incrementAndGet();
+        assertEquals(id, pipeline.submit(new Posting[]{depositPosting(iban, amount, id)}, null, 0, id));
+    }
+
+    private static Posting depositPosting(String iban, long amount, long id) {
+        return new Posting(iban, amount, new Transaction(id, LocalDate.now(), amount,
+                TransactionType.DEPOSIT, null, iban, null, null, "test"));
+    }
+
+    private ClientRepository open() {
+        return TestSupport.open(directory.resolve("data"));
+    }
+}
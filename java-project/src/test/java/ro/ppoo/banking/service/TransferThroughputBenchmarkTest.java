@@ -0,0 +1,104 @@
+package ro.ppoo.banking.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ro.ppoo.banking.TestSupport;
+import ro.ppoo.banking.enums.AccountType;
+import ro.ppoo.banking.enums.Currency;
+import ro.ppoo.banking.model.BankAccount;
+import ro.ppoo.banking.repository.ClientRepository;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ro.ppoo.banking.TestSupport.*;
+
+/**
+ * Transferuri pe secundă prin {@link BankService#transferMoney(String, String, long, String)}, pe
+ * {@value TestSupport#THREADS} fire, în trei scenarii:
+ * <ul>
+ *     <li>o pereche fierbinte: toate firele transferă între aceleași două conturi;</li>
+ *     <li>perechi aleatoare de conturi ale unor clienți diferiți;</li>
+ *     <li>un singur client cu multe conturi.</li>
+ * </ul>
+ * <p>
+ * Nu rulează cu testele obișnuite: <code>mvn test -Dgroups=benchmark -DexcludedGroups=none</code>.
+ * </p>
+ */
+@Tag("benchmark")
+class TransferThroughputBenchmarkTest {
+    private static final int ACCOUNTS = 64;
+    private static final int WARMUP_TRANSFERS_PER_THREAD = 1_000;
+    private static final int TRANSFERS_PER_THREAD = 5_000;
+    // destul cât niciun transfer să nu fie respins
+    private static final long INITIAL_BALANCE = 1_000_000_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void hotPair() throws Exception {
+        measure("hot pair", false, 2);
+    }
+
+    @Test
+    void randomPairs() throws Exception {
+        measure("random pairs", false, ACCOUNTS);
+    }
+
+    @Test
+    void singleClientManyAccounts() throws Exception {
+        measure("single client, many accounts", true, ACCOUNTS);
+    }
+
+    private void measure(String scenario, boolean singleClient, int accounts) throws Exception {
+        ClientRepository repository = TestSupport.open(directory.resolve("data"));
+        CommandPipeline pipeline = new CommandPipeline(repository);
+        try {
+            BankService bankService = new BankService(repository, new CurrencyService(),
+                    new TransactionIdGenerator(0, directory.resolve("transaction_ids.dat").toString()),
+                    new IbanAllocator(repository, directory.resolve("iban_sequence.dat").toString()),
+                    pipeline);
+            List<String> ibans = new ArrayList<>();
+            for (int i = 0; i < accounts; i++) {
+                int owner = singleClient ? 0 : i;
+                if (i == owner) {
+                    repository.add(client(owner));
+                }
+                String iban = "RO" + i;
+                repository.addAccount("CNP" + owner, new BankAccount(iban, 0, Currency.RON, AccountType.values()[0]));
+                bankService.deposit(iban, INITIAL_BALANCE);
+                ibans.add(iban);
+            }
+
+            transfer(bankService, ibans, WARMUP_TRANSFERS_PER_THREAD);
+            long start = System.nanoTime();
+            transfer(bankService, ibans, TRANSFERS_PER_THREAD);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-30s %,12.0f transfers/s%n", scenario, THREADS * TRANSFERS_PER_THREAD / seconds);
+
+            long total = 0;
+            for (String iban : ibans) {
+                total += balance(repository, iban);
+            }
+            assertEquals(INITIAL_BALANCE * accounts, total);
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    private static void transfer(BankService bankService, List<String> ibans, int transfersPerThread) throws Exception {
+        runConcurrently(thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < transfersPerThread; i++) {
+                int from = random.nextInt(ibans.size());
+                int to = (from + 1 + random.nextInt(ibans.size() - 1)) % ibans.size();
+                bankService.transferMoney(ibans.get(from), ibans.get(to), 1 + random.nextInt(100), "benchmark");
+            }
+        });
+    }
+}